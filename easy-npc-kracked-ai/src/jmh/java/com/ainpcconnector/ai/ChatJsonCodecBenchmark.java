@@ -0,0 +1,127 @@
+package com.ainpcconnector.ai;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import okhttp3.RequestBody;
+import okio.Buffer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * ChatJsonCodec against the path it replaced: request bodies assembled in a
+ * StringBuilder with replace()-based escaping, and responses read into a
+ * String and parsed into a tree. Run with -prof gc to compare allocation.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ChatJsonCodecBenchmark {
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    @Param({ "4", "20" })
+    public int historyTurns;
+
+    private String systemPrompt;
+    private List<ChatMessage> history;
+    private byte[] responseBody;
+
+    @Setup
+    public void setup() {
+        systemPrompt = "You are Bram, a grumpy but kind blacksmith in a small village.\n"
+                + "Personality: friendliness 0.62, curiosity 0.40, aggression 0.15, humor 0.55.\n"
+                + "Keep replies short and stay in character. Never mention being an AI.";
+        history = new ArrayList<>();
+        for (int i = 0; i < historyTurns; i++) {
+            history.add(i % 2 == 0
+                    ? ChatMessage.user("Steve: Do you have any \"enchanted\" iron swords? I need one for the mine.")
+                    : ChatMessage.assistant("Hmph. Iron I have, enchantments I don't.\nTry the librarian, lad."));
+        }
+        responseBody = ("{\"id\":\"chatcmpl-9\",\"object\":\"chat.completion\",\"created\":1718000000,"
+                + "\"model\":\"gpt-4o-mini\",\"choices\":[{\"index\":0,\"message\":{\"role\":\"assistant\","
+                + "\"content\":\"Hmph. Iron I have, enchantments I don't. Try the librarian, lad.\"},"
+                + "\"logprobs\":null,\"finish_reason\":\"stop\"}],\"usage\":{\"prompt_tokens\":412,"
+                + "\"completion_tokens\":18,\"total_tokens\":430},\"system_fingerprint\":\"fp_0123\"}")
+                .getBytes(StandardCharsets.UTF_8);
+    }
+
+    @Benchmark
+    public long encodeStringBuilder() {
+        String json = legacyRequestBody("gpt-4o-mini", systemPrompt, "Steve: Thanks anyway!", history);
+        RequestBody body = RequestBody.create(json, ChatJsonCodec.JSON);
+        Buffer sink = new Buffer();
+        try {
+            body.writeTo(sink);
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+        return sink.size();
+    }
+
+    @Benchmark
+    public long encodeCodec() throws IOException {
+        RequestBody body = ChatJsonCodec.chatCompletionRequest("gpt-4o-mini", systemPrompt, history,
+                "Steve: Thanks anyway!", false, 500);
+        Buffer sink = new Buffer();
+        body.writeTo(sink);
+        return sink.size();
+    }
+
+    @Benchmark
+    public String decodeTree() throws IOException {
+        JsonNode root = MAPPER.readTree(new String(responseBody, StandardCharsets.UTF_8));
+        return root.get("choices").get(0).get("message").get("content").asText();
+    }
+
+    @Benchmark
+    public String decodeCodec() throws IOException {
+        return ChatJsonCodec.readText(new ByteArrayInputStream(responseBody), "choices", 0, "message", "content");
+    }
+
+    private static String legacyRequestBody(String model, String systemPrompt, String userMessage,
+            List<ChatMessage> history) {
+        StringBuilder json = new StringBuilder();
+        json.append("{");
+        json.append("\"model\":\"").append(model).append("\",");
+        json.append("\"messages\":[");
+        json.append("{\"role\":\"system\",\"content\":\"").append(escapeJson(systemPrompt)).append("\"}");
+        for (ChatMessage turn : history) {
+            json.append(",{\"role\":\"").append(turn.role().wireName()).append("\",\"content\":\"")
+                    .append(escapeJson(turn.content())).append("\"}");
+        }
+        json.append(",{\"role\":\"user\",\"content\":\"").append(escapeJson(userMessage)).append("\"}");
+        json.append("],");
+        json.append("\"max_tokens\":500");
+        json.append("}");
+        return json.toString();
+    }
+
+    private static String escapeJson(String s) {
+        if (s == null)
+            return "";
+        return s.replace("\\", "\\\\")
+                .replace("\"", "\\\"")
+                .replace("\n", "\\n")
+                .replace("\r", "\\r")
+                .replace("\t", "\\t");
+    }
+}
@@ -0,0 +1,121 @@
+package com.ainpcconnector.behavior;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * One autonomous pass over every loaded NPC: look up its state, count down
+ * timers, drift mood and energy, and pick a new wander target when the action
+ * timer runs out. Compares AutonomousStateTable with the map of per-NPC state
+ * objects it replaced. Run with -prof gc to compare allocation.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class AutonomousStateBenchmark {
+
+    /**
+     * The per-NPC object the table replaced. The target was an immutable vector,
+     * so every new target allocated one.
+     */
+    static final class LegacyState {
+        AutonomousController.BehaviorMode currentMode = AutonomousController.BehaviorMode.IDLE;
+        Target targetPosition;
+        int actionTimer;
+        int idleTimer;
+        double mood = 0.5;
+        double energy = 1.0;
+        List<String> currentGoals = new ArrayList<>();
+    }
+
+    record Target(double x, double y, double z) {
+    }
+
+    @Param({ "100", "1000" })
+    public int npcs;
+
+    private UUID[] loaded;
+    private final Map<UUID, LegacyState> legacy = new ConcurrentHashMap<>();
+    private final AutonomousStateTable table = new AutonomousStateTable();
+    private final Random random = new Random(7);
+
+    @Setup
+    public void setup() {
+        loaded = new UUID[npcs];
+        for (int i = 0; i < npcs; i++) {
+            loaded[i] = UUID.randomUUID();
+            LegacyState state = new LegacyState();
+            state.actionTimer = i % 40;
+            state.currentGoals.add(AutonomousStateTable.GOALS[i % AutonomousStateTable.GOALS.length]);
+            legacy.put(loaded[i], state);
+
+            int slot = table.acquire(loaded[i], random);
+            table.setActionTimer(slot, i % 40);
+        }
+    }
+
+    @Benchmark
+    public double mapOfObjects() {
+        double sum = 0;
+        for (UUID uuid : loaded) {
+            LegacyState state = legacy.get(uuid);
+            state.idleTimer++;
+            state.energy = Math.max(0, state.energy - 0.001);
+            state.mood = state.mood * 0.99 + 0.005;
+            if (--state.actionTimer <= 0) {
+                state.actionTimer = 40;
+                state.currentMode = AutonomousController.BehaviorMode.WANDERING;
+                state.targetPosition = new Target(state.idleTimer, 64, -state.idleTimer);
+            }
+            if (state.currentGoals.contains("rest")) {
+                sum += state.energy;
+            }
+            sum += state.targetPosition != null ? state.targetPosition.x() : 0;
+        }
+        return sum;
+    }
+
+    @Benchmark
+    public double stateTable() {
+        int rest = 1 << 2;
+        double sum = 0;
+        for (UUID uuid : loaded) {
+            int slot = table.slot(uuid);
+            table.setIdleTimer(slot, table.idleTimer(slot) + 1);
+            table.setEnergy(slot, Math.max(0, table.energy(slot) - 0.001));
+            table.setMood(slot, table.mood(slot) * 0.99 + 0.005);
+            int timer = table.actionTimer(slot) - 1;
+            if (timer <= 0) {
+                timer = 40;
+                table.setMode(slot, AutonomousController.BehaviorMode.WANDERING);
+                table.setTarget(slot, table.idleTimer(slot), 64, -table.idleTimer(slot));
+            }
+            table.setActionTimer(slot, timer);
+            if ((table.goals(slot) & rest) != 0) {
+                sum += table.energy(slot);
+            }
+            sum += table.hasTarget(slot) ? table.targetX(slot) : 0;
+        }
+        return sum;
+    }
+}
@@ -0,0 +1,82 @@
+package com.ainpcconnector.npc;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.function.ToIntFunction;
+
+/**
+ * Allocation regression check for the per-tick NPC path that runs without a
+ * world: the tick scheduler queueing and rescheduling due NPCs, and each NPC's
+ * profile and trait lookups. One invocation is one server tick.
+ * Run with -prof gc; gc.alloc.rate.norm should stay at ~0 B/op.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TickPathBenchmark {
+
+    private static final long NO_BUDGET_LIMIT = Long.MAX_VALUE;
+
+    @Param({ "200", "2000" })
+    public int npcs;
+
+    @Param({ "20" })
+    public int interval;
+
+    private final NPCTickScheduler scheduler = new NPCTickScheduler();
+    private final Map<UUID, NPCProfile> profiles = new ConcurrentHashMap<>();
+    private int tick = 0;
+    private double sink;
+
+    // Reused every tick, as in NPCManager
+    private final Consumer<UUID> tickTask = this::tickNPC;
+    private final ToIntFunction<UUID> intervalTask = uuid -> interval;
+
+    @Setup
+    public void setup() {
+        for (int i = 0; i < npcs; i++) {
+            UUID uuid = UUID.randomUUID();
+            NPCProfile profile = new NPCProfile(uuid, "NPC " + i, "easy_npc:humanoid");
+            profile.setAiEnabled(true);
+            profiles.put(uuid, profile);
+            scheduler.add(uuid, interval);
+        }
+        // Let the wheel's buckets reach their steady-state capacity
+        for (int i = 0; i < interval * 4; i++) {
+            scheduler.tick(++tick, NO_BUDGET_LIMIT, tickTask, intervalTask);
+        }
+    }
+
+    @Benchmark
+    public double serverTick() {
+        scheduler.tick(++tick, NO_BUDGET_LIMIT, tickTask, intervalTask);
+        return sink;
+    }
+
+    private void tickNPC(UUID uuid) {
+        NPCProfile profile = profiles.get(uuid);
+        if (profile == null || !profile.isAiEnabled()) {
+            return;
+        }
+        sink += profile.getPersonalityTrait("friendliness") + profile.getPersonalityTrait("curiosity")
+                + profile.getPersonalityTrait("aggression") + profile.getPersonalityTrait("patience");
+    }
+}
@@ -0,0 +1,79 @@
+package com.ainpcconnector.npc;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * TraitCodec against the pretty-printed Gson JSON that personality traits
+ * used to be stored as. Run with -prof gc to compare allocation; the encoded
+ * sizes are checked in TraitCodecTest.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TraitCodecBenchmark {
+
+    private static final Gson GSON = new GsonBuilder().setPrettyPrinting().create();
+
+    // 0 = the four standard traits only
+    @Param({ "0", "4" })
+    public int customTraits;
+
+    private Map<String, Double> traits;
+    private byte[] blob;
+    private String json;
+
+    @Setup
+    public void setup() {
+        traits = new LinkedHashMap<>();
+        traits.put("friendliness", 0.7);
+        traits.put("curiosity", 0.5);
+        traits.put("aggression", 0.1);
+        traits.put("humor", 0.3);
+        for (int i = 0; i < customTraits; i++) {
+            traits.put("custom_trait_" + i, i / 10.0);
+        }
+        blob = TraitCodec.encode(traits);
+        json = GSON.toJson(traits);
+    }
+
+    @Benchmark
+    public byte[] encodeBinary() {
+        return TraitCodec.encode(traits);
+    }
+
+    @Benchmark
+    public byte[] encodeJson() {
+        return GSON.toJson(traits).getBytes(StandardCharsets.UTF_8);
+    }
+
+    @Benchmark
+    public Map<String, Double> decodeBinary() {
+        return TraitCodec.decode(blob);
+    }
+
+    @Benchmark
+    @SuppressWarnings("unchecked")
+    public Map<String, Double> decodeJson() {
+        return GSON.fromJson(json, Map.class);
+    }
+}
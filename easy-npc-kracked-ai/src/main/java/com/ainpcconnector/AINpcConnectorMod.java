@@ -1,9 +1,13 @@
 package com.ainpcconnector;
 
+import com.ainpcconnector.ai.AIProviderRegistry;
+import com.ainpcconnector.ai.AIRequestScheduler;
 import com.ainpcconnector.behavior.AIController;
 import com.ainpcconnector.behavior.AutonomousController;
 import com.ainpcconnector.config.ConfigManager;
 import com.ainpcconnector.npc.NPCManager;
+import com.ainpcconnector.npc.NPCSpatialIndex;
+import com.ainpcconnector.npc.PlayerProximity;
 import com.ainpcconnector.web.WebServer;
 import net.fabricmc.api.ModInitializer;
 import net.fabricmc.fabric.api.event.lifecycle.v1.ServerLifecycleEvents;
@@ -56,6 +60,7 @@ public class AINpcConnectorMod implements ModInitializer {
 
         // Initialize AI controller
         aiController = new AIController(configManager);
+        npcManager.setAIController(aiController);
         LOGGER.info("[Easy NPC kracked AI] AI Controller initialized");
 
         // Initialize autonomous controller
@@ -81,12 +86,7 @@ public class AINpcConnectorMod implements ModInitializer {
         ServerLifecycleEvents.SERVER_STOPPING.register(server -> {
             LOGGER.info("[Easy NPC kracked AI] Server stopping...");
 
-            // Save NPC data
-            if (npcManager != null) {
-                npcManager.saveAll();
-            }
-
-            // Stop web server
+            // Stop web server so the dashboard can't edit profiles any more
             if (webServer != null) {
                 webServer.stop();
             }
@@ -101,6 +101,20 @@ public class AINpcConnectorMod implements ModInitializer {
                 autonomousController.shutdown();
             }
 
+            // Drop queued AI requests so no reply lands after the final save
+            AIRequestScheduler.getInstance().shutdown();
+
+            // Stop the persistence thread and save NPC data one last time
+            if (npcManager != null) {
+                npcManager.shutdown();
+            }
+            // Integrated servers can be restarted in the same JVM
+            NPCSpatialIndex.getInstance().clear();
+            PlayerProximity.getInstance().clear();
+
+            // Release cached providers and their shared HTTP resources
+            AIProviderRegistry.getInstance().shutdown();
+
             LOGGER.info("[Easy NPC kracked AI] Mod shutdown complete");
         });
 
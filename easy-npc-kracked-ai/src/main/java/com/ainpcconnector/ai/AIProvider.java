@@ -1,6 +1,8 @@
 package com.ainpcconnector.ai;
 
+import java.util.List;
 import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
 
 /**
  * Interface for AI provider implementations.
@@ -11,15 +13,54 @@ public interface AIProvider {
     /**
      * Send a chat completion request asynchronously.
      *
+     * @param systemPrompt The system prompt defining AI behavior
+     * @param userMessage  The user's message
+     * @param history      Previous turns, oldest first
+     * @return CompletableFuture containing the AI response
+     */
+    CompletableFuture<String> chatCompletion(
+            String systemPrompt,
+            String userMessage,
+            List<ChatMessage> history);
+
+    /**
+     * Send a chat completion request with a flat transcript as history.
+     *
      * @param systemPrompt        The system prompt defining AI behavior
      * @param userMessage         The user's message
      * @param conversationHistory Previous conversation context
      * @return CompletableFuture containing the AI response
      */
-    CompletableFuture<String> chatCompletion(
+    default CompletableFuture<String> chatCompletion(
             String systemPrompt,
             String userMessage,
-            String conversationHistory);
+            String conversationHistory) {
+        return chatCompletion(systemPrompt, userMessage, ChatMessage.fromTranscript(conversationHistory));
+    }
+
+    /**
+     * Send a streaming chat completion request.
+     * Text deltas are passed to the listener as they arrive; the returned future
+     * completes with the full response. Providers without streaming support
+     * deliver the whole response as a single delta.
+     *
+     * @param systemPrompt The system prompt defining AI behavior
+     * @param userMessage  The user's message
+     * @param history      Previous turns, oldest first
+     * @param onDelta      Receives each text delta in order
+     * @return CompletableFuture containing the full AI response
+     */
+    default CompletableFuture<String> streamChatCompletion(
+            String systemPrompt,
+            String userMessage,
+            List<ChatMessage> history,
+            Consumer<String> onDelta) {
+        return chatCompletion(systemPrompt, userMessage, history)
+                .thenApply(response -> {
+                    onDelta.accept(response);
+                    return response;
+                });
+    }
 
     /**
      * Test if the provider is reachable with current config.
@@ -33,6 +74,14 @@ public interface AIProvider {
      */
     String getName();
 
+    /**
+     * Stable identifier used to group requests to the same backend.
+     * Defaults to the provider name.
+     */
+    default String getId() {
+        return getName();
+    }
+
     /**
      * Check if this provider is configured and ready.
      */
@@ -1,14 +1,16 @@
 package com.ainpcconnector.ai;
 
-import com.ainpcconnector.ai.openai.OpenAIProvider;
 import com.ainpcconnector.config.ModConfig;
 
 /**
  * Factory for creating AI provider instances.
  * Uses generic AI providers from config - works with any OpenAI-compatible API.
+ * Configured providers are cached in {@link AIProviderRegistry}.
  */
 public class AIProviderFactory {
 
+    private static final AIProvider NOT_CONFIGURED = new DummyAIProvider();
+
     /**
      * Create an AI provider by ID from the config.
      * Returns default provider if ID not found.
@@ -27,15 +29,10 @@ public class AIProviderFactory {
 
         if (providerConfig == null) {
             // No provider configured, return a dummy one
-            return new DummyAIProvider();
+            return NOT_CONFIGURED;
         }
 
-        // All providers use OpenAI-compatible API
-        return new OpenAIProvider(
-                providerConfig.getName(),
-                providerConfig.getApiKey(),
-                providerConfig.getEndpoint(),
-                providerConfig.getModel());
+        return AIProviderRegistry.getInstance().get(providerConfig);
     }
 
     /**
@@ -65,11 +62,7 @@ public class AIProviderFactory {
      * Create an AI provider directly from config (for testing).
      */
     public static AIProvider createFromConfig(ModConfig.ProviderConfig providerConfig) {
-        return new OpenAIProvider(
-                providerConfig.getName(),
-                providerConfig.getApiKey(),
-                providerConfig.getEndpoint(),
-                providerConfig.getModel());
+        return AIProviderRegistry.getInstance().create(providerConfig);
     }
 
     /**
@@ -78,7 +71,7 @@ public class AIProviderFactory {
     private static class DummyAIProvider implements AIProvider {
         @Override
         public java.util.concurrent.CompletableFuture<String> chatCompletion(
-                String systemPrompt, String userMessage, String conversationHistory) {
+                String systemPrompt, String userMessage, java.util.List<ChatMessage> history) {
             return java.util.concurrent.CompletableFuture.completedFuture(
                     "[No AI provider configured. Please add an AI provider in settings.]");
         }
@@ -0,0 +1,125 @@
+package com.ainpcconnector.ai;
+
+import com.ainpcconnector.ai.openai.OpenAIProvider;
+import com.ainpcconnector.config.ModConfig;
+import okhttp3.ConnectionPool;
+import okhttp3.Dispatcher;
+import okhttp3.OkHttpClient;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Registry of long-lived AI provider instances.
+ * Caches one provider per ProviderConfig id and shares a single OkHttp
+ * connection pool and dispatcher across all of them. The dispatcher runs
+ * callbacks on virtual threads, so in-flight requests do not pin platform threads.
+ */
+public class AIProviderRegistry {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(AIProviderRegistry.class);
+
+    private static AIProviderRegistry instance;
+
+    private final Map<String, AIProvider> providers = new ConcurrentHashMap<>();
+
+    private final ConnectionPool connectionPool;
+    private final Dispatcher dispatcher;
+    private final OkHttpClient sharedClient;
+
+    private AIProviderRegistry() {
+        this.connectionPool = new ConnectionPool(16, 5, TimeUnit.MINUTES);
+        this.dispatcher = new Dispatcher(Executors.newThreadPerTaskExecutor(
+                Thread.ofVirtual().name("AI-Http-", 0).factory()));
+        // Per-provider ceilings are enforced by AIRequestScheduler; these are global safety limits
+        this.dispatcher.setMaxRequests(256);
+        this.dispatcher.setMaxRequestsPerHost(64);
+        this.sharedClient = new OkHttpClient.Builder()
+                .connectionPool(connectionPool)
+                .dispatcher(dispatcher)
+                .build();
+    }
+
+    public static synchronized AIProviderRegistry getInstance() {
+        if (instance == null) {
+            instance = new AIProviderRegistry();
+        }
+        return instance;
+    }
+
+    /**
+     * Get the cached provider for a config, creating it on first use.
+     */
+    public AIProvider get(ModConfig.ProviderConfig providerConfig) {
+        return providers.computeIfAbsent(providerConfig.getId(), id -> {
+            LOGGER.info("[Easy NPC kracked AI] Creating AI provider '{}' ({})", providerConfig.getName(), id);
+            return create(providerConfig);
+        });
+    }
+
+    /**
+     * Create a new, uncached provider that still uses the shared HTTP resources.
+     */
+    public AIProvider create(ModConfig.ProviderConfig providerConfig) {
+        // All providers use OpenAI-compatible API
+        return new OpenAIProvider(
+                providerConfig.getId(),
+                providerConfig.getName(),
+                providerConfig.getApiKey(),
+                providerConfig.getEndpoint(),
+                providerConfig.getModel(),
+                new ProviderTransport(newHttpClient(30), newStreamingHttpClient(30)));
+    }
+
+    /**
+     * Derive an HTTP client with its own call timeout. Derived clients share the
+     * connection pool and dispatcher of the registry.
+     */
+    public OkHttpClient newHttpClient(long callTimeoutSeconds) {
+        return sharedClient.newBuilder()
+                .callTimeout(callTimeoutSeconds, TimeUnit.SECONDS)
+                .build();
+    }
+
+    /**
+     * Derive an HTTP client for streamed responses: no overall call timeout, but
+     * the call fails if no data arrives for the given number of seconds.
+     */
+    public OkHttpClient newStreamingHttpClient(long idleTimeoutSeconds) {
+        return sharedClient.newBuilder()
+                .callTimeout(0, TimeUnit.SECONDS)
+                .readTimeout(idleTimeoutSeconds, TimeUnit.SECONDS)
+                .build();
+    }
+
+    /**
+     * Drop the cached provider for the given config id.
+     * Called when a provider is updated or deleted.
+     */
+    public void invalidate(String providerId) {
+        if (providerId != null && providers.remove(providerId) != null) {
+            LOGGER.info("[Easy NPC kracked AI] Invalidated cached AI provider {}", providerId);
+        }
+    }
+
+    /**
+     * Release all cached providers and shared HTTP resources.
+     */
+    public void shutdown() {
+        providers.clear();
+        dispatcher.cancelAll();
+        dispatcher.executorService().shutdown();
+        connectionPool.evictAll();
+
+        synchronized (AIProviderRegistry.class) {
+            if (instance == this) {
+                instance = null;
+            }
+        }
+        LOGGER.info("[Easy NPC kracked AI] AI provider registry shut down");
+    }
+}
@@ -0,0 +1,464 @@
+package com.ainpcconnector.ai;
+
+import com.ainpcconnector.AINpcConnectorMod;
+import com.ainpcconnector.config.ConfigManager;
+import com.ainpcconnector.config.ModConfig;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+/**
+ * Central scheduler for AI provider calls.
+ * Every chat completion goes through a per-provider lane that enforces the
+ * provider's concurrency ceiling and tokens-per-minute budget. Queued requests
+ * are served strictly by priority class and round-robin across requesters
+ * within a class; ambient NPC chatter is shed when the queue backs up.
+ */
+public class AIRequestScheduler {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(AIRequestScheduler.class);
+
+    // Completion budget requested by the providers (max_tokens)
+    private static final int COMPLETION_TOKENS = 500;
+    private static final UUID NO_REQUESTER = new UUID(0L, 0L);
+
+    /**
+     * Priority classes, highest first.
+     */
+    public enum Priority {
+        PLAYER,           // A player is waiting for the answer
+        NPC_CONVERSATION, // NPC-to-NPC dialogue
+        BACKGROUND        // TTS and other non-interactive work
+    }
+
+    private static AIRequestScheduler instance;
+
+    private final Map<String, Lane> lanes = new ConcurrentHashMap<>();
+    private final Map<String, ProviderHealth> health = new ConcurrentHashMap<>();
+    private final ScheduledExecutorService timer;
+
+    private AIRequestScheduler() {
+        this.timer = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "AI-Request-Scheduler");
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    public static synchronized AIRequestScheduler getInstance() {
+        if (instance == null) {
+            instance = new AIRequestScheduler();
+        }
+        return instance;
+    }
+
+    /**
+     * Schedule a chat completion. Cached responses are returned immediately.
+     */
+    public CompletableFuture<String> chat(AIProvider provider, Priority priority, UUID requester,
+            String systemPrompt, String message, List<ChatMessage> history) {
+        return execute(provider, priority, requester, systemPrompt, message, history, null);
+    }
+
+    /**
+     * Schedule a streaming chat completion. A cached response is delivered as a single delta.
+     */
+    public CompletableFuture<String> streamChat(AIProvider provider, Priority priority, UUID requester,
+            String systemPrompt, String message, List<ChatMessage> history, Consumer<String> onDelta) {
+        return execute(provider, priority, requester, systemPrompt, message, history, onDelta);
+    }
+
+    private CompletableFuture<String> execute(AIProvider provider, Priority priority, UUID requester,
+            String systemPrompt, String message, List<ChatMessage> history, Consumer<String> onDelta) {
+        AIResponseCache cache = AIResponseCache.getInstance();
+        AIResponseCache.Key key = cache.key(provider, systemPrompt, message, history);
+        String cached = cache.get(key);
+        if (cached != null) {
+            if (onDelta != null) {
+                onDelta.accept(cached);
+            }
+            return CompletableFuture.completedFuture(cached);
+        }
+
+        ModConfig config = getConfig();
+        ModConfig.AIConfig aiConfig = config != null ? config.getAi() : new ModConfig.AIConfig();
+        int tokens = estimateTokens(systemPrompt, message) + ChatMessage.estimateTokens(history);
+
+        CompletableFuture<String> request = new ResilientRequest(this, fallbackChain(provider, config), priority,
+                requester, tokens, aiConfig,
+                (target, sink) -> onDelta != null
+                        ? target.streamChatCompletion(systemPrompt, message, history, sink)
+                        : target.chatCompletion(systemPrompt, message, history),
+                onDelta != null ? onDelta : delta -> {
+                }).start();
+        request.thenAccept(response -> cache.put(key, response));
+        return request;
+    }
+
+    /**
+     * The provider followed by the configured fallback providers.
+     */
+    private List<AIProvider> fallbackChain(AIProvider primary, ModConfig config) {
+        List<AIProvider> chain = new ArrayList<>();
+        chain.add(primary);
+        if (config == null) {
+            return chain;
+        }
+        for (String id : config.getAi().getFallbackProviderIds()) {
+            ModConfig.ProviderConfig providerConfig = config.getAIProviderById(id);
+            if (providerConfig == null || id.equals(primary.getId())) {
+                continue;
+            }
+            AIProvider fallback = AIProviderRegistry.getInstance().get(providerConfig);
+            if (fallback.isConfigured()) {
+                chain.add(fallback);
+            }
+        }
+        return chain;
+    }
+
+    ProviderHealth getHealth(AIProvider provider) {
+        return health.computeIfAbsent(provider.getId(), id -> new ProviderHealth());
+    }
+
+    void schedule(Runnable task, long delayMillis) {
+        try {
+            timer.schedule(task, delayMillis, TimeUnit.MILLISECONDS);
+        } catch (RejectedExecutionException e) {
+            // Shutting down
+        }
+    }
+
+    /**
+     * Schedule an arbitrary provider call.
+     * The call is started once the provider lane admits it. Cancelling the
+     * returned future removes a queued call or cancels a running one.
+     */
+    public <T> CompletableFuture<T> submit(AIProvider provider, Priority priority, UUID requester,
+            int estimatedTokens, Supplier<CompletableFuture<T>> call) {
+        Lane lane = lanes.computeIfAbsent(provider.getId(), Lane::new);
+        Job<T> job = new Job<>(priority, requester != null ? requester : NO_REQUESTER, estimatedTokens, call);
+
+        ModConfig config = getConfig();
+        int queueLimit = config != null ? config.getAi().getSchedulerQueueLimit() : 32;
+        List<Job<?>> shed = new ArrayList<>();
+        synchronized (lane) {
+            int queued = lane.queuedCount();
+            if (priority == Priority.BACKGROUND && queued >= queueLimit / 2
+                    || priority == Priority.NPC_CONVERSATION && queued >= queueLimit) {
+                lane.shedCount++;
+                return CompletableFuture.failedFuture(
+                        new RejectedExecutionException("AI request queue is full for provider " + provider.getName()));
+            }
+            if (priority == Priority.PLAYER && queued >= queueLimit) {
+                // Make room for the player by dropping queued ambient work
+                lane.shedLowPriority(queued - queueLimit + 1, shed);
+            }
+            lane.enqueue(job);
+        }
+
+        for (Job<?> dropped : shed) {
+            dropped.result.completeExceptionally(
+                    new RejectedExecutionException("Shed to make room for player requests"));
+        }
+
+        drain(lane);
+        return job.result;
+    }
+
+    /**
+     * Rough token estimate for a request: prompt characters / 4 plus the completion budget.
+     */
+    public static int estimateTokens(String... parts) {
+        int chars = 0;
+        for (String part : parts) {
+            if (part != null) {
+                chars += part.length();
+            }
+        }
+        return chars / 4 + COMPLETION_TOKENS;
+    }
+
+    /**
+     * Snapshot of lane state for the web API.
+     */
+    public List<Map<String, Object>> getStats() {
+        List<Map<String, Object>> stats = new ArrayList<>();
+        for (Lane lane : lanes.values()) {
+            synchronized (lane) {
+                Map<String, Object> entry = new LinkedHashMap<>();
+                entry.put("providerId", lane.providerId);
+                entry.put("inFlight", lane.inFlight);
+                for (Priority priority : Priority.values()) {
+                    entry.put("queued" + priority.name(), lane.queues.get(priority).size());
+                }
+                entry.put("shed", lane.shedCount);
+                ProviderHealth providerHealth = health.get(lane.providerId);
+                if (providerHealth != null) {
+                    entry.put("circuit", providerHealth.getState().name());
+                    entry.put("p95LatencyMillis", providerHealth.getP95LatencyMillis());
+                }
+                stats.add(entry);
+            }
+        }
+        return stats;
+    }
+
+    /**
+     * Stop the scheduler and fail everything still queued.
+     */
+    public void shutdown() {
+        for (Lane lane : lanes.values()) {
+            List<Job<?>> queued = new ArrayList<>();
+            synchronized (lane) {
+                lane.shedLowPriority(Integer.MAX_VALUE, queued);
+                while (true) {
+                    Job<?> job = lane.poll();
+                    if (job == null) {
+                        break;
+                    }
+                    queued.add(job);
+                }
+            }
+            for (Job<?> job : queued) {
+                job.result.cancel(false);
+            }
+        }
+        lanes.clear();
+        timer.shutdownNow();
+
+        synchronized (AIRequestScheduler.class) {
+            if (instance == this) {
+                instance = null;
+            }
+        }
+    }
+
+    private void drain(Lane lane) {
+        List<Job<?>> admitted = new ArrayList<>();
+        synchronized (lane) {
+            ModConfig.ProviderConfig limits = getProviderConfig(lane.providerId);
+            int maxConcurrent = limits != null ? limits.getMaxConcurrentRequests() : 4;
+            int tokensPerMinute = limits != null ? limits.getTokensPerMinute() : 0;
+
+            while (lane.inFlight < maxConcurrent) {
+                Job<?> next = lane.peek();
+                if (next == null) {
+                    break;
+                }
+                if (next.result.isDone()) {
+                    lane.poll(); // Cancelled while queued
+                    continue;
+                }
+
+                if (tokensPerMinute > 0) {
+                    long waitMillis = lane.reserveTokens(next.estimatedTokens, tokensPerMinute);
+                    if (waitMillis > 0) {
+                        if (!lane.refillScheduled) {
+                            lane.refillScheduled = true;
+                            schedule(() -> {
+                                synchronized (lane) {
+                                    lane.refillScheduled = false;
+                                }
+                                drain(lane);
+                            }, waitMillis);
+                        }
+                        break;
+                    }
+                }
+
+                lane.poll();
+                lane.inFlight++;
+                admitted.add(next);
+            }
+        }
+
+        for (Job<?> job : admitted) {
+            start(lane, job);
+        }
+    }
+
+    private <T> void start(Lane lane, Job<T> job) {
+        CompletableFuture<T> inner;
+        try {
+            inner = job.call.get();
+        } catch (Exception e) {
+            inner = CompletableFuture.failedFuture(e);
+        }
+
+        CompletableFuture<T> running = inner;
+        job.result.whenComplete((result, ex) -> {
+            if (job.result.isCancelled()) {
+                running.cancel(true);
+            }
+        });
+        running.whenComplete((result, ex) -> {
+            synchronized (lane) {
+                lane.inFlight--;
+            }
+            if (ex != null) {
+                job.result.completeExceptionally(ex);
+            } else {
+                job.result.complete(result);
+            }
+            drain(lane);
+        });
+    }
+
+    private ModConfig getConfig() {
+        ConfigManager configManager = AINpcConnectorMod.getConfigManager();
+        return configManager != null ? configManager.getConfig() : null;
+    }
+
+    private ModConfig.ProviderConfig getProviderConfig(String providerId) {
+        ModConfig config = getConfig();
+        return config != null ? config.getAIProviderById(providerId) : null;
+    }
+
+    /**
+     * A scheduled provider call.
+     */
+    private static final class Job<T> {
+        private final Priority priority;
+        private final UUID requester;
+        private final int estimatedTokens;
+        private final Supplier<CompletableFuture<T>> call;
+        private final CompletableFuture<T> result = new CompletableFuture<>();
+
+        private Job(Priority priority, UUID requester, int estimatedTokens, Supplier<CompletableFuture<T>> call) {
+            this.priority = priority;
+            this.requester = requester;
+            this.estimatedTokens = estimatedTokens;
+            this.call = call;
+        }
+    }
+
+    /**
+     * Per-provider queue state. All fields are guarded by the lane's monitor.
+     */
+    private static final class Lane {
+        private final String providerId;
+        private final Map<Priority, Map<UUID, ArrayDeque<Job<?>>>> queues = new EnumMap<>(Priority.class);
+
+        private int inFlight = 0;
+        private long shedCount = 0;
+
+        // Token bucket for the tokens-per-minute budget
+        private double tokens = -1;
+        private long lastRefillNanos = System.nanoTime();
+        private boolean refillScheduled = false;
+
+        private Lane(String providerId) {
+            this.providerId = providerId;
+            for (Priority priority : Priority.values()) {
+                queues.put(priority, new LinkedHashMap<>());
+            }
+        }
+
+        private void enqueue(Job<?> job) {
+            queues.get(job.priority).computeIfAbsent(job.requester, k -> new ArrayDeque<>()).add(job);
+        }
+
+        /**
+         * Head of the highest non-empty priority class, taking requesters in turn.
+         */
+        private Job<?> peek() {
+            for (Priority priority : Priority.values()) {
+                Map<UUID, ArrayDeque<Job<?>>> byRequester = queues.get(priority);
+                if (!byRequester.isEmpty()) {
+                    return byRequester.values().iterator().next().peek();
+                }
+            }
+            return null;
+        }
+
+        /**
+         * Remove the head job and rotate its requester to the back of the class.
+         */
+        private Job<?> poll() {
+            for (Priority priority : Priority.values()) {
+                Map<UUID, ArrayDeque<Job<?>>> byRequester = queues.get(priority);
+                if (byRequester.isEmpty()) {
+                    continue;
+                }
+                Iterator<Map.Entry<UUID, ArrayDeque<Job<?>>>> it = byRequester.entrySet().iterator();
+                Map.Entry<UUID, ArrayDeque<Job<?>>> first = it.next();
+                Job<?> job = first.getValue().poll();
+                it.remove();
+                if (!first.getValue().isEmpty()) {
+                    byRequester.put(first.getKey(), first.getValue());
+                }
+                return job;
+            }
+            return null;
+        }
+
+        private int queuedCount() {
+            int count = 0;
+            for (Map<UUID, ArrayDeque<Job<?>>> byRequester : queues.values()) {
+                for (ArrayDeque<Job<?>> deque : byRequester.values()) {
+                    count += deque.size();
+                }
+            }
+            return count;
+        }
+
+        /**
+         * Remove up to {@code count} queued jobs, lowest priority and newest first.
+         */
+        private void shedLowPriority(int count, List<Job<?>> shed) {
+            for (Priority priority : new Priority[]{Priority.BACKGROUND, Priority.NPC_CONVERSATION}) {
+                Iterator<ArrayDeque<Job<?>>> it = queues.get(priority).values().iterator();
+                while (it.hasNext() && shed.size() < count) {
+                    ArrayDeque<Job<?>> deque = it.next();
+                    while (!deque.isEmpty() && shed.size() < count) {
+                        shed.add(deque.pollLast());
+                        shedCount++;
+                    }
+                    if (deque.isEmpty()) {
+                        it.remove();
+                    }
+                }
+            }
+        }
+
+        /**
+         * Take tokens from the bucket. Returns 0 on success, or how many
+         * milliseconds to wait until enough tokens have accumulated.
+         */
+        private long reserveTokens(int requested, int tokensPerMinute) {
+            long now = System.nanoTime();
+            double perMilli = tokensPerMinute / 60_000.0;
+            if (tokens < 0) {
+                tokens = tokensPerMinute; // Start with a full bucket
+            } else {
+                tokens = Math.min(tokensPerMinute, tokens + (now - lastRefillNanos) / 1_000_000.0 * perMilli);
+            }
+            lastRefillNanos = now;
+
+            // A single request larger than the whole budget waits for a full bucket
+            double needed = Math.min(requested, tokensPerMinute);
+            if (tokens >= needed) {
+                tokens -= needed;
+                return 0;
+            }
+            return (long) Math.ceil((needed - tokens) / perMilli);
+        }
+    }
+}
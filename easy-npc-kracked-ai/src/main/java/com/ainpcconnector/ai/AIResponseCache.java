@@ -0,0 +1,233 @@
+package com.ainpcconnector.ai;
+
+import com.ainpcconnector.AINpcConnectorMod;
+import com.ainpcconnector.config.ConfigManager;
+import com.ainpcconnector.config.ModConfig;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+import java.util.function.Supplier;
+
+/**
+ * Cache of AI responses for repeated prompts.
+ * Entries are keyed on provider, model, normalized system prompt, history and
+ * message, expire after a TTL and are evicted least-recently-used once the
+ * cache is full. Each entry holds a small pool of variant responses: until the
+ * pool is full lookups miss and the new response is added, after that a random
+ * variant is served so repeated greetings don't all sound the same.
+ * Expired entries are purged on writes, so the size bound counts live ones.
+ */
+public class AIResponseCache {
+
+    private static AIResponseCache instance;
+
+    // Scan for expired entries at most this often, unless the cache is over its size bound
+    private static final long PURGE_INTERVAL_MILLIS = 30_000;
+
+    private final LinkedHashMap<Key, Entry> entries = new LinkedHashMap<>(64, 0.75f, true);
+    // Guarded by entries
+    private long nextPurgeMillis = 0;
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+
+    private final Supplier<ModConfig.AIConfig> configSource;
+    private final LongSupplier clock;
+
+    private AIResponseCache() {
+        this(AIResponseCache::currentConfig, System::currentTimeMillis);
+    }
+
+    /**
+     * Cache reading its settings and the time from the given suppliers. For tests.
+     */
+    AIResponseCache(Supplier<ModConfig.AIConfig> configSource, LongSupplier clock) {
+        this.configSource = configSource;
+        this.clock = clock;
+    }
+
+    public static synchronized AIResponseCache getInstance() {
+        if (instance == null) {
+            instance = new AIResponseCache();
+        }
+        return instance;
+    }
+
+    /**
+     * Build the cache key for a request, or null if caching is disabled.
+     */
+    public Key key(AIProvider provider, String systemPrompt, String message, List<ChatMessage> history) {
+        ModConfig.AIConfig config = configSource.get();
+        if (config == null || !config.isResponseCacheEnabled()) {
+            return null;
+        }
+        return new Key(provider.getId(), provider.getModel(),
+                digest(normalize(systemPrompt)), digest(transcript(history)), normalize(message));
+    }
+
+    /**
+     * Look up a cached response. Returns null on a miss or while the entry's
+     * variant pool is still being filled.
+     */
+    public String get(Key key) {
+        ModConfig.AIConfig config = configSource.get();
+        if (key == null || config == null) {
+            return null;
+        }
+
+        synchronized (entries) {
+            Entry entry = entries.get(key);
+            if (entry != null && entry.expiresAtMillis <= clock.getAsLong()) {
+                entries.remove(key);
+                evictions.incrementAndGet();
+                entry = null;
+            }
+            if (entry != null && entry.variants.size() >= config.getResponseCacheVariants()) {
+                hits.incrementAndGet();
+                return entry.variants.get(ThreadLocalRandom.current().nextInt(entry.variants.size()));
+            }
+        }
+        misses.incrementAndGet();
+        return null;
+    }
+
+    /**
+     * Store a response under the key, adding it to the entry's variant pool.
+     */
+    public void put(Key key, String response) {
+        ModConfig.AIConfig config = configSource.get();
+        if (key == null || config == null || response == null || response.isBlank()) {
+            return;
+        }
+
+        synchronized (entries) {
+            long now = clock.getAsLong();
+            Entry entry = entries.get(key);
+            if (entry != null && entry.expiresAtMillis <= now) {
+                // Start a fresh variant pool rather than extending a stale one
+                entries.remove(key);
+                evictions.incrementAndGet();
+                entry = null;
+            }
+            if (entry == null) {
+                entry = new Entry(now + config.getResponseCacheTtlSeconds() * 1000L);
+                entries.put(key, entry);
+            }
+            if (entry.variants.size() < config.getResponseCacheVariants() && !entry.variants.contains(response)) {
+                entry.variants.add(response);
+            }
+
+            int maxEntries = config.getResponseCacheMaxEntries();
+            if (entries.size() > maxEntries || now >= nextPurgeMillis) {
+                purgeExpired(now);
+            }
+
+            // Drop least recently used entries beyond the size bound
+            var it = entries.entrySet().iterator();
+            while (entries.size() > maxEntries && it.hasNext()) {
+                it.next();
+                it.remove();
+                evictions.incrementAndGet();
+            }
+        }
+    }
+
+    /**
+     * Remove every expired entry. Caller holds the entries lock.
+     */
+    private void purgeExpired(long now) {
+        var it = entries.values().iterator();
+        while (it.hasNext()) {
+            if (it.next().expiresAtMillis <= now) {
+                it.remove();
+                evictions.incrementAndGet();
+            }
+        }
+        nextPurgeMillis = now + PURGE_INTERVAL_MILLIS;
+    }
+
+    /**
+     * Remove all entries. Metrics are kept.
+     */
+    public void clear() {
+        synchronized (entries) {
+            entries.clear();
+        }
+    }
+
+    /**
+     * Hit/miss counters and size for the web API.
+     */
+    public Map<String, Object> getStats() {
+        long hitCount = hits.get();
+        long missCount = misses.get();
+        long total = hitCount + missCount;
+
+        Map<String, Object> stats = new LinkedHashMap<>();
+        synchronized (entries) {
+            stats.put("size", entries.size());
+        }
+        stats.put("hits", hitCount);
+        stats.put("misses", missCount);
+        stats.put("evictions", evictions.get());
+        stats.put("hitRate", total > 0 ? (double) hitCount / total : 0.0);
+        return stats;
+    }
+
+    private static String normalize(String text) {
+        if (text == null) {
+            return "";
+        }
+        return text.trim().replaceAll("\\s+", " ").toLowerCase(Locale.ROOT);
+    }
+
+    private static String transcript(List<ChatMessage> history) {
+        StringBuilder sb = new StringBuilder();
+        for (ChatMessage turn : history) {
+            sb.append(turn.role().wireName()).append(": ").append(turn.content()).append('\n');
+        }
+        return sb.toString();
+    }
+
+    private static String digest(String text) {
+        try {
+            MessageDigest sha = MessageDigest.getInstance("SHA-256");
+            byte[] hash = sha.digest(text.getBytes(StandardCharsets.UTF_8));
+            return Base64.getEncoder().withoutPadding().encodeToString(Arrays.copyOf(hash, 16));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+
+    private static ModConfig.AIConfig currentConfig() {
+        ConfigManager configManager = AINpcConnectorMod.getConfigManager();
+        return configManager != null ? configManager.getConfig().getAi() : null;
+    }
+
+    /**
+     * Cache key. Prompt and history are stored as digests.
+     */
+    public record Key(String providerId, String model, String systemPromptHash, String historyHash, String message) {
+    }
+
+    private static final class Entry {
+        private final long expiresAtMillis;
+        private final List<String> variants = new ArrayList<>(2);
+
+        private Entry(long expiresAtMillis) {
+            this.expiresAtMillis = expiresAtMillis;
+        }
+    }
+}
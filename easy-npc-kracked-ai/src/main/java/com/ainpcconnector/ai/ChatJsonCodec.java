@@ -0,0 +1,212 @@
+package com.ainpcconnector.ai;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import okhttp3.MediaType;
+import okhttp3.RequestBody;
+import okio.BufferedSink;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.List;
+
+/**
+ * Streaming JSON encoding and decoding for provider requests and responses.
+ * Request bodies are written straight to the HTTP sink with a JsonGenerator,
+ * and responses are read with a JsonParser that pulls only the requested field
+ * instead of materializing the whole tree.
+ */
+public final class ChatJsonCodec {
+
+    public static final MediaType JSON = MediaType.get("application/json; charset=utf-8");
+
+    // The sink and body stream belong to OkHttp, the codec must not close them
+    private static final JsonFactory FACTORY = new JsonFactory()
+            .disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET)
+            .disable(JsonParser.Feature.AUTO_CLOSE_SOURCE);
+
+    /**
+     * Writes the content of a JSON request body.
+     */
+    @FunctionalInterface
+    public interface BodyWriter {
+        void write(JsonGenerator generator) throws IOException;
+    }
+
+    private ChatJsonCodec() {
+    }
+
+    /**
+     * A request body that is encoded when OkHttp writes it to the connection.
+     */
+    public static RequestBody body(BodyWriter writer) {
+        return new RequestBody() {
+            @Override
+            public MediaType contentType() {
+                return JSON;
+            }
+
+            @Override
+            public void writeTo(BufferedSink sink) throws IOException {
+                try (JsonGenerator generator = FACTORY.createGenerator(sink.outputStream())) {
+                    writer.write(generator);
+                }
+            }
+        };
+    }
+
+    /**
+     * OpenAI-compatible chat completion request.
+     */
+    public static RequestBody chatCompletionRequest(String model, String systemPrompt, List<ChatMessage> history,
+            String userMessage, boolean stream, int maxTokens) {
+        return body(gen -> {
+            gen.writeStartObject();
+            gen.writeStringField("model", model);
+            gen.writeArrayFieldStart("messages");
+            writeMessage(gen, "system", systemPrompt);
+            for (ChatMessage turn : history) {
+                writeMessage(gen, turn.role().wireName(), turn.content());
+            }
+            writeMessage(gen, "user", userMessage);
+            gen.writeEndArray();
+            if (stream) {
+                gen.writeBooleanField("stream", true);
+            }
+            gen.writeNumberField("max_tokens", maxTokens);
+            gen.writeEndObject();
+        });
+    }
+
+    /**
+     * Anthropic Messages API request. The system prompt is a top-level field.
+     */
+    public static RequestBody messagesRequest(String model, String systemPrompt, List<ChatMessage> messages,
+            boolean stream, int maxTokens) {
+        return body(gen -> {
+            gen.writeStartObject();
+            gen.writeStringField("model", model);
+            gen.writeNumberField("max_tokens", maxTokens);
+            if (stream) {
+                gen.writeBooleanField("stream", true);
+            }
+            gen.writeStringField("system", systemPrompt != null ? systemPrompt : "");
+            gen.writeArrayFieldStart("messages");
+            for (ChatMessage message : messages) {
+                writeMessage(gen, message.role().wireName(), message.content());
+            }
+            gen.writeEndArray();
+            gen.writeEndObject();
+        });
+    }
+
+    /**
+     * OpenAI-compatible text-to-speech request.
+     */
+    public static RequestBody speechRequest(String model, String input, String voice, String responseFormat) {
+        return body(gen -> {
+            gen.writeStartObject();
+            gen.writeStringField("model", model);
+            gen.writeStringField("input", input != null ? input : "");
+            gen.writeStringField("voice", voice);
+            gen.writeStringField("response_format", responseFormat);
+            gen.writeEndObject();
+        });
+    }
+
+    /**
+     * Read the scalar at a path from a response body stream. Path segments are
+     * field names or array indices. Returns null if the path is absent.
+     * The rest of the document is drained so the connection can be reused.
+     */
+    public static String readText(InputStream in, Object... path) throws IOException {
+        try (JsonParser parser = FACTORY.createParser(in)) {
+            String value = readText(parser, path);
+            while (parser.nextToken() != null) {
+                // Drain without building anything
+            }
+            return value;
+        }
+    }
+
+    /**
+     * Read the scalar at a path from a small JSON document such as a stream event.
+     */
+    public static String readText(String json, Object... path) throws IOException {
+        try (JsonParser parser = FACTORY.createParser(json)) {
+            return readText(parser, path);
+        }
+    }
+
+    /**
+     * Whether a JSON object has the given top-level field.
+     */
+    public static boolean hasField(String json, String field) throws IOException {
+        try (JsonParser parser = FACTORY.createParser(json)) {
+            if (parser.nextToken() != JsonToken.START_OBJECT) {
+                return false;
+            }
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                if (field.equals(parser.currentName())) {
+                    return true;
+                }
+                parser.nextToken();
+                parser.skipChildren();
+            }
+            return false;
+        }
+    }
+
+    private static void writeMessage(JsonGenerator gen, String role, String content) throws IOException {
+        gen.writeStartObject();
+        gen.writeStringField("role", role);
+        gen.writeStringField("content", content != null ? content : "");
+        gen.writeEndObject();
+    }
+
+    private static String readText(JsonParser parser, Object[] path) throws IOException {
+        if (parser.nextToken() == null) {
+            return null;
+        }
+
+        for (Object segment : path) {
+            boolean found = false;
+            if (segment instanceof String field) {
+                if (parser.currentToken() != JsonToken.START_OBJECT) {
+                    return null;
+                }
+                while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                    String name = parser.currentName();
+                    parser.nextToken();
+                    if (name.equals(field)) {
+                        found = true;
+                        break;
+                    }
+                    parser.skipChildren();
+                }
+            } else {
+                int index = (Integer) segment;
+                if (parser.currentToken() != JsonToken.START_ARRAY) {
+                    return null;
+                }
+                int i = 0;
+                JsonToken token;
+                while ((token = parser.nextToken()) != null && token != JsonToken.END_ARRAY) {
+                    if (i++ == index) {
+                        found = true;
+                        break;
+                    }
+                    parser.skipChildren();
+                }
+            }
+            if (!found) {
+                return null;
+            }
+        }
+
+        JsonToken token = parser.currentToken();
+        return token != null && token.isScalarValue() && token != JsonToken.VALUE_NULL ? parser.getText() : null;
+    }
+}
@@ -0,0 +1,98 @@
+package com.ainpcconnector.ai;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A single role-tagged turn of a conversation.
+ */
+public record ChatMessage(Role role, String content) {
+
+    // Per-message overhead of the chat formats (role tag, separators)
+    private static final int MESSAGE_OVERHEAD_TOKENS = 4;
+
+    public enum Role {
+        USER("user"),
+        ASSISTANT("assistant");
+
+        private final String wireName;
+
+        Role(String wireName) {
+            this.wireName = wireName;
+        }
+
+        /**
+         * Role name used by the chat APIs.
+         */
+        public String wireName() {
+            return wireName;
+        }
+
+        public static Role fromWireName(String name) {
+            return "assistant".equalsIgnoreCase(name) ? ASSISTANT : USER;
+        }
+    }
+
+    public ChatMessage {
+        content = content != null ? content : "";
+    }
+
+    public static ChatMessage user(String content) {
+        return new ChatMessage(Role.USER, content);
+    }
+
+    public static ChatMessage assistant(String content) {
+        return new ChatMessage(Role.ASSISTANT, content);
+    }
+
+    /**
+     * Rough token estimate: characters / 4 plus the message overhead.
+     */
+    public int estimateTokens() {
+        return content.length() / 4 + MESSAGE_OVERHEAD_TOKENS;
+    }
+
+    public static int estimateTokens(List<ChatMessage> messages) {
+        int tokens = 0;
+        for (ChatMessage message : messages) {
+            tokens += message.estimateTokens();
+        }
+        return tokens;
+    }
+
+    /**
+     * The most recent turns that fit in the token budget, oldest first.
+     */
+    public static List<ChatMessage> window(List<ChatMessage> turns, int tokenBudget) {
+        int tokens = 0;
+        int start = turns.size();
+        while (start > 0) {
+            int next = turns.get(start - 1).estimateTokens();
+            if (tokens + next > tokenBudget) {
+                break;
+            }
+            tokens += next;
+            start--;
+        }
+        return turns.subList(start, turns.size());
+    }
+
+    /**
+     * Split a flat transcript ("NPC: ..." lines for the NPC, anything else from
+     * the other side) into turns.
+     */
+    public static List<ChatMessage> fromTranscript(String transcript) {
+        List<ChatMessage> turns = new ArrayList<>();
+        if (transcript == null || transcript.isEmpty()) {
+            return turns;
+        }
+        for (String line : transcript.split("\n")) {
+            if (line.startsWith("NPC: ")) {
+                turns.add(assistant(line.substring(5)));
+            } else if (!line.isBlank()) {
+                turns.add(user(line));
+            }
+        }
+        return turns;
+    }
+}
@@ -0,0 +1,94 @@
+package com.ainpcconnector.ai;
+
+import java.util.Arrays;
+
+/**
+ * Circuit breaker and latency tracking for one provider.
+ * After enough consecutive failures the circuit opens and requests fail fast;
+ * once the open period has passed a single probe request is let through, and
+ * its outcome closes or re-opens the circuit.
+ */
+class ProviderHealth {
+
+    // Hedging needs enough samples for the percentile to mean anything
+    private static final int MIN_LATENCY_SAMPLES = 20;
+
+    enum State {
+        CLOSED, OPEN, HALF_OPEN
+    }
+
+    private State state = State.CLOSED;
+    private int consecutiveFailures = 0;
+    private long openedAtMillis = 0;
+    private boolean probeInFlight = false;
+
+    private final long[] latencies = new long[100];
+    private int latencyCount = 0;
+    private int nextLatency = 0;
+
+    /**
+     * Whether a request may be sent now. In the half-open state only one probe is allowed.
+     */
+    public synchronized boolean allowRequest(long openMillis) {
+        switch (state) {
+            case CLOSED:
+                return true;
+            case OPEN:
+                if (System.currentTimeMillis() - openedAtMillis < openMillis) {
+                    return false;
+                }
+                state = State.HALF_OPEN;
+                probeInFlight = true;
+                return true;
+            default:
+                if (probeInFlight) {
+                    return false;
+                }
+                probeInFlight = true;
+                return true;
+        }
+    }
+
+    public synchronized void onSuccess(long latencyMillis) {
+        latencies[nextLatency] = latencyMillis;
+        nextLatency = (nextLatency + 1) % latencies.length;
+        latencyCount = Math.min(latencyCount + 1, latencies.length);
+
+        state = State.CLOSED;
+        consecutiveFailures = 0;
+        probeInFlight = false;
+    }
+
+    public synchronized void onFailure(int failureThreshold) {
+        consecutiveFailures++;
+        probeInFlight = false;
+        if (state == State.HALF_OPEN || consecutiveFailures >= failureThreshold) {
+            state = State.OPEN;
+            openedAtMillis = System.currentTimeMillis();
+        }
+    }
+
+    /**
+     * The request ended without telling us anything about the provider
+     * (cancelled, shed or a client error).
+     */
+    public synchronized void onAbandoned() {
+        probeInFlight = false;
+    }
+
+    public synchronized State getState() {
+        return state;
+    }
+
+    /**
+     * 95th percentile latency of recent successful requests, or -1 if there are too few samples.
+     */
+    public synchronized long getP95LatencyMillis() {
+        if (latencyCount < MIN_LATENCY_SAMPLES) {
+            return -1;
+        }
+        long[] sorted = Arrays.copyOf(latencies, latencyCount);
+        Arrays.sort(sorted);
+        return sorted[(int) Math.ceil(0.95 * latencyCount) - 1];
+    }
+}
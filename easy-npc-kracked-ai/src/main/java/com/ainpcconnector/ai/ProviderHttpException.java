@@ -0,0 +1,68 @@
+package com.ainpcconnector.ai;
+
+import okhttp3.Response;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+
+/**
+ * Thrown when a provider answers with an unsuccessful HTTP status.
+ * Carries the status code and the server's Retry-After hint, if any.
+ */
+public class ProviderHttpException extends IOException {
+
+    private final int statusCode;
+    private final long retryAfterMillis;
+
+    public ProviderHttpException(int statusCode, String message, long retryAfterMillis) {
+        super(message);
+        this.statusCode = statusCode;
+        this.retryAfterMillis = retryAfterMillis;
+    }
+
+    /**
+     * Build the exception from an unsuccessful response.
+     */
+    public static ProviderHttpException from(Response response) {
+        return new ProviderHttpException(response.code(), "Unexpected code " + response,
+                parseRetryAfter(response.header("Retry-After")));
+    }
+
+    public int getStatusCode() {
+        return statusCode;
+    }
+
+    /**
+     * Delay requested by the server in milliseconds, or -1 if none was given.
+     */
+    public long getRetryAfterMillis() {
+        return retryAfterMillis;
+    }
+
+    /**
+     * Whether the request may succeed if retried (rate limited or server error).
+     */
+    public boolean isRetryable() {
+        return statusCode == 429 || statusCode >= 500;
+    }
+
+    private static long parseRetryAfter(String value) {
+        if (value == null || value.isBlank()) {
+            return -1;
+        }
+        try {
+            return Long.parseLong(value.trim()) * 1000L;
+        } catch (NumberFormatException e) {
+            // Not delta-seconds, try an HTTP date
+        }
+        try {
+            ZonedDateTime date = ZonedDateTime.parse(value.trim(), DateTimeFormatter.RFC_1123_DATE_TIME);
+            return Math.max(0, Duration.between(ZonedDateTime.now(date.getZone()), date).toMillis());
+        } catch (DateTimeParseException e) {
+            return -1;
+        }
+    }
+}
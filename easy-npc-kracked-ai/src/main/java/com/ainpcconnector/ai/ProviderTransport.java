@@ -0,0 +1,88 @@
+package com.ainpcconnector.ai;
+
+import okhttp3.Call;
+import okhttp3.Callback;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.Response;
+
+import java.io.IOException;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Non-blocking HTTP transport used by the AI providers.
+ * Requests are dispatched with {@link Call#enqueue} and complete a
+ * CompletableFuture from the OkHttp callback, so an in-flight request does not
+ * hold a caller thread. Per-provider concurrency is limited by
+ * {@link AIRequestScheduler}, which decides what runs next by priority.
+ */
+public class ProviderTransport {
+
+    /**
+     * Reads a response inside the OkHttp callback. The response is closed
+     * after the handler returns.
+     */
+    @FunctionalInterface
+    public interface ResponseHandler<T> {
+        T handle(Response response) throws IOException;
+    }
+
+    private final OkHttpClient httpClient;
+    private final OkHttpClient streamingClient;
+
+    /**
+     * @param httpClient      client for whole-body requests, with an overall call timeout
+     * @param streamingClient client for streamed responses, with only an idle read timeout
+     */
+    public ProviderTransport(OkHttpClient httpClient, OkHttpClient streamingClient) {
+        this.httpClient = httpClient;
+        this.streamingClient = streamingClient;
+    }
+
+    /**
+     * Execute a request asynchronously and map its response with the handler.
+     * Cancelling the returned future cancels the underlying call.
+     */
+    public <T> CompletableFuture<T> execute(Request request, ResponseHandler<T> handler) {
+        return execute(httpClient, request, handler);
+    }
+
+    /**
+     * Like {@link #execute}, for responses read as a stream. The call has no
+     * overall deadline, so a long generation is not cut off mid-sentence; it
+     * only fails if the stream goes quiet for longer than the read timeout.
+     */
+    public <T> CompletableFuture<T> executeStreaming(Request request, ResponseHandler<T> handler) {
+        return execute(streamingClient, request, handler);
+    }
+
+    private static <T> CompletableFuture<T> execute(OkHttpClient client, Request request,
+            ResponseHandler<T> handler) {
+        CompletableFuture<T> future = new CompletableFuture<>();
+        Call call = client.newCall(request);
+
+        future.whenComplete((result, ex) -> {
+            if (future.isCancelled()) {
+                call.cancel();
+            }
+        });
+
+        call.enqueue(new Callback() {
+            @Override
+            public void onFailure(Call call, IOException e) {
+                future.completeExceptionally(e);
+            }
+
+            @Override
+            public void onResponse(Call call, Response response) {
+                try (response) {
+                    future.complete(handler.handle(response));
+                } catch (Exception e) {
+                    future.completeExceptionally(e);
+                }
+            }
+        });
+
+        return future;
+    }
+}
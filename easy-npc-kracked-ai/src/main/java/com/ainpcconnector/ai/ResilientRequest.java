@@ -0,0 +1,201 @@
+package com.ainpcconnector.ai;
+
+import com.ainpcconnector.config.ModConfig;
+import com.fasterxml.jackson.core.JsonProcessingException;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.BiFunction;
+import java.util.function.Consumer;
+
+/**
+ * One logical chat request executed against a provider chain.
+ * Failed attempts are retried with jittered exponential backoff (honoring
+ * Retry-After) on rate limits, server errors and transport failures, then fall
+ * back to the next provider in the chain. Providers with an open circuit are
+ * skipped. Player requests may also send a hedged attempt to the next provider
+ * once the primary is slower than its p95 latency; the first attempt to
+ * produce output wins and the others are cancelled.
+ */
+class ResilientRequest {
+
+    private final AIRequestScheduler scheduler;
+    private final List<AIProvider> chain;
+    private final AIRequestScheduler.Priority priority;
+    private final UUID requester;
+    private final int estimatedTokens;
+    private final BiFunction<AIProvider, Consumer<String>, CompletableFuture<String>> call;
+    private final Consumer<String> onDelta;
+    private final ModConfig.AIConfig config;
+
+    private final CompletableFuture<String> result = new CompletableFuture<>();
+    private final List<CompletableFuture<String>> running = new CopyOnWriteArrayList<>();
+    // The attempt whose output reaches the caller; once set, no other attempt may deliver
+    private final AtomicReference<Object> winner = new AtomicReference<>();
+    private volatile Throwable lastError;
+
+    ResilientRequest(AIRequestScheduler scheduler, List<AIProvider> chain, AIRequestScheduler.Priority priority,
+            UUID requester, int estimatedTokens, ModConfig.AIConfig config,
+            BiFunction<AIProvider, Consumer<String>, CompletableFuture<String>> call, Consumer<String> onDelta) {
+        this.scheduler = scheduler;
+        this.chain = chain;
+        this.priority = priority;
+        this.requester = requester;
+        this.estimatedTokens = estimatedTokens;
+        this.config = config;
+        this.call = call;
+        this.onDelta = onDelta;
+    }
+
+    public CompletableFuture<String> start() {
+        result.whenComplete((response, ex) -> {
+            for (CompletableFuture<String> attempt : running) {
+                attempt.cancel(true);
+            }
+        });
+        attempt(0, 0, true);
+        return result;
+    }
+
+    private void attempt(int index, int retry, boolean mayHedge) {
+        if (result.isDone()) {
+            return;
+        }
+
+        // Skip providers whose circuit is open
+        long openMillis = config.getCircuitOpenSeconds() * 1000L;
+        while (index < chain.size() && !scheduler.getHealth(chain.get(index)).allowRequest(openMillis)) {
+            index++;
+        }
+        if (index >= chain.size()) {
+            if (running.isEmpty()) {
+                result.completeExceptionally(lastError != null
+                        ? lastError
+                        : new IOException("No AI provider is available (circuit open)"));
+            }
+            return;
+        }
+
+        AIProvider provider = chain.get(index);
+        ProviderHealth health = scheduler.getHealth(provider);
+        Object token = new Object();
+        long startNanos = System.nanoTime();
+
+        CompletableFuture<String> attempt = scheduler.submit(provider, priority, requester, estimatedTokens,
+                () -> call.apply(provider, delta -> {
+                    if (claim(token)) {
+                        onDelta.accept(delta);
+                    }
+                }));
+        running.add(attempt);
+
+        if (mayHedge && config.isHedgingEnabled() && priority == AIRequestScheduler.Priority.PLAYER
+                && index + 1 < chain.size()) {
+            long p95 = health.getP95LatencyMillis();
+            if (p95 > 0) {
+                int hedgeIndex = index + 1;
+                scheduler.schedule(() -> {
+                    if (!attempt.isDone() && winner.get() == null) {
+                        attempt(hedgeIndex, 0, false);
+                    }
+                }, p95);
+            }
+        }
+
+        int attemptIndex = index;
+        attempt.whenComplete((response, ex) -> {
+            running.remove(attempt);
+
+            if (ex == null) {
+                health.onSuccess((System.nanoTime() - startNanos) / 1_000_000);
+                if (claim(token)) {
+                    result.complete(response);
+                }
+                return;
+            }
+
+            Throwable cause = unwrap(ex);
+            if (result.isDone() || cause instanceof CancellationException) {
+                health.onAbandoned();
+                return;
+            }
+            if (cause instanceof RejectedExecutionException) {
+                // Shed by the scheduler - not a provider problem and not worth retrying
+                health.onAbandoned();
+                if (running.isEmpty()) {
+                    result.completeExceptionally(cause);
+                }
+                return;
+            }
+
+            lastError = cause;
+            boolean retryable = isRetryable(cause);
+            if (retryable) {
+                health.onFailure(config.getCircuitFailureThreshold());
+            } else {
+                health.onAbandoned();
+            }
+
+            if (winner.get() == token) {
+                // Part of this attempt already reached the player, it cannot be replayed
+                result.completeExceptionally(cause);
+                return;
+            }
+            if (!running.isEmpty()) {
+                return; // A hedged attempt is still going
+            }
+
+            long delay = retryable && retry < config.getMaxRetries() ? backoffMillis(cause, retry) : -1;
+            if (delay >= 0) {
+                scheduler.schedule(() -> attempt(attemptIndex, retry + 1, false), delay);
+            } else {
+                attempt(attemptIndex + 1, 0, false);
+            }
+        });
+    }
+
+    private boolean claim(Object token) {
+        return winner.compareAndSet(null, token) || winner.get() == token;
+    }
+
+    /**
+     * Delay before the next retry, or -1 if the server asked for a longer wait
+     * than we are willing to make the player sit through.
+     */
+    private long backoffMillis(Throwable cause, int retry) {
+        long base = config.getRetryBaseDelayMillis() * (1L << retry);
+        long jittered = base / 2 + ThreadLocalRandom.current().nextLong(base / 2 + 1);
+
+        if (cause instanceof ProviderHttpException http && http.getRetryAfterMillis() >= 0) {
+            if (http.getRetryAfterMillis() > config.getMaxRetryDelayMillis()) {
+                return -1;
+            }
+            return Math.max(jittered, http.getRetryAfterMillis());
+        }
+        return Math.min(jittered, config.getMaxRetryDelayMillis());
+    }
+
+    private static boolean isRetryable(Throwable cause) {
+        if (cause instanceof ProviderHttpException http) {
+            return http.isRetryable();
+        }
+        // Timeouts, resets and refused connections; a malformed body won't get better
+        return cause instanceof IOException && !(cause instanceof JsonProcessingException);
+    }
+
+    private static Throwable unwrap(Throwable ex) {
+        while ((ex instanceof CompletionException || ex instanceof ExecutionException) && ex.getCause() != null) {
+            ex = ex.getCause();
+        }
+        return ex;
+    }
+}
@@ -0,0 +1,71 @@
+package com.ainpcconnector.ai;
+
+import okio.BufferedSource;
+
+import java.io.IOException;
+
+/**
+ * Minimal reader for text/event-stream response bodies.
+ * Used by the providers to consume streaming chat completions.
+ */
+public final class ServerSentEvents {
+
+    /**
+     * Receives one dispatched event. Return false to stop reading.
+     */
+    @FunctionalInterface
+    public interface EventHandler {
+        boolean onEvent(String event, String data) throws IOException;
+    }
+
+    private ServerSentEvents() {
+    }
+
+    /**
+     * Read events from the source until the stream ends or the handler stops.
+     */
+    public static void read(BufferedSource source, EventHandler handler) throws IOException {
+        String event = null;
+        StringBuilder data = new StringBuilder();
+
+        String line;
+        while ((line = source.readUtf8Line()) != null) {
+            if (line.isEmpty()) {
+                // Blank line dispatches the pending event
+                if (data.length() > 0) {
+                    if (!handler.onEvent(event, data.toString())) {
+                        return;
+                    }
+                }
+                event = null;
+                data.setLength(0);
+                continue;
+            }
+
+            if (line.startsWith(":")) {
+                continue; // Comment / keep-alive
+            }
+
+            int colon = line.indexOf(':');
+            String field = colon >= 0 ? line.substring(0, colon) : line;
+            String value = colon >= 0 ? line.substring(colon + 1) : "";
+            if (value.startsWith(" ")) {
+                value = value.substring(1);
+            }
+
+            if (field.equals("event")) {
+                event = value;
+            } else if (field.equals("data")) {
+                if (data.length() > 0) {
+                    data.append('\n');
+                }
+                data.append(value);
+            }
+        }
+
+        // Stream ended without a trailing blank line
+        if (data.length() > 0) {
+            handler.onEvent(event, data.toString());
+        }
+    }
+}
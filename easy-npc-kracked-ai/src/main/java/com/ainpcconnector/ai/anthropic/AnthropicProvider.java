@@ -1,14 +1,18 @@
 package com.ainpcconnector.ai.anthropic;
 
 import com.ainpcconnector.ai.AIProvider;
-import com.fasterxml.jackson.databind.JsonNode;
-import com.fasterxml.jackson.databind.ObjectMapper;
+import com.ainpcconnector.ai.ChatJsonCodec;
+import com.ainpcconnector.ai.ChatMessage;
+import com.ainpcconnector.ai.ProviderHttpException;
+import com.ainpcconnector.ai.ProviderTransport;
+import com.ainpcconnector.ai.ServerSentEvents;
 import okhttp3.*;
 
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.concurrent.CompletableFuture;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
+import java.util.function.Consumer;
 
 /**
  * Anthropic Claude provider implementation.
@@ -16,63 +20,112 @@ import java.util.concurrent.Executors;
 public class AnthropicProvider implements AIProvider {
 
     private static final String DEFAULT_ENDPOINT = "https://api.anthropic.com/v1/messages";
-    private static final MediaType JSON = MediaType.get("application/json; charset=utf-8");
+    private static final int MAX_TOKENS = 500;
 
     private final String apiKey;
     private final String model;
 
-    private final OkHttpClient httpClient;
-    private final ObjectMapper objectMapper;
-    private final ExecutorService executorService;
+    private final ProviderTransport transport;
 
-    public AnthropicProvider(String apiKey, String model) {
+    public AnthropicProvider(String apiKey, String model, ProviderTransport transport) {
         this.apiKey = apiKey != null ? apiKey : "";
         this.model = model != null ? model : "claude-3-5-sonnet-20241022";
 
-        this.httpClient = new OkHttpClient.Builder()
-                .callTimeout(30, java.util.concurrent.TimeUnit.SECONDS)
-                .build();
-        this.objectMapper = new ObjectMapper();
-        this.executorService = Executors.newCachedThreadPool(r -> {
-            Thread t = new Thread(r, "Anthropic-Request");
-            t.setDaemon(true);
-            return t;
-        });
+        this.transport = transport;
     }
 
     @Override
     public CompletableFuture<String> chatCompletion(String systemPrompt, String userMessage,
-            String conversationHistory) {
-        return CompletableFuture.supplyAsync(() -> {
-            try {
-                String fullUserMessage = userMessage;
-                if (conversationHistory != null && !conversationHistory.isEmpty()) {
-                    fullUserMessage = "Previous conversation:\n" + conversationHistory + "\n\nCurrent message: "
-                            + userMessage;
-                }
+            List<ChatMessage> history) {
+        RequestBody requestBody = ChatJsonCodec.messagesRequest(model, systemPrompt,
+                toMessages(history, userMessage), false, MAX_TOKENS);
 
-                String requestBody = buildRequestBody(systemPrompt, fullUserMessage);
+        return transport.execute(buildRequest(requestBody), response -> {
+            if (!response.isSuccessful()) {
+                throw ProviderHttpException.from(response);
+            }
 
-                Request request = new Request.Builder()
-                        .url(DEFAULT_ENDPOINT)
-                        .addHeader("x-api-key", apiKey)
-                        .addHeader("anthropic-version", "2023-06-01")
-                        .addHeader("Content-Type", "application/json")
-                        .post(RequestBody.create(requestBody, JSON))
-                        .build();
+            String text = response.body() != null
+                    ? ChatJsonCodec.readText(response.body().byteStream(), "content", 0, "text")
+                    : null;
+            if (text == null) {
+                throw new IOException("Invalid response format: no content[0].text");
+            }
+            return text;
+        });
+    }
+
+    @Override
+    public CompletableFuture<String> streamChatCompletion(String systemPrompt, String userMessage,
+            List<ChatMessage> history, Consumer<String> onDelta) {
+        RequestBody requestBody = ChatJsonCodec.messagesRequest(model, systemPrompt,
+                toMessages(history, userMessage), true, MAX_TOKENS);
+
+        return transport.executeStreaming(buildRequest(requestBody), response -> {
+            if (!response.isSuccessful()) {
+                throw ProviderHttpException.from(response);
+            }
+            if (response.body() == null) {
+                return "";
+            }
 
-                try (Response response = httpClient.newCall(request).execute()) {
-                    if (!response.isSuccessful()) {
-                        throw new IOException("Unexpected code " + response);
-                    }
+            StringBuilder full = new StringBuilder();
+            ServerSentEvents.read(response.body().source(), (event, data) -> {
+                if ("message_stop".equals(event)) {
+                    return false;
+                }
+                if ("error".equals(event)) {
+                    throw new IOException("Stream error: " + data);
+                }
+                if (!"content_block_delta".equals(event)) {
+                    return true; // message_start, ping, content_block_start, ...
+                }
 
-                    String responseBody = response.body() != null ? response.body().string() : "";
-                    return parseResponse(responseBody);
+                // Only text deltas carry delta.text
+                String text = ChatJsonCodec.readText(data, "delta", "text");
+                if (text != null && !text.isEmpty()) {
+                    full.append(text);
+                    onDelta.accept(text);
                 }
-            } catch (Exception e) {
-                throw new RuntimeException("Failed to get AI response", e);
+                return true;
+            });
+            return full.toString();
+        });
+    }
+
+    /**
+     * Build the message list. The Messages API requires alternating roles
+     * starting with the user, so leading assistant turns are dropped and
+     * consecutive turns of the same role are merged.
+     */
+    private List<ChatMessage> toMessages(List<ChatMessage> history, String userMessage) {
+        List<ChatMessage> messages = new ArrayList<>(history.size() + 1);
+        List<ChatMessage> turns = new ArrayList<>(history);
+        turns.add(ChatMessage.user(userMessage));
+
+        for (ChatMessage turn : turns) {
+            if (messages.isEmpty() && turn.role() == ChatMessage.Role.ASSISTANT) {
+                continue;
+            }
+            int last = messages.size() - 1;
+            if (last >= 0 && messages.get(last).role() == turn.role()) {
+                messages.set(last, new ChatMessage(turn.role(),
+                        messages.get(last).content() + "\n" + turn.content()));
+            } else {
+                messages.add(turn);
             }
-        }, executorService);
+        }
+        return messages;
+    }
+
+    private Request buildRequest(RequestBody requestBody) {
+        return new Request.Builder()
+                .url(DEFAULT_ENDPOINT)
+                .addHeader("x-api-key", apiKey)
+                .addHeader("anthropic-version", "2023-06-01")
+                .addHeader("Content-Type", "application/json")
+                .post(requestBody)
+                .build();
     }
 
     @Override
@@ -102,49 +155,4 @@ public class AnthropicProvider implements AIProvider {
     public String getModel() {
         return model;
     }
-
-    private String buildRequestBody(String systemPrompt, String userMessage) {
-        StringBuilder json = new StringBuilder();
-        json.append("{");
-        json.append("\"model\":\"").append(model).append("\",");
-        json.append("\"max_tokens\":500,");
-        json.append("\"system\":\"").append(escapeJson(systemPrompt)).append("\",");
-        json.append("\"messages\":[");
-        json.append("{\"role\":\"user\",\"content\":\"").append(escapeJson(userMessage)).append("\"}");
-        json.append("]");
-        json.append("}");
-
-        return json.toString();
-    }
-
-    private String parseResponse(String responseBody) throws IOException {
-        JsonNode root = objectMapper.readTree(responseBody);
-        JsonNode content = root.get("content");
-
-        if (content != null && content.isArray() && content.size() > 0) {
-            JsonNode firstBlock = content.get(0);
-            if (firstBlock != null) {
-                JsonNode text = firstBlock.get("text");
-                if (text != null) {
-                    return text.asText();
-                }
-            }
-        }
-
-        throw new IOException("Invalid response format: " + responseBody);
-    }
-
-    private String escapeJson(String s) {
-        if (s == null)
-            return "";
-        return s.replace("\\", "\\\\")
-                .replace("\"", "\\\"")
-                .replace("\n", "\\n")
-                .replace("\r", "\\r")
-                .replace("\t", "\\t");
-    }
-
-    public void shutdown() {
-        executorService.shutdown();
-    }
 }
@@ -1,14 +1,17 @@
 package com.ainpcconnector.ai.custom;
 
 import com.ainpcconnector.ai.AIProvider;
-import com.fasterxml.jackson.databind.JsonNode;
-import com.fasterxml.jackson.databind.ObjectMapper;
+import com.ainpcconnector.ai.ChatJsonCodec;
+import com.ainpcconnector.ai.ChatMessage;
+import com.ainpcconnector.ai.ProviderHttpException;
+import com.ainpcconnector.ai.ProviderTransport;
+import com.ainpcconnector.ai.ServerSentEvents;
 import okhttp3.*;
 
 import java.io.IOException;
+import java.util.List;
 import java.util.concurrent.CompletableFuture;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
+import java.util.function.Consumer;
 
 /**
  * Custom endpoint provider for OpenAI-compatible APIs (e.g., Ollama, LM Studio,
@@ -16,17 +19,15 @@ import java.util.concurrent.Executors;
  */
 public class CustomEndpointProvider implements AIProvider {
 
-    private static final MediaType JSON = MediaType.get("application/json; charset=utf-8");
+    private static final int MAX_TOKENS = 500;
 
     private final String apiKey;
     private final String endpoint;
     private final String model;
 
-    private final OkHttpClient httpClient;
-    private final ObjectMapper objectMapper;
-    private final ExecutorService executorService;
+    private final ProviderTransport transport;
 
-    public CustomEndpointProvider(String apiKey, String endpoint, String model) {
+    public CustomEndpointProvider(String apiKey, String endpoint, String model, ProviderTransport transport) {
         this.apiKey = apiKey != null ? apiKey : "";
         // Remove /v1/v1 if present (common mistake)
         this.endpoint = (endpoint != null && !endpoint.isEmpty())
@@ -34,83 +35,107 @@ public class CustomEndpointProvider implements AIProvider {
                 : "http://localhost:11434/v1"; // Ollama default
         this.model = model != null ? model : "llama3";
 
-        this.httpClient = new OkHttpClient.Builder()
-                .callTimeout(60, java.util.concurrent.TimeUnit.SECONDS)
-                .build();
-        this.objectMapper = new ObjectMapper();
-        this.executorService = Executors.newCachedThreadPool(r -> {
-            Thread t = new Thread(r, "CustomAI-Request");
-            t.setDaemon(true);
-            return t;
-        });
+        this.transport = transport;
     }
 
     @Override
     public CompletableFuture<String> chatCompletion(String systemPrompt, String userMessage,
-            String conversationHistory) {
-        return CompletableFuture.supplyAsync(() -> {
-            try {
-                String requestBody = buildRequestBody(systemPrompt, userMessage, conversationHistory);
-
-                Request.Builder requestBuilder = new Request.Builder()
-                        .url(endpoint + "/chat/completions")
-                        .addHeader("Content-Type", "application/json")
-                        .post(RequestBody.create(requestBody, JSON));
-
-                // Add API key if provided
-                if (!apiKey.isEmpty()) {
-                    requestBuilder.addHeader("Authorization", "Bearer " + apiKey);
-                }
-
-                Request request = requestBuilder.build();
+            List<ChatMessage> history) {
+        RequestBody requestBody = ChatJsonCodec.chatCompletionRequest(model, systemPrompt, history, userMessage,
+                false, MAX_TOKENS);
+
+        Request.Builder requestBuilder = new Request.Builder()
+                .url(endpoint + "/chat/completions")
+                .addHeader("Content-Type", "application/json")
+                .post(requestBody);
+
+        // Add API key if provided
+        if (!apiKey.isEmpty()) {
+            requestBuilder.addHeader("Authorization", "Bearer " + apiKey);
+        }
 
-                try (Response response = httpClient.newCall(request).execute()) {
-                    if (!response.isSuccessful()) {
-                        throw new IOException("Unexpected code " + response);
-                    }
+        return transport.execute(requestBuilder.build(), response -> {
+            if (!response.isSuccessful()) {
+                throw ProviderHttpException.from(response);
+            }
 
-                    String responseBody = response.body() != null ? response.body().string() : "";
-                    return parseResponse(responseBody);
-                }
-            } catch (Exception e) {
-                throw new RuntimeException("Failed to get AI response", e);
+            String content = response.body() != null
+                    ? ChatJsonCodec.readText(response.body().byteStream(), "choices", 0, "message", "content")
+                    : null;
+            if (content == null) {
+                throw new IOException("Invalid response format: no choices[0].message.content");
             }
-        }, executorService);
+            return content;
+        });
     }
 
     @Override
-    public CompletableFuture<byte[]> generateSpeech(String text) {
-        return CompletableFuture.supplyAsync(() -> {
-            try {
-                // OpenAI-compatible TTS request body
-                String json = "{" +
-                        "\"model\":\"" + model + "\"," + // Usually models like 'tts-1' if supported
-                        "\"input\":\"" + escapeJson(text) + "\"," +
-                        "\"voice\":\"alloy\"," +
-                        "\"response_format\":\"pcm\"" +
-                        "}";
-
-                Request.Builder requestBuilder = new Request.Builder()
-                        .url(endpoint + "/audio/speech")
-                        .addHeader("Content-Type", "application/json")
-                        .post(RequestBody.create(json, JSON));
-
-                if (!apiKey.isEmpty()) {
-                    requestBuilder.addHeader("Authorization", "Bearer " + apiKey);
+    public CompletableFuture<String> streamChatCompletion(String systemPrompt, String userMessage,
+            List<ChatMessage> history, Consumer<String> onDelta) {
+        RequestBody requestBody = ChatJsonCodec.chatCompletionRequest(model, systemPrompt, history, userMessage,
+                true, MAX_TOKENS);
+
+        Request.Builder requestBuilder = new Request.Builder()
+                .url(endpoint + "/chat/completions")
+                .addHeader("Content-Type", "application/json")
+                .addHeader("Accept", "text/event-stream")
+                .post(requestBody);
+
+        if (!apiKey.isEmpty()) {
+            requestBuilder.addHeader("Authorization", "Bearer " + apiKey);
+        }
+
+        return transport.executeStreaming(requestBuilder.build(), response -> {
+            if (!response.isSuccessful()) {
+                throw ProviderHttpException.from(response);
+            }
+            if (response.body() == null) {
+                return "";
+            }
+
+            StringBuilder full = new StringBuilder();
+            ServerSentEvents.read(response.body().source(), (event, data) -> {
+                if (data.equals("[DONE]")) {
+                    return false;
                 }
 
-                try (Response response = httpClient.newCall(requestBuilder.build()).execute()) {
-                    if (!response.isSuccessful()) {
-                        // Fallback: Custom providers often don't support TTS
-                        return new byte[0];
-                    }
+                if (ChatJsonCodec.hasField(data, "error")) {
+                    throw new IOException("Stream error: " + data);
+                }
 
-                    return response.body() != null ? response.body().bytes() : new byte[0];
+                String content = ChatJsonCodec.readText(data, "choices", 0, "delta", "content");
+                if (content != null && !content.isEmpty()) {
+                    full.append(content);
+                    onDelta.accept(content);
                 }
-            } catch (Exception e) {
+                return true;
+            });
+            return full.toString();
+        });
+    }
+
+    @Override
+    public CompletableFuture<byte[]> generateSpeech(String text) {
+        // OpenAI-compatible TTS request body
+        RequestBody json = ChatJsonCodec.speechRequest(model, text, "alloy", "pcm");
+
+        Request.Builder requestBuilder = new Request.Builder()
+                .url(endpoint + "/audio/speech")
+                .addHeader("Content-Type", "application/json")
+                .post(json);
+
+        if (!apiKey.isEmpty()) {
+            requestBuilder.addHeader("Authorization", "Bearer " + apiKey);
+        }
+
+        return transport.execute(requestBuilder.build(), response -> {
+            if (!response.isSuccessful()) {
+                // Fallback: Custom providers often don't support TTS
                 return new byte[0];
             }
-        }, executorService);
+
+            return response.body() != null ? response.body().bytes() : new byte[0];
+        }).exceptionally(e -> new byte[0]);
     }
 
     @Override
@@ -134,60 +159,4 @@ public class CustomEndpointProvider implements AIProvider {
     public String getModel() {
         return model;
     }
-
-    private String buildRequestBody(String systemPrompt, String userMessage, String conversationHistory) {
-        StringBuilder json = new StringBuilder();
-        json.append("{");
-        json.append("\"model\":\"").append(model).append("\",");
-        json.append("\"messages\":[");
-
-        // System message
-        json.append("{\"role\":\"system\",\"content\":\"").append(escapeJson(systemPrompt)).append("\"}");
-
-        // Add conversation history if present
-        if (conversationHistory != null && !conversationHistory.isEmpty()) {
-            json.append(",{\"role\":\"user\",\"content\":\"")
-                    .append(escapeJson("Previous conversation:\n" + conversationHistory)).append("\"}");
-        }
-
-        // Current user message
-        json.append(",{\"role\":\"user\",\"content\":\"").append(escapeJson(userMessage)).append("\"}");
-
-        json.append("],");
-        json.append("\"max_tokens\":500");
-        json.append("}");
-
-        return json.toString();
-    }
-
-    private String parseResponse(String responseBody) throws IOException {
-        JsonNode root = objectMapper.readTree(responseBody);
-        JsonNode choices = root.get("choices");
-
-        if (choices != null && choices.isArray() && choices.size() > 0) {
-            JsonNode message = choices.get(0).get("message");
-            if (message != null) {
-                JsonNode content = message.get("content");
-                if (content != null) {
-                    return content.asText();
-                }
-            }
-        }
-
-        throw new IOException("Invalid response format: " + responseBody);
-    }
-
-    private String escapeJson(String s) {
-        if (s == null)
-            return "";
-        return s.replace("\\", "\\\\")
-                .replace("\"", "\\\"")
-                .replace("\n", "\\n")
-                .replace("\r", "\\r")
-                .replace("\t", "\\t");
-    }
-
-    public void shutdown() {
-        executorService.shutdown();
-    }
 }
@@ -2,9 +2,12 @@ package com.ainpcconnector.behavior;
 
 import com.ainpcconnector.ai.AIProvider;
 import com.ainpcconnector.ai.AIProviderFactory;
+import com.ainpcconnector.ai.AIRequestScheduler;
+import com.ainpcconnector.ai.ChatMessage;
 import com.ainpcconnector.config.ConfigManager;
 import com.ainpcconnector.npc.NPCProfile;
 import com.ainpcconnector.npc.NPCRegistry;
+import com.ainpcconnector.npc.PlayerProximity;
 import com.ainpcconnector.voice.VoiceIntegration;
 import net.minecraft.entity.Entity;
 import net.minecraft.entity.mob.MobEntity;
@@ -13,6 +16,7 @@ import net.minecraft.text.Text;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.util.List;
 import java.util.Map;
 import java.util.UUID;
 import java.util.concurrent.CompletableFuture;
@@ -34,6 +38,7 @@ public class AIController {
 
     private final ExecutorService executorService;
     private final Map<UUID, CompletableFuture<String>> activeRequests = new ConcurrentHashMap<>();
+    private final Map<UUID, NPCMailbox> mailboxes = new ConcurrentHashMap<>();
 
     public AIController(ConfigManager configManager) {
         this.configManager = configManager;
@@ -65,7 +70,8 @@ public class AIController {
      * Called when an NPC is unloaded from the world.
      */
     public void onNPCUnloaded(Entity entity) {
-        // Cancel any pending requests for this NPC
+        // Drop queued messages and cancel any pending requests for this NPC
+        mailboxes.remove(entity.getUuid());
         CompletableFuture<String> request = activeRequests.remove(entity.getUuid());
         if (request != null) {
             request.cancel(true);
@@ -74,11 +80,14 @@ public class AIController {
 
     /**
      * Handle a player interacting with an NPC.
+     * If the NPC is already answering, the message is queued in its mailbox and
+     * answered together with anything else that arrives in the meantime.
      */
     public void handlePlayerInteraction(ServerPlayerEntity player, Entity entity, String message) {
-        NPCProfile profile = npcRegistry.getProfile(entity.getUuid());
+        NPCProfile profile = npcRegistry.getOrCreateProfile(entity);
         if (profile == null) {
-            profile = npcRegistry.getOrCreateProfile(entity);
+            player.sendMessage(Text.literal("This NPC is still waking up. Try again in a moment."), false);
+            return;
         }
 
         if (!profile.isAiEnabled()) {
@@ -86,19 +95,32 @@ public class AIController {
             return;
         }
 
-        // Check if there's already an active request
-        if (activeRequests.containsKey(entity.getUuid())) {
-            player.sendMessage(Text.literal("Please wait, the NPC is thinking..."), false);
+        NPCMailbox mailbox = mailboxes.computeIfAbsent(entity.getUuid(), k -> new NPCMailbox());
+        if (!mailbox.offer(player, message)) {
+            // Queued behind the request in flight
             return;
         }
 
+        sendRequest(entity, profile, mailbox, List.of(new NPCMailbox.PendingMessage(player, message)));
+    }
+
+    /**
+     * Send one completion answering a batch of player messages, then continue
+     * with whatever queued up in the mailbox meanwhile.
+     */
+    private void sendRequest(Entity entity, NPCProfile profile, NPCMailbox mailbox,
+            List<NPCMailbox.PendingMessage> batch) {
         // Set status to thinking
         profile.setStatus(NPCProfile.NPCStatus.THINKING);
 
         // Get AI provider
         AIProvider provider = AIProviderFactory.createForNPC(profile, configManager.getConfig());
         if (!provider.isConfigured()) {
-            player.sendMessage(Text.literal("AI provider is not configured. Please set API key in the web interface."), false);
+            for (NPCMailbox.PendingMessage pending : batch) {
+                pending.getPlayer().sendMessage(
+                        Text.literal("AI provider is not configured. Please set API key in the web interface."), false);
+            }
+            mailbox.reset();
             profile.setStatus(NPCProfile.NPCStatus.IDLE);
             return;
         }
@@ -106,52 +128,103 @@ public class AIController {
         // Generate system prompt based on personality
         String systemPrompt = PersonalityEngine.generateSystemPrompt(profile);
 
-        // Get conversation history
-        String history = profile.getConversationHistory();
-
-        // Create final references for lambda
-        final Entity finalEntity = entity;
-        final NPCProfile finalProfile = profile;
-        final String finalMessage = message;
+        // Get the most recent conversation turns that fit the history budget
+        int historyBudget = configManager.getConfig().getAi().getHistoryTokenBudget();
+        List<ChatMessage> history = ChatMessage.window(profile.getConversationTurns(), historyBudget);
+
+        // Coalesce the batch into a single message
+        String message;
+        if (batch.size() == 1) {
+            message = batch.get(0).getMessage();
+        } else {
+            StringBuilder combined = new StringBuilder("Several players spoke to you at once:\n");
+            for (NPCMailbox.PendingMessage pending : batch) {
+                combined.append(pending.getPlayerName()).append(": ").append(pending.getMessage()).append("\n");
+            }
+            combined.append("Reply to all of them in one response.");
+            message = combined.toString();
+        }
 
-        // Create request
-        CompletableFuture<String> request = provider.chatCompletion(systemPrompt, finalMessage, history);
+        // Create request - when streaming, sentences are sent to the players as they arrive.
+        // Player requests get the highest scheduler priority, taking turns per player.
+        AIRequestScheduler scheduler = AIRequestScheduler.getInstance();
+        UUID requester = batch.get(0).getPlayer().getUuid();
+        boolean streaming = configManager.getConfig().getAi().isStreamResponses();
+        SentenceChunker chunker = new SentenceChunker(chunk -> broadcast(batch, "<" + profile.getEntityName() + "> " + chunk));
+        CompletableFuture<String> request = streaming
+                ? scheduler.streamChat(provider, AIRequestScheduler.Priority.PLAYER, requester,
+                        systemPrompt, message, history, chunker::accept)
+                : scheduler.chat(provider, AIRequestScheduler.Priority.PLAYER, requester,
+                        systemPrompt, message, history);
 
         // Store active request
         activeRequests.put(entity.getUuid(), request);
 
         // Handle response
         request.thenAccept(response -> {
-            activeRequests.remove(finalEntity.getUuid());
-
-            // Send response to player
-            player.sendMessage(Text.literal("<" + finalProfile.getEntityName() + "> " + response), false);
+            // Only clear our own entry; a newer request may have replaced it
+            activeRequests.remove(entity.getUuid(), request);
+
+            // Send response to players (or the tail of the stream)
+            if (streaming) {
+                chunker.flush();
+            } else {
+                broadcast(batch, "<" + profile.getEntityName() + "> " + response);
+            }
 
             // Update conversation history
-            finalProfile.addToConversationHistory("Player: " + finalMessage);
-            finalProfile.addToConversationHistory("NPC: " + response);
+            // Store exactly what was sent so the next request extends this one's prompt prefix
+            profile.addConversationTurn(ChatMessage.user(message));
+            profile.addConversationTurn(ChatMessage.assistant(response));
+            profile.compactConversationHistory(historyBudget);
 
             // Evolve personality
-            PersonalityEngine.evolve(finalProfile, finalMessage, response);
+            PersonalityEngine.evolve(profile, message, response);
 
             // Save updated profile
-            npcRegistry.register(finalProfile);
+            npcRegistry.register(profile);
 
             // Play voice if enabled
-            if (finalProfile.isVoiceEnabled() && configManager.getConfig().getVoice().isEnabled()) {
-                voiceIntegration.speak(finalEntity, response);
+            if (profile.isVoiceEnabled() && configManager.getConfig().getVoice().isEnabled()) {
+                voiceIntegration.speak(entity, response);
             }
 
-            finalProfile.setStatus(NPCProfile.NPCStatus.IDLE);
+            profile.setStatus(NPCProfile.NPCStatus.IDLE);
+            sendNext(entity, profile, mailbox);
         }).exceptionally(ex -> {
-            activeRequests.remove(finalEntity.getUuid());
-            LOGGER.error("[Easy NPC kracked AI] AI request failed for NPC {}", finalProfile.getEntityName(), ex);
-            player.sendMessage(Text.literal("The NPC couldn't respond right now."), false);
-            finalProfile.setStatus(NPCProfile.NPCStatus.IDLE);
+            activeRequests.remove(entity.getUuid(), request);
+            if (request.isCancelled()) {
+                // Cancelled on purpose (NPC removed or server stopping); nothing to tell the players
+                profile.setStatus(NPCProfile.NPCStatus.IDLE);
+                return null;
+            }
+            LOGGER.error("[Easy NPC kracked AI] AI request failed for NPC {}", profile.getEntityName(), ex);
+            // If part of the reply already reached chat, an error line after it would only confuse
+            if (!streaming || !chunker.hasEmitted()) {
+                broadcast(batch, "The NPC couldn't respond right now.");
+            }
+            profile.setStatus(NPCProfile.NPCStatus.IDLE);
+            sendNext(entity, profile, mailbox);
             return null;
         });
     }
 
+    /**
+     * Answer messages that queued up while the previous request was in flight.
+     */
+    private void sendNext(Entity entity, NPCProfile profile, NPCMailbox mailbox) {
+        List<NPCMailbox.PendingMessage> next = mailbox.drainOrIdle();
+        if (!next.isEmpty()) {
+            sendRequest(entity, profile, mailbox, next);
+        }
+    }
+
+    private void broadcast(List<NPCMailbox.PendingMessage> batch, String text) {
+        for (NPCMailbox.PendingMessage pending : batch) {
+            pending.getPlayer().sendMessage(Text.literal(text), false);
+        }
+    }
+
     public void processTick(net.minecraft.server.world.ServerWorld world, Entity entity, NPCProfile profile) {
         if (!profile.isAiEnabled()) {
             return;
@@ -176,9 +249,9 @@ public class AIController {
         double z = entity.getZ();
         double range = 16.0; // 16 blocks
 
-        Entity nearestPlayer = world.getClosestPlayer(x, y, z, range, false);
+        ServerPlayerEntity nearestPlayer = PlayerProximity.getInstance().closest(world, x, y, z, range);
 
-        if (nearestPlayer != null && nearestPlayer instanceof ServerPlayerEntity) {
+        if (nearestPlayer != null) {
             entity.getLookControl().lookAt(nearestPlayer);
         }
     }
@@ -1,22 +1,28 @@
 package com.ainpcconnector.behavior;
 
+import com.ainpcconnector.AINpcConnectorMod;
 import com.ainpcconnector.ai.AIProvider;
 import com.ainpcconnector.ai.AIProviderFactory;
+import com.ainpcconnector.ai.AIRequestScheduler;
+import com.ainpcconnector.ai.ChatMessage;
 import com.ainpcconnector.config.ConfigManager;
+import com.ainpcconnector.config.ModConfig;
 import com.ainpcconnector.npc.NPCProfile;
 import com.ainpcconnector.npc.NPCRegistry;
+import com.ainpcconnector.npc.NPCSpatialIndex;
+import com.ainpcconnector.npc.PlayerProximity;
 import com.ainpcconnector.voice.VoiceIntegration;
 import net.minecraft.entity.Entity;
 import net.minecraft.entity.mob.MobEntity;
 import net.minecraft.server.network.ServerPlayerEntity;
 import net.minecraft.server.world.ServerWorld;
 import net.minecraft.text.Text;
-import net.minecraft.util.math.Vec3d;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.util.*;
 import java.util.concurrent.*;
+import java.util.function.Predicate;
 
 /**
  * Advanced autonomous controller for AI NPCs.
@@ -30,44 +36,50 @@ public class AutonomousController {
     private final NPCRegistry npcRegistry;
     private final VoiceIntegration voiceIntegration;
     private final SocialSystem socialSystem;
+    private final DialogueDirector dialogueDirector;
+    private final NPCSpatialIndex spatialIndex;
+    private final PlayerProximity playerProximity;
+    private final NPCNavigator navigator;
 
     private final ExecutorService executorService;
+    private final int planningThreads;
     private final Map<UUID, CompletableFuture<String>> activeRequests = new ConcurrentHashMap<>();
-    private final Map<UUID, AutonomousState> npcStates = new ConcurrentHashMap<>();
+    private final AutonomousStateTable states = new AutonomousStateTable();
+
+    // Decision planning: snapshots are taken during the tick, planned on the worker pool and applied next tick
+    private final List<DecisionSnapshot> pendingSnapshots = new ArrayList<>();
+    private final Queue<BehaviorPlan> readyPlans = new ConcurrentLinkedQueue<>();
+
+    // Filters for spatial queries, created once so the per-tick path doesn't allocate them
+    private static final Predicate<Entity> PLAYER_FILTER = e -> e instanceof ServerPlayerEntity;
+    private final Predicate<Entity> npcFilter = this::isNPC;
+    private final PlayerProximity.Listener wakeListener = this::wake;
 
     // Behavior settings
     private static final double MOVEMENT_SPEED = 0.4;
     private static final double INTERACTION_RADIUS = 8.0;
-    private static final int AUTONOMOUS_ACTION_INTERVAL = 100; // ticks between autonomous actions
+    private static final int IDLE_WANDER_TICKS = 200; // idle this long and the NPC goes for a walk
+    private static final int CONVERSATION_TIMEOUT_TICKS = 1200; // a conversation still open after this was lost
+    private static final double ENERGY_REGEN_PER_TICK = 0.001 / 40; // while resting
+    private static final double ENERGY_DRAIN_PER_TICK = 0.0001 / 40; // while moving
 
     /**
-     * Represents the current autonomous state of an NPC.
+     * What the planner needs to know about an NPC, copied on the server thread.
      */
-    public static class AutonomousState {
-        public BehaviorMode currentMode = BehaviorMode.IDLE;
-        public Vec3d targetPosition = null;
-        public UUID targetEntity = null;
-        public int actionTimer = 0;
-        public int idleTimer = 0;
-        public String lastThought = "";
-        public double mood = 0.5; // 0 = unhappy, 1 = happy
-        public double energy = 1.0; // 0 = tired, 1 = energetic
-        public List<String> currentGoals = new ArrayList<>();
-
-        public AutonomousState() {
-            currentMode = BehaviorMode.IDLE;
-            randomizeGoals();
-        }
-
-        public void randomizeGoals() {
-            currentGoals.clear();
-            String[] possibleGoals = {"explore", "socialize", "rest", "work", "wander"};
-            for (int i = 0; i < 2; i++) {
-                currentGoals.add(possibleGoals[new Random().nextInt(possibleGoals.length)]);
-            }
-        }
+    private record DecisionSnapshot(UUID uuid, double friendliness, double curiosity, double aggression,
+                                    double energy, int idleTimer, double x, double y, double z,
+                                    boolean nearbyPlayers, boolean nearbyNPCs) {
     }
 
+    /**
+     * A decision made off-thread. A null mode or goals leaves that part of the state unchanged.
+     */
+    private record BehaviorPlan(UUID uuid, BehaviorMode mode, boolean hasTarget, double targetX, double targetY,
+                                double targetZ, boolean resetIdleTimer, String thought, int goals) {
+    }
+
+    private static final int NO_GOALS = -1;
+
     /**
      * Behavior modes for autonomous NPCs.
      */
@@ -83,14 +95,28 @@ public class AutonomousController {
         SOCIALIZING     // Seeking other NPCs
     }
 
+    /**
+     * How much of the autonomous behavior runs for an NPC, by distance to the nearest player.
+     */
+    public enum DetailLevel {
+        FULL,           // Players close by, everything runs every pass
+        REDUCED,        // Players at mid range, decisions and movement every few passes
+        FROZEN          // Nobody around, state is held and caught up when a player comes back
+    }
+
     public AutonomousController(ConfigManager configManager) {
         this.configManager = configManager;
         this.npcRegistry = NPCRegistry.getInstance();
         this.voiceIntegration = new VoiceIntegration();
         this.socialSystem = SocialSystem.getInstance();
+        this.spatialIndex = NPCSpatialIndex.getInstance();
+        this.playerProximity = PlayerProximity.getInstance();
+        this.dialogueDirector = new DialogueDirector(configManager, npcRegistry, socialSystem, voiceIntegration, states);
+        this.navigator = new NPCNavigator(configManager);
 
+        this.planningThreads = Runtime.getRuntime().availableProcessors();
         this.executorService = Executors.newFixedThreadPool(
-                Runtime.getRuntime().availableProcessors(),
+                planningThreads,
                 r -> {
                     Thread t = new Thread(r, "AI-NPC-Autonomous-Worker");
                     t.setDaemon(true);
@@ -108,142 +134,285 @@ public class AutonomousController {
             return;
         }
 
-        UUID uuid = entity.getUuid();
-        AutonomousState state = npcStates.computeIfAbsent(uuid, k -> new AutonomousState());
+        int slot = states.acquire(entity.getUuid(), ThreadLocalRandom.current());
+
+        // Frozen NPCs sleep until the proximity watch sees a player come within range
+        if (playerProximity.isWatching(entity.getUuid())) {
+            states.setSkippedPasses(slot, states.skippedPasses(slot) + 1);
+            return;
+        }
+
+        // Skip or thin out work for NPCs no player is near
+        DetailLevel level = getDetailLevel(world, entity);
+        DetailLevel previous = states.detailLevel(slot);
+        states.setDetailLevel(slot, level);
 
-        // Update state timers
-        state.actionTimer++;
-        if (state.currentMode == BehaviorMode.IDLE) {
-            state.idleTimer++;
+        int passes = states.skippedPasses(slot) + 1;
+        if (level == DetailLevel.FROZEN) {
+            if (previous != DetailLevel.FROZEN && entity instanceof MobEntity mob) {
+                navigator.stop(mob);
+            }
+            playerProximity.watch(entity, world, configManager.getConfig().getNpc().getLodReducedRadius(),
+                    wakeListener);
+            states.setSkippedPasses(slot, passes);
+            return;
+        }
+        if (level == DetailLevel.REDUCED && passes < configManager.getConfig().getNpc().getLodReducedInterval()) {
+            states.setSkippedPasses(slot, passes);
+            return;
+        }
+        states.setSkippedPasses(slot, 0);
+
+        // Timers run in ticks, so they catch up on skipped passes and don't depend on the think interval
+        int now = world.getServer().getTicks();
+        int lastRun = states.lastRunTick(slot);
+        int elapsed = lastRun == AutonomousStateTable.NEVER_RAN ? 0 : now - lastRun;
+        states.setLastRunTick(slot, now);
+
+        BehaviorMode mode = states.mode(slot);
+        if (mode == BehaviorMode.CONVERSING && now - states.conversationStartTick(slot) > CONVERSATION_TIMEOUT_TICKS) {
+            // Plans are ignored while conversing, so a lost conversation would pin the NPC for good
+            abandonConversation(entity.getUuid());
+            mode = states.mode(slot);
+        }
+        states.setActionTimer(slot, states.actionTimer(slot) + elapsed);
+        if (mode == BehaviorMode.IDLE) {
+            states.setIdleTimer(slot, states.idleTimer(slot) + elapsed);
         }
 
         // Slowly regenerate energy
-        if (state.energy < 1.0 && state.currentMode == BehaviorMode.RESTING) {
-            state.energy = Math.min(1.0, state.energy + 0.001);
+        if (states.energy(slot) < 1.0 && mode == BehaviorMode.RESTING) {
+            states.setEnergy(slot, Math.min(1.0, states.energy(slot) + ENERGY_REGEN_PER_TICK * elapsed));
         }
 
-        // Decide on new behavior periodically
-        if (state.actionTimer >= AUTONOMOUS_ACTION_INTERVAL) {
-            state.actionTimer = 0;
-            decideNewBehavior(world, entity, profile, state);
+        // Decide on new behavior periodically; the decision is made off-thread and applied next tick
+        if (states.actionTimer(slot) >= configManager.getConfig().getNpc().getDecisionIntervalTicks()) {
+            states.setActionTimer(slot, 0);
+            pendingSnapshots.add(takeSnapshot(world, entity, profile, slot));
         }
 
+        // One nearest-player lookup serves the whole pass
+        ServerPlayerEntity nearbyPlayer = playerProximity.closest(world, entity, 16.0);
+
         // Execute current behavior
-        executeBehavior(world, entity, profile, state);
+        executeBehavior(world, entity, profile, slot, nearbyPlayer, elapsed);
 
-        // Look at nearby entities (social awareness)
-        lookAtNearbyEntities(world, entity);
+        // Look at nearby entities (social awareness) - only worth it when someone can see it
+        if (level == DetailLevel.FULL) {
+            lookAtNearbyEntities(world, entity, nearbyPlayer);
+        }
     }
 
     /**
-     * Decide on a new behavior based on personality, mood, and environment.
+     * Detail level for an NPC from the distance to the nearest player in its world.
      */
-    private void decideNewBehavior(ServerWorld world, Entity entity, NPCProfile profile, AutonomousState state) {
-        Random random = new Random();
-
-        // Update mood based on personality
-        double friendliness = profile.getPersonalityTrait("friendliness");
-        double curiosity = profile.getPersonalityTrait("curiosity");
-        double aggression = profile.getPersonalityTrait("aggression");
+    private DetailLevel getDetailLevel(ServerWorld world, Entity entity) {
+        ModConfig.NPCConfig npcConfig = configManager.getConfig().getNpc();
+        double full = npcConfig.getLodFullRadius();
+        double reduced = npcConfig.getLodReducedRadius();
+        double nearestSq = playerProximity.nearestDistanceSq(world, entity.getX(), entity.getY(), entity.getZ(),
+                reduced);
+        if (nearestSq <= full * full) {
+            return DetailLevel.FULL;
+        }
+        return nearestSq <= reduced * reduced ? DetailLevel.REDUCED : DetailLevel.FROZEN;
+    }
 
+    /**
+     * Copy what the planner needs to know about an NPC. Server thread.
+     */
+    private DecisionSnapshot takeSnapshot(ServerWorld world, Entity entity, NPCProfile profile, int slot) {
         // Check for nearby entities to influence behavior
-        List<Entity> nearbyEntities = getNearbyEntities(world, entity, INTERACTION_RADIUS * 2);
-        boolean nearbyPlayers = nearbyEntities.stream().anyMatch(e -> e instanceof ServerPlayerEntity);
-        boolean nearbyNPCs = nearbyEntities.stream().anyMatch(e -> isNPC(e) && !e.getUuid().equals(entity.getUuid()));
+        boolean nearbyPlayers = playerProximity.closest(world, entity, INTERACTION_RADIUS * 2) != null;
+        boolean nearbyNPCs = spatialIndex.anyWithin(world, entity, INTERACTION_RADIUS * 2, npcFilter);
+
+        return new DecisionSnapshot(
+                entity.getUuid(),
+                profile.getPersonalityTrait("friendliness"),
+                profile.getPersonalityTrait("curiosity"),
+                profile.getPersonalityTrait("aggression"),
+                states.energy(slot),
+                states.idleTimer(slot),
+                entity.getX(), entity.getY(), entity.getZ(),
+                nearbyPlayers,
+                nearbyNPCs);
+    }
+
+    /**
+     * Decide on a new behavior based on personality, mood, and environment.
+     * Runs on the worker pool and only reads the snapshot.
+     */
+    private static BehaviorPlan planBehavior(DecisionSnapshot snapshot) {
+        Random random = ThreadLocalRandom.current();
 
         // Decision making based on personality and situation
-        if (state.energy < 0.2) {
-            state.currentMode = BehaviorMode.RESTING;
-            state.lastThought = "I'm feeling tired, time to rest.";
-        } else if (nearbyNPCs && friendliness > 0.5 && random.nextInt(100) < 30) {
-            state.currentMode = BehaviorMode.SOCIALIZING;
-            state.lastThought = "I see someone I should talk to.";
-        } else if (nearbyPlayers && aggression > 0.7) {
-            state.currentMode = BehaviorMode.FLEEING;
-            state.lastThought = "I don't like strangers around here.";
-        } else if (curiosity > 0.6 && random.nextInt(100) < 20) {
-            state.currentMode = BehaviorMode.EXPLORING;
-            state.targetPosition = generateWanderTarget(entity);
-            state.lastThought = "I wonder what's over there...";
-        } else if (state.idleTimer > 200) {
-            state.currentMode = BehaviorMode.WANDERING;
-            state.targetPosition = generateWanderTarget(entity);
-            state.idleTimer = 0;
-            state.lastThought = "Time to stretch my legs.";
+        if (snapshot.energy() < 0.2) {
+            return plan(snapshot, BehaviorMode.RESTING, "I'm feeling tired, time to rest.");
+        } else if (snapshot.nearbyNPCs() && snapshot.friendliness() > 0.5 && random.nextInt(100) < 30) {
+            return plan(snapshot, BehaviorMode.SOCIALIZING, "I see someone I should talk to.");
+        } else if (snapshot.nearbyPlayers() && snapshot.aggression() > 0.7) {
+            return plan(snapshot, BehaviorMode.FLEEING, "I don't like strangers around here.");
+        } else if (snapshot.curiosity() > 0.6 && random.nextInt(100) < 20) {
+            return wanderPlan(snapshot, BehaviorMode.EXPLORING, false, "I wonder what's over there...", random);
+        } else if (snapshot.idleTimer() > IDLE_WANDER_TICKS) {
+            return wanderPlan(snapshot, BehaviorMode.WANDERING, true, "Time to stretch my legs.", random);
         } else if (random.nextInt(100) < 10) {
             // Random chance to change goals
-            state.randomizeGoals();
+            return new BehaviorPlan(snapshot.uuid(), null, false, 0, 0, 0, false, null,
+                    AutonomousStateTable.pickGoals(random));
         }
+        return new BehaviorPlan(snapshot.uuid(), null, false, 0, 0, 0, false, null, NO_GOALS);
+    }
 
+    private static BehaviorPlan plan(DecisionSnapshot snapshot, BehaviorMode mode, String thought) {
+        return new BehaviorPlan(snapshot.uuid(), mode, false, 0, 0, 0, false, thought, NO_GOALS);
+    }
+
+    private static BehaviorPlan wanderPlan(DecisionSnapshot snapshot, BehaviorMode mode, boolean resetIdleTimer,
+                                           String thought, Random random) {
+        double angle = random.nextDouble() * Math.PI * 2;
+        double distance = 5.0 + random.nextDouble() * 15.0;
+        return new BehaviorPlan(snapshot.uuid(), mode, true,
+                snapshot.x() + Math.cos(angle) * distance, snapshot.y(), snapshot.z() + Math.sin(angle) * distance,
+                resetIdleTimer, thought, NO_GOALS);
+    }
+
+    /**
+     * Apply plans finished since the last tick, then hand this tick's snapshots to
+     * the worker pool. Called every server tick after the NPCs have been processed.
+     */
+    public void tickPlanning() {
+        BehaviorPlan plan;
+        while ((plan = readyPlans.poll()) != null) {
+            applyPlan(plan);
+        }
+
+        if (pendingSnapshots.isEmpty()) {
+            return;
+        }
+        List<DecisionSnapshot> batch = List.copyOf(pendingSnapshots);
+        pendingSnapshots.clear();
+
+        // One slice per worker
+        int slices = Math.min(planningThreads, batch.size());
+        int sliceSize = (batch.size() + slices - 1) / slices;
+        try {
+            for (int i = 0; i < batch.size(); i += sliceSize) {
+                List<DecisionSnapshot> slice = batch.subList(i, Math.min(batch.size(), i + sliceSize));
+                executorService.execute(() -> {
+                    for (DecisionSnapshot snapshot : slice) {
+                        readyPlans.add(planBehavior(snapshot));
+                    }
+                });
+            }
+        } catch (RejectedExecutionException e) {
+            // Shutting down
+        }
+    }
+
+    /**
+     * Apply a plan to the NPC's state and start any movement it calls for. Server thread.
+     */
+    private void applyPlan(BehaviorPlan plan) {
+        int slot = states.slot(plan.uuid());
+        // Unloaded, or a conversation started while the plan was being made
+        if (slot == AutonomousStateTable.NO_SLOT || states.mode(slot) == BehaviorMode.CONVERSING) {
+            return;
+        }
+
+        if (plan.goals() != NO_GOALS) {
+            states.setGoals(slot, plan.goals());
+        }
+        if (plan.mode() != null) {
+            states.setMode(slot, plan.mode());
+            states.setThought(slot, plan.thought());
+            if (plan.hasTarget()) {
+                states.setTarget(slot, plan.targetX(), plan.targetY(), plan.targetZ());
+            }
+            if (plan.resetIdleTimer()) {
+                states.setIdleTimer(slot, 0);
+            }
+        }
+
+        NPCProfile profile = npcRegistry.getProfile(plan.uuid());
+        if (profile == null) {
+            return;
+        }
         // Update profile with new thought
-        if (!state.lastThought.isEmpty()) {
+        if (!states.thought(slot).isEmpty()) {
             profile.setStatus(NPCProfile.NPCStatus.THINKING);
         }
+
+        BehaviorMode mode = states.mode(slot);
+        if (states.hasTarget(slot) && (mode == BehaviorMode.WANDERING || mode == BehaviorMode.EXPLORING)) {
+            Entity entity = AINpcConnectorMod.getNpcManager().getLoadedEntity(plan.uuid());
+            if (entity instanceof MobEntity mob) {
+                moveTowards(mob, slot, profile);
+            }
+        }
     }
 
     /**
      * Execute the current behavior.
      */
-    private void executeBehavior(ServerWorld world, Entity entity, NPCProfile profile, AutonomousState state) {
+    private void executeBehavior(ServerWorld world, Entity entity, NPCProfile profile, int slot,
+                                 ServerPlayerEntity nearbyPlayer, int elapsedTicks) {
         if (!(entity instanceof MobEntity mob)) {
             return;
         }
 
-        switch (state.currentMode) {
+        switch (states.mode(slot)) {
             case WANDERING, EXPLORING -> {
-                if (state.targetPosition == null) {
-                    state.targetPosition = generateWanderTarget(entity);
+                if (!states.hasTarget(slot)) {
+                    generateWanderTarget(entity, slot);
                 }
-                moveTowards(mob, state.targetPosition, profile);
+                moveTowards(mob, slot, profile);
             }
             case FOLLOWING -> {
-                if (state.targetEntity != null) {
-                    Entity target = world.getEntity(state.targetEntity);
+                UUID targetEntity = states.targetEntity(slot);
+                if (targetEntity != null) {
+                    Entity target = world.getEntity(targetEntity);
                     if (target != null) {
                         follow(mob, target);
                     } else {
-                        state.targetEntity = null;
-                        state.currentMode = BehaviorMode.IDLE;
+                        states.setTargetEntity(slot, null);
+                        states.setMode(slot, BehaviorMode.IDLE);
                     }
                 }
             }
             case SOCIALIZING -> {
                 // Find nearby NPCs to socialize with
                 Entity nearbyNPC = findNearestNPC(world, entity, INTERACTION_RADIUS);
-                if (nearbyNPC != null && Math.random() < 0.02) { // Small chance per tick
-                    initiateNPCConversation(world, entity, nearbyNPC, profile, state);
+                if (nearbyNPC != null && ThreadLocalRandom.current().nextDouble() < 0.02) { // Small chance per tick
+                    initiateNPCConversation(world, entity, nearbyNPC, profile, slot);
                 }
             }
             case FLEEING -> {
-                Vec3d awayFrom = getNearestPlayerPosition(world, entity);
-                if (awayFrom != null) {
-                    moveAwayFrom(mob, awayFrom);
+                if (nearbyPlayer != null) {
+                    moveAwayFrom(mob, slot, nearbyPlayer.getX(), nearbyPlayer.getZ());
                 } else {
-                    state.currentMode = BehaviorMode.IDLE;
+                    states.setMode(slot, BehaviorMode.IDLE);
                 }
             }
             case RESTING, IDLE, CONVERSING, WORKING -> {
                 // Stay still, occasionally look around
-                if (Math.random() < 0.05) {
-                    Entity target = world.getClosestPlayer(mob, 16.0);
-                    if (target != null) {
-                        mob.getLookControl().lookAt(target);
-                    }
+                if (nearbyPlayer != null && ThreadLocalRandom.current().nextDouble() < 0.05) {
+                    mob.getLookControl().lookAt(nearbyPlayer);
                 }
             }
         }
 
         // Slowly decrease energy when moving
-        if (isMoving(mob) && state.currentMode != BehaviorMode.RESTING) {
-            state.energy = Math.max(0.0, state.energy - 0.0001);
+        if (isMoving(mob) && states.mode(slot) != BehaviorMode.RESTING) {
+            states.setEnergy(slot, Math.max(0.0, states.energy(slot) - ENERGY_DRAIN_PER_TICK * elapsedTicks));
         }
     }
 
     /**
      * Generate a random wandering target position.
      */
-    private Vec3d generateWanderTarget(Entity entity) {
-        Random random = new Random();
+    private void generateWanderTarget(Entity entity, int slot) {
+        Random random = ThreadLocalRandom.current();
         double angle = random.nextDouble() * Math.PI * 2;
         double distance = 5.0 + random.nextDouble() * 15.0;
 
@@ -251,31 +420,28 @@ public class AutonomousController {
         double z = entity.getZ() + Math.sin(angle) * distance;
         double y = entity.getY();
 
-        return new Vec3d(x, y, z);
+        states.setTarget(slot, x, y, z);
     }
 
     /**
      * Move the NPC towards a target position.
      */
-    private void moveTowards(MobEntity mob, Vec3d target, NPCProfile profile) {
-        double dx = target.x - mob.getX();
-        double dz = target.z - mob.getZ();
+    private void moveTowards(MobEntity mob, int slot, NPCProfile profile) {
+        double dx = states.targetX(slot) - mob.getX();
+        double dz = states.targetZ(slot) - mob.getZ();
         double distance = Math.sqrt(dx * dx + dz * dz);
 
         if (distance < 1.5) {
             // Arrived at target
-            AutonomousState state = npcStates.get(mob.getUuid());
-            if (state != null) {
-                state.targetPosition = null;
-                state.currentMode = BehaviorMode.IDLE;
-            }
+            states.clearTarget(slot);
+            states.setMode(slot, BehaviorMode.IDLE);
             return;
         }
 
         // Set movement - use profile curiosity for speed variation
         double curiosity = profile.getPersonalityTrait("curiosity");
         double speed = MOVEMENT_SPEED * (1.0 + curiosity * 0.3);
-        mob.getNavigation().startMovingTo(target.x, target.y, target.z, speed);
+        navigator.moveTo(mob, states.targetX(slot), states.targetY(slot), states.targetZ(slot), speed);
     }
 
     /**
@@ -285,7 +451,7 @@ public class AutonomousController {
         double distance = mob.squaredDistanceTo(target);
         if (distance > 36.0) { // More than 6 blocks away
             double speed = MOVEMENT_SPEED * 1.2;
-            mob.getNavigation().startMovingTo(target, speed);
+            navigator.follow(mob, target, speed);
         }
         mob.getLookControl().lookAt(target);
     }
@@ -293,27 +459,23 @@ public class AutonomousController {
     /**
      * Move away from a position.
      */
-    private void moveAwayFrom(MobEntity mob, Vec3d from) {
-        double dx = mob.getX() - from.x;
-        double dz = mob.getZ() - from.z;
+    private void moveAwayFrom(MobEntity mob, int slot, double fromX, double fromZ) {
+        double dx = mob.getX() - fromX;
+        double dz = mob.getZ() - fromZ;
         double distance = Math.sqrt(dx * dx + dz * dz);
 
         if (distance > 16.0) {
-            AutonomousState state = npcStates.get(mob.getUuid());
-            if (state != null) {
-                state.currentMode = BehaviorMode.IDLE;
-            }
+            states.setMode(slot, BehaviorMode.IDLE);
             return;
         }
 
         // Move in opposite direction
         double speed = MOVEMENT_SPEED * 1.5;
-        Vec3d target = new Vec3d(
+        navigator.moveTo(mob,
                 mob.getX() + dx / distance * 10,
                 mob.getY(),
-                mob.getZ() + dz / distance * 10
-        );
-        mob.getNavigation().startMovingTo(target.x, target.y, target.z, speed);
+                mob.getZ() + dz / distance * 10,
+                speed);
     }
 
     /**
@@ -327,45 +489,7 @@ public class AutonomousController {
      * Find the nearest NPC within range.
      */
     private Entity findNearestNPC(ServerWorld world, Entity entity, double radius) {
-        Entity nearest = null;
-        double nearestDist = radius * radius;
-
-        for (Entity other : world.iterateEntities()) {
-            if (isNPC(other) && !other.getUuid().equals(entity.getUuid())) {
-                double dist = entity.squaredDistanceTo(other);
-                if (dist < nearestDist) {
-                    nearest = other;
-                    nearestDist = dist;
-                }
-            }
-        }
-
-        return nearest;
-    }
-
-    /**
-     * Get position of nearest player.
-     */
-    private Vec3d getNearestPlayerPosition(ServerWorld world, Entity entity) {
-        Entity player = world.getClosestPlayer(entity, 16.0);
-        return player != null ? player.getPos() : null;
-    }
-
-    /**
-     * Get all nearby entities.
-     */
-    private List<Entity> getNearbyEntities(ServerWorld world, Entity entity, double radius) {
-        List<Entity> nearby = new ArrayList<>();
-        double radiusSq = radius * radius;
-
-        for (Entity other : world.iterateEntities()) {
-            if (!other.getUuid().equals(entity.getUuid()) &&
-                entity.squaredDistanceTo(other) < radiusSq) {
-                nearby.add(other);
-            }
-        }
-
-        return nearby;
+        return spatialIndex.nearest(world, entity, radius, npcFilter);
     }
 
     /**
@@ -377,16 +501,22 @@ public class AutonomousController {
         return profile != null && profile.isAiEnabled();
     }
 
+    /**
+     * A player came within reduced range of a sleeping NPC: let its next pass run.
+     */
+    private void wake(UUID npc, ServerPlayerEntity player) {
+        playerProximity.unwatch(npc);
+    }
+
     /**
      * Look at nearby entities for social awareness.
      */
-    private void lookAtNearbyEntities(ServerWorld world, Entity entity) {
+    private void lookAtNearbyEntities(ServerWorld world, Entity entity, ServerPlayerEntity nearbyPlayer) {
         if (!(entity instanceof MobEntity mob)) return;
 
         // Prioritize looking at players
-        Entity nearestPlayer = world.getClosestPlayer(entity, 16.0);
-        if (nearestPlayer != null) {
-            mob.getLookControl().lookAt(nearestPlayer);
+        if (nearbyPlayer != null) {
+            mob.getLookControl().lookAt(nearbyPlayer);
             return;
         }
 
@@ -397,16 +527,21 @@ public class AutonomousController {
         }
     }
 
+    /**
+     * Advance batched NPC dialogue. Called every server tick.
+     */
+    public void tickDialogue(int tick) {
+        dialogueDirector.tick(tick);
+    }
+
     /**
      * Initiate a conversation between two NPCs.
      */
     private void initiateNPCConversation(ServerWorld world, Entity speaker, Entity listener,
-                                         NPCProfile speakerProfile, AutonomousState state) {
-        // Mark both as conversing
-        state.currentMode = BehaviorMode.CONVERSING;
-        AutonomousState listenerState = npcStates.get(listener.getUuid());
-        if (listenerState != null) {
-            listenerState.currentMode = BehaviorMode.CONVERSING;
+                                         NPCProfile speakerProfile, int slot) {
+        // Either NPC may already be in a batched conversation
+        if (dialogueDirector.isBusy(speaker.getUuid()) || dialogueDirector.isBusy(listener.getUuid())) {
+            return;
         }
 
         // Don't start if already processing
@@ -414,13 +549,10 @@ public class AutonomousController {
             return;
         }
 
-        // Get listener profile - make effectively final
-        final NPCProfile listenerProfile;
-        NPCProfile tempProfile = npcRegistry.getProfile(listener.getUuid());
-        if (tempProfile == null) {
-            listenerProfile = npcRegistry.getOrCreateProfile(listener);
-        } else {
-            listenerProfile = tempProfile;
+        // Get listener profile; null while it is still being loaded
+        final NPCProfile listenerProfile = npcRegistry.getOrCreateProfile(listener);
+        if (listenerProfile == null) {
+            return;
         }
 
         // Get social relationship context
@@ -439,7 +571,15 @@ public class AutonomousController {
         } else {
             topics = new String[]{"the weather", "casual greetings", "nearby events", "local rumors"};
         }
-        String topic = topics[new Random().nextInt(topics.length)];
+        String topic = topics[ThreadLocalRandom.current().nextInt(topics.length)];
+
+        if (configManager.getConfig().getNpc().isBatchNpcDialogue()) {
+            // The whole exchange is written in one completion together with other pairs
+            startConversation(world, slot, listener);
+            dialogueDirector.enqueue(new DialogueDirector.Pair(world, speaker, listener, speakerProfile,
+                    listenerProfile, relationshipContext, topic));
+            return;
+        }
 
         // Create conversational prompt with relationship context
         String prompt = String.format(
@@ -456,11 +596,17 @@ public class AutonomousController {
         AIProvider provider = AIProviderFactory.createForNPC(speakerProfile, configManager.getConfig());
         if (!provider.isConfigured()) return;
 
-        // Store active request
-        CompletableFuture<String> request = provider.chatCompletion(
+        // Only mark both as conversing once the request is really going out
+        startConversation(world, slot, listener);
+
+        // Store active request - NPC chatter yields to player requests and may be shed
+        CompletableFuture<String> request = AIRequestScheduler.getInstance().chat(
+                provider,
+                AIRequestScheduler.Priority.NPC_CONVERSATION,
+                speaker.getUuid(),
                 PersonalityEngine.generateSystemPrompt(speakerProfile),
                 prompt,
-                ""
+                List.of()
         );
         activeRequests.put(speaker.getUuid(), request);
 
@@ -480,15 +626,18 @@ public class AutonomousController {
                     listenerProfile.getEntityName(),
                     response);
 
-            for (ServerPlayerEntity player : world.getPlayers()) {
-                if (player.squaredDistanceTo(speaker) < 64.0) { // 8 blocks
-                    player.sendMessage(Text.literal(message), false);
-                }
+            for (Entity player : spatialIndex.queryRadius(world, speaker, 8.0, PLAYER_FILTER)) {
+                ((ServerPlayerEntity) player).sendMessage(Text.literal(message), false);
             }
 
             // Update conversation history
-            speakerProfile.addToConversationHistory("Said to " + listenerProfile.getEntityName() + ": " + response);
-            listenerProfile.addToConversationHistory("Heard from " + speakerProfile.getEntityName() + ": " + response);
+            int historyBudget = configManager.getConfig().getAi().getHistoryTokenBudget();
+            speakerProfile.addConversationTurn(
+                    ChatMessage.assistant("(to " + listenerProfile.getEntityName() + ") " + response));
+            speakerProfile.compactConversationHistory(historyBudget);
+            listenerProfile.addConversationTurn(
+                    ChatMessage.user(speakerProfile.getEntityName() + ": " + response));
+            listenerProfile.compactConversationHistory(historyBudget);
 
             // Evolve personalities
             PersonalityEngine.evolve(speakerProfile, "talking to " + listenerProfile.getEntityName(), response);
@@ -497,11 +646,8 @@ public class AutonomousController {
             npcRegistry.register(speakerProfile);
             npcRegistry.register(listenerProfile);
 
-            // Reset states after conversation
-            state.currentMode = BehaviorMode.IDLE;
-            if (listenerState != null) {
-                listenerState.currentMode = BehaviorMode.IDLE;
-            }
+            // Reset states after conversation - the state table belongs to the server thread
+            endConversation(world, speaker, listener);
 
             // Voice output (optional)
             if (speakerProfile.isVoiceEnabled() && configManager.getConfig().getVoice().isEnabled()) {
@@ -509,16 +655,51 @@ public class AutonomousController {
             }
         }).exceptionally(ex -> {
             activeRequests.remove(speaker.getUuid());
-            LOGGER.error("[Easy NPC kracked AI] NPC-to-NPC conversation failed", ex);
-            state.currentMode = BehaviorMode.IDLE;
+            Throwable cause = ex instanceof CompletionException && ex.getCause() != null ? ex.getCause() : ex;
+            if (cause instanceof RejectedExecutionException) {
+                // Shed by the scheduler while players are waiting
+                LOGGER.debug("[Easy NPC kracked AI] NPC-to-NPC conversation skipped: {}", cause.getMessage());
+            } else {
+                LOGGER.error("[Easy NPC kracked AI] NPC-to-NPC conversation failed", ex);
+            }
+            endConversation(world, speaker, listener);
             return null;
         });
     }
 
+    private void startConversation(ServerWorld world, int slot, Entity listener) {
+        int tick = world.getServer().getTicks();
+        states.startConversation(slot, tick);
+        int listenerSlot = states.slot(listener.getUuid());
+        if (listenerSlot != AutonomousStateTable.NO_SLOT) {
+            states.startConversation(listenerSlot, tick);
+        }
+    }
+
+    /**
+     * Drop a conversation that never finished and put the NPC back to idle. Server thread.
+     */
+    private void abandonConversation(UUID uuid) {
+        CompletableFuture<String> request = activeRequests.remove(uuid);
+        if (request != null) {
+            request.cancel(true);
+        }
+        dialogueDirector.cancel(uuid);
+        states.endConversation(uuid);
+        LOGGER.debug("[Easy NPC kracked AI] Conversation of NPC {} timed out", uuid);
+    }
+
+    private void endConversation(ServerWorld world, Entity speaker, Entity listener) {
+        world.getServer().execute(() -> {
+            states.endConversation(speaker.getUuid());
+            states.endConversation(listener.getUuid());
+        });
+    }
+
     /**
      * Analyze conversation quality based on response content.
      */
-    private SocialSystem.InteractionQuality analyzeConversationQuality(String response) {
+    static SocialSystem.InteractionQuality analyzeConversationQuality(String response) {
         String lower = response.toLowerCase();
 
         // Positive indicators
@@ -539,27 +720,59 @@ public class AutonomousController {
     }
 
     /**
-     * Called when an NPC is unloaded.
+     * Called when an NPC is loaded. Drops state left over from an unload that
+     * was missed, so the NPC starts fresh instead of resuming an old mode,
+     * timers or conversation.
+     */
+    public void onNPCLoaded(Entity entity) {
+        onNPCUnloaded(entity);
+    }
+
+    /**
+     * Called when an NPC is unloaded. Frees its state slot and drops its
+     * navigation state, proximity watch, queued dialogue and AI requests.
      */
     public void onNPCUnloaded(Entity entity) {
         CompletableFuture<String> request = activeRequests.remove(entity.getUuid());
         if (request != null) {
             request.cancel(true);
         }
-        npcStates.remove(entity.getUuid());
+        dialogueDirector.cancel(entity.getUuid());
+        navigator.forget(entity.getUuid());
+        playerProximity.unwatch(entity.getUuid());
+        states.release(entity.getUuid());
+    }
+
+    /**
+     * Get the current behavior mode of an NPC, or null if it has no autonomous state.
+     * Server thread only.
+     */
+    public BehaviorMode getBehaviorMode(UUID uuid) {
+        int slot = states.slot(uuid);
+        return slot != AutonomousStateTable.NO_SLOT ? states.mode(slot) : null;
+    }
+
+    /**
+     * Get the energy of an NPC, 0 = tired, 1 = energetic, or -1 if it has no autonomous state.
+     * Server thread only.
+     */
+    public double getEnergy(UUID uuid) {
+        int slot = states.slot(uuid);
+        return slot != AutonomousStateTable.NO_SLOT ? states.energy(slot) : -1;
     }
 
     /**
-     * Get the autonomous state for an NPC.
+     * Pathfinding counters for the scheduler stats endpoint.
      */
-    public AutonomousState getState(UUID uuid) {
-        return npcStates.get(uuid);
+    public Map<String, Object> getNavigationStats() {
+        return navigator.getStats();
     }
 
     /**
      * Shutdown the controller.
      */
     public void shutdown() {
+        dialogueDirector.shutdown();
         executorService.shutdown();
         voiceIntegration.shutdown();
     }
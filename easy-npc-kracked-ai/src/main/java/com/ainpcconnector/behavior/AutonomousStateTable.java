@@ -0,0 +1,275 @@
+package com.ainpcconnector.behavior;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.UUID;
+
+/**
+ * Autonomous state of all loaded NPCs, stored column-wise in primitive arrays.
+ * Each NPC gets an int slot on first use; slots of unloaded NPCs are reused.
+ * The tick loop reads and writes the arrays directly by slot without allocating.
+ * Server thread only.
+ */
+final class AutonomousStateTable {
+
+    static final int NO_SLOT = -1;
+    static final int NEVER_RAN = Integer.MIN_VALUE;
+
+    static final String[] GOALS = {"explore", "socialize", "rest", "work", "wander"};
+
+    private static final AutonomousController.BehaviorMode[] MODES = AutonomousController.BehaviorMode.values();
+    private static final AutonomousController.DetailLevel[] LEVELS = AutonomousController.DetailLevel.values();
+
+    private final Map<UUID, Integer> slots = new HashMap<>();
+    private int[] freeSlots = new int[16];
+    private int freeCount = 0;
+    private int nextSlot = 0;
+    private int capacity = 0;
+
+    private byte[] modes = new byte[0];
+    private byte[] detailLevels = new byte[0];
+    private int[] actionTimers = new int[0];
+    private int[] idleTimers = new int[0];
+    private int[] skippedPasses = new int[0]; // passes not run at reduced or frozen detail
+    private int[] lastRunTicks = new int[0]; // server tick of the last full pass, timers catch up from here
+    private int[] conversationStartTicks = new int[0]; // server tick the current conversation started
+    private double[] moods = new double[0]; // 0 = unhappy, 1 = happy
+    private double[] energies = new double[0]; // 0 = tired, 1 = energetic
+    private boolean[] hasTarget = new boolean[0];
+    private double[] targetX = new double[0];
+    private double[] targetY = new double[0];
+    private double[] targetZ = new double[0];
+    private UUID[] targetEntities = new UUID[0];
+    private int[] goals = new int[0]; // bit i set = GOALS[i]
+    private String[] thoughts = new String[0];
+
+    AutonomousStateTable() {
+        grow(64);
+    }
+
+    /**
+     * Slot of an NPC, or NO_SLOT if it has no state.
+     */
+    int slot(UUID uuid) {
+        Integer slot = slots.get(uuid);
+        return slot != null ? slot : NO_SLOT;
+    }
+
+    /**
+     * Slot of an NPC, creating fresh state if needed.
+     */
+    int acquire(UUID uuid, Random random) {
+        Integer existing = slots.get(uuid);
+        if (existing != null) {
+            return existing;
+        }
+
+        int slot;
+        if (freeCount > 0) {
+            slot = freeSlots[--freeCount];
+        } else {
+            if (nextSlot == capacity) {
+                grow(capacity * 2);
+            }
+            slot = nextSlot++;
+        }
+        slots.put(uuid, slot);
+
+        modes[slot] = (byte) AutonomousController.BehaviorMode.IDLE.ordinal();
+        detailLevels[slot] = (byte) AutonomousController.DetailLevel.FULL.ordinal();
+        actionTimers[slot] = 0;
+        idleTimers[slot] = 0;
+        skippedPasses[slot] = 0;
+        lastRunTicks[slot] = NEVER_RAN;
+        moods[slot] = 0.5;
+        energies[slot] = 1.0;
+        hasTarget[slot] = false;
+        targetEntities[slot] = null;
+        thoughts[slot] = "";
+        randomizeGoals(slot, random);
+        return slot;
+    }
+
+    void release(UUID uuid) {
+        Integer slot = slots.remove(uuid);
+        if (slot == null) {
+            return;
+        }
+        targetEntities[slot] = null;
+        thoughts[slot] = null;
+        if (freeCount == freeSlots.length) {
+            freeSlots = Arrays.copyOf(freeSlots, freeCount * 2);
+        }
+        freeSlots[freeCount++] = slot;
+    }
+
+    /**
+     * Put an NPC into conversation, remembering when so a lost one can time out.
+     */
+    void startConversation(int slot, int tick) {
+        setMode(slot, AutonomousController.BehaviorMode.CONVERSING);
+        conversationStartTicks[slot] = tick;
+    }
+
+    int conversationStartTick(int slot) {
+        return conversationStartTicks[slot];
+    }
+
+    /**
+     * Put a conversing NPC back to idle.
+     */
+    void endConversation(UUID uuid) {
+        int slot = slot(uuid);
+        if (slot != NO_SLOT && mode(slot) == AutonomousController.BehaviorMode.CONVERSING) {
+            setMode(slot, AutonomousController.BehaviorMode.IDLE);
+        }
+    }
+
+    AutonomousController.BehaviorMode mode(int slot) {
+        return MODES[modes[slot]];
+    }
+
+    void setMode(int slot, AutonomousController.BehaviorMode mode) {
+        modes[slot] = (byte) mode.ordinal();
+    }
+
+    AutonomousController.DetailLevel detailLevel(int slot) {
+        return LEVELS[detailLevels[slot]];
+    }
+
+    void setDetailLevel(int slot, AutonomousController.DetailLevel level) {
+        detailLevels[slot] = (byte) level.ordinal();
+    }
+
+    int actionTimer(int slot) {
+        return actionTimers[slot];
+    }
+
+    void setActionTimer(int slot, int value) {
+        actionTimers[slot] = value;
+    }
+
+    int idleTimer(int slot) {
+        return idleTimers[slot];
+    }
+
+    void setIdleTimer(int slot, int value) {
+        idleTimers[slot] = value;
+    }
+
+    int skippedPasses(int slot) {
+        return skippedPasses[slot];
+    }
+
+    void setSkippedPasses(int slot, int value) {
+        skippedPasses[slot] = value;
+    }
+
+    int lastRunTick(int slot) {
+        return lastRunTicks[slot];
+    }
+
+    void setLastRunTick(int slot, int tick) {
+        lastRunTicks[slot] = tick;
+    }
+
+    double mood(int slot) {
+        return moods[slot];
+    }
+
+    void setMood(int slot, double value) {
+        moods[slot] = value;
+    }
+
+    double energy(int slot) {
+        return energies[slot];
+    }
+
+    void setEnergy(int slot, double value) {
+        energies[slot] = value;
+    }
+
+    boolean hasTarget(int slot) {
+        return hasTarget[slot];
+    }
+
+    double targetX(int slot) {
+        return targetX[slot];
+    }
+
+    double targetY(int slot) {
+        return targetY[slot];
+    }
+
+    double targetZ(int slot) {
+        return targetZ[slot];
+    }
+
+    void setTarget(int slot, double x, double y, double z) {
+        hasTarget[slot] = true;
+        targetX[slot] = x;
+        targetY[slot] = y;
+        targetZ[slot] = z;
+    }
+
+    void clearTarget(int slot) {
+        hasTarget[slot] = false;
+    }
+
+    UUID targetEntity(int slot) {
+        return targetEntities[slot];
+    }
+
+    void setTargetEntity(int slot, UUID target) {
+        targetEntities[slot] = target;
+    }
+
+    String thought(int slot) {
+        return thoughts[slot];
+    }
+
+    void setThought(int slot, String thought) {
+        thoughts[slot] = thought;
+    }
+
+    int goals(int slot) {
+        return goals[slot];
+    }
+
+    void setGoals(int slot, int goalBits) {
+        goals[slot] = goalBits;
+    }
+
+    void randomizeGoals(int slot, Random random) {
+        goals[slot] = pickGoals(random);
+    }
+
+    /**
+     * Two random goals as a bitset. They may be the same goal.
+     */
+    static int pickGoals(Random random) {
+        return (1 << random.nextInt(GOALS.length)) | (1 << random.nextInt(GOALS.length));
+    }
+
+    private void grow(int newCapacity) {
+        modes = Arrays.copyOf(modes, newCapacity);
+        detailLevels = Arrays.copyOf(detailLevels, newCapacity);
+        actionTimers = Arrays.copyOf(actionTimers, newCapacity);
+        idleTimers = Arrays.copyOf(idleTimers, newCapacity);
+        skippedPasses = Arrays.copyOf(skippedPasses, newCapacity);
+        lastRunTicks = Arrays.copyOf(lastRunTicks, newCapacity);
+        conversationStartTicks = Arrays.copyOf(conversationStartTicks, newCapacity);
+        moods = Arrays.copyOf(moods, newCapacity);
+        energies = Arrays.copyOf(energies, newCapacity);
+        hasTarget = Arrays.copyOf(hasTarget, newCapacity);
+        targetX = Arrays.copyOf(targetX, newCapacity);
+        targetY = Arrays.copyOf(targetY, newCapacity);
+        targetZ = Arrays.copyOf(targetZ, newCapacity);
+        targetEntities = Arrays.copyOf(targetEntities, newCapacity);
+        goals = Arrays.copyOf(goals, newCapacity);
+        thoughts = Arrays.copyOf(thoughts, newCapacity);
+        capacity = newCapacity;
+    }
+}
@@ -0,0 +1,388 @@
+package com.ainpcconnector.behavior;
+
+import com.ainpcconnector.ai.AIProvider;
+import com.ainpcconnector.ai.AIProviderFactory;
+import com.ainpcconnector.ai.AIRequestScheduler;
+import com.ainpcconnector.ai.ChatMessage;
+import com.ainpcconnector.config.ConfigManager;
+import com.ainpcconnector.config.ModConfig;
+import com.ainpcconnector.npc.NPCProfile;
+import com.ainpcconnector.npc.NPCRegistry;
+import com.ainpcconnector.npc.NPCSpatialIndex;
+import com.ainpcconnector.voice.VoiceIntegration;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import net.minecraft.entity.Entity;
+import net.minecraft.server.network.ServerPlayerEntity;
+import net.minecraft.server.world.ServerWorld;
+import net.minecraft.text.Text;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * Batches NPC-to-NPC conversations into a single completion.
+ * Conversation openings collected within a short tick window are sent to the
+ * model together; it writes a short multi-turn script for every pair as JSON,
+ * and the lines are played out over the following ticks on the server thread.
+ */
+class DialogueDirector {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(DialogueDirector.class);
+
+    private static final int MAX_PAIRS_PER_BATCH = 3; // keeps the script within the providers' response token limit
+    private static final int MAX_LINES_PER_PAIR = 6;
+    // Offset between the first lines of different pairs so they don't all speak at once
+    private static final int PAIR_STAGGER_TICKS = 10;
+
+    private static final String SYSTEM_PROMPT = """
+            You write short, natural dialogue between NPCs in a Minecraft world.
+            Each conversation is between speaker A and speaker B; A speaks first and they take turns.
+            Write 2 to 4 lines per conversation, each line 1-2 sentences, in character for each speaker.
+            Reply with JSON only, no other text, in exactly this format:
+            {"conversations":[{"pair":0,"lines":[{"speaker":"A","text":"..."},{"speaker":"B","text":"..."}]}]}
+            """;
+
+    /**
+     * A conversation between two NPCs, from the opening until the last line is played.
+     */
+    static final class Pair {
+        final ServerWorld world;
+        final Entity speaker;
+        final Entity listener;
+        final NPCProfile speakerProfile;
+        final NPCProfile listenerProfile;
+        final String relationship;
+        final String topic;
+        volatile boolean finished = false;
+
+        Pair(ServerWorld world, Entity speaker, Entity listener, NPCProfile speakerProfile,
+                NPCProfile listenerProfile, String relationship, String topic) {
+            this.world = world;
+            this.speaker = speaker;
+            this.listener = listener;
+            this.speakerProfile = speakerProfile;
+            this.listenerProfile = listenerProfile;
+            this.relationship = relationship;
+            this.topic = topic;
+        }
+
+        boolean involves(UUID uuid) {
+            return speaker.getUuid().equals(uuid) || listener.getUuid().equals(uuid);
+        }
+    }
+
+    private static final class Line {
+        final Pair pair;
+        final boolean fromSpeaker;
+        final String text;
+        boolean last;
+        int dueTick;
+
+        Line(Pair pair, boolean fromSpeaker, String text) {
+            this.pair = pair;
+            this.fromSpeaker = fromSpeaker;
+            this.text = text;
+        }
+    }
+
+    private final ConfigManager configManager;
+    private final NPCRegistry npcRegistry;
+    private final SocialSystem socialSystem;
+    private final VoiceIntegration voiceIntegration;
+    private final AutonomousStateTable states;
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    // Server thread only
+    private final List<Pair> pending = new ArrayList<>();
+    private final List<Line> scheduled = new ArrayList<>();
+    private int windowStartTick = -1;
+    private int currentTick = 0;
+
+    // Scripts parsed and failed pairs reported on the HTTP thread, picked up by the next tick
+    private final Queue<List<Line>> ready = new ConcurrentLinkedQueue<>();
+    private final Queue<Pair> abandoned = new ConcurrentLinkedQueue<>();
+    private final Set<UUID> busy = ConcurrentHashMap.newKeySet();
+    private final Set<CompletableFuture<String>> requests = ConcurrentHashMap.newKeySet();
+
+    DialogueDirector(ConfigManager configManager, NPCRegistry npcRegistry, SocialSystem socialSystem,
+            VoiceIntegration voiceIntegration, AutonomousStateTable states) {
+        this.configManager = configManager;
+        this.npcRegistry = npcRegistry;
+        this.socialSystem = socialSystem;
+        this.voiceIntegration = voiceIntegration;
+        this.states = states;
+    }
+
+    /**
+     * Whether the NPC is waiting for or playing a batched conversation.
+     */
+    public boolean isBusy(UUID uuid) {
+        return busy.contains(uuid);
+    }
+
+    /**
+     * Queue a conversation opening for the next batch.
+     */
+    public void enqueue(Pair pair) {
+        busy.add(pair.speaker.getUuid());
+        busy.add(pair.listener.getUuid());
+        if (pending.isEmpty()) {
+            windowStartTick = currentTick;
+        }
+        pending.add(pair);
+    }
+
+    /**
+     * Advance by one server tick: send a batch once the window closes and play due lines.
+     */
+    public void tick(int tick) {
+        currentTick = tick;
+
+        ModConfig.NPCConfig config = configManager.getConfig().getNpc();
+        if (!pending.isEmpty() && (pending.size() >= MAX_PAIRS_PER_BATCH
+                || tick - windowStartTick >= config.getDialogueBatchWindowTicks())) {
+            flush();
+        }
+
+        Pair failed;
+        while ((failed = abandoned.poll()) != null) {
+            finish(failed);
+        }
+
+        List<Line> script;
+        int stagger = 0;
+        while ((script = ready.poll()) != null) {
+            int due = tick + stagger;
+            for (Line line : script) {
+                line.dueTick = due;
+                due += config.getDialogueLineIntervalTicks();
+                scheduled.add(line);
+            }
+            stagger += PAIR_STAGGER_TICKS;
+        }
+
+        Iterator<Line> it = scheduled.iterator();
+        while (it.hasNext()) {
+            Line line = it.next();
+            if (line.pair.finished) {
+                it.remove();
+            } else if (line.dueTick <= tick) {
+                it.remove();
+                play(line);
+            }
+        }
+    }
+
+    /**
+     * Drop everything involving the NPC.
+     */
+    public void cancel(UUID uuid) {
+        Iterator<Pair> it = pending.iterator();
+        while (it.hasNext()) {
+            Pair pair = it.next();
+            if (pair.involves(uuid)) {
+                it.remove();
+                finish(pair);
+            }
+        }
+        for (Line line : scheduled) {
+            if (line.pair.involves(uuid)) {
+                finish(line.pair);
+            }
+        }
+        busy.remove(uuid);
+    }
+
+    public void shutdown() {
+        for (CompletableFuture<String> request : requests) {
+            request.cancel(true);
+        }
+        requests.clear();
+    }
+
+    private void flush() {
+        // One request per provider, up to MAX_PAIRS_PER_BATCH pairs each
+        Map<String, List<Pair>> byProvider = new LinkedHashMap<>();
+        Map<String, AIProvider> providers = new LinkedHashMap<>();
+        for (Pair pair : pending) {
+            AIProvider provider = AIProviderFactory.createForNPC(pair.speakerProfile, configManager.getConfig());
+            if (!provider.isConfigured()) {
+                finish(pair);
+                continue;
+            }
+            providers.putIfAbsent(provider.getId(), provider);
+            byProvider.computeIfAbsent(provider.getId(), k -> new ArrayList<>()).add(pair);
+        }
+        pending.clear();
+        windowStartTick = -1;
+
+        for (Map.Entry<String, List<Pair>> entry : byProvider.entrySet()) {
+            List<Pair> pairs = entry.getValue();
+            for (int i = 0; i < pairs.size(); i += MAX_PAIRS_PER_BATCH) {
+                request(providers.get(entry.getKey()), pairs.subList(i, Math.min(pairs.size(), i + MAX_PAIRS_PER_BATCH)));
+            }
+        }
+    }
+
+    private void request(AIProvider provider, List<Pair> batch) {
+        List<Pair> pairs = List.copyOf(batch);
+
+        StringBuilder prompt = new StringBuilder("Write these conversations:\n");
+        for (int i = 0; i < pairs.size(); i++) {
+            Pair pair = pairs.get(i);
+            prompt.append("\nPair ").append(i).append(":\n");
+            appendSpeaker(prompt, "A", pair.speakerProfile);
+            appendSpeaker(prompt, "B", pair.listenerProfile);
+            prompt.append("Relationship: ").append(pair.relationship).append("\n");
+            prompt.append("Topic: ").append(pair.topic).append("\n");
+        }
+
+        CompletableFuture<String> request = AIRequestScheduler.getInstance().chat(
+                provider,
+                AIRequestScheduler.Priority.NPC_CONVERSATION,
+                pairs.get(0).speaker.getUuid(),
+                SYSTEM_PROMPT,
+                prompt.toString(),
+                List.of());
+        requests.add(request);
+
+        request.whenComplete((response, ex) -> {
+            requests.remove(request);
+            if (ex != null) {
+                Throwable cause = ex instanceof CompletionException && ex.getCause() != null ? ex.getCause() : ex;
+                if (cause instanceof RejectedExecutionException) {
+                    LOGGER.debug("[Easy NPC kracked AI] NPC dialogue batch skipped: {}", cause.getMessage());
+                } else {
+                    LOGGER.error("[Easy NPC kracked AI] NPC dialogue batch failed", ex);
+                }
+                abandoned.addAll(pairs);
+                return;
+            }
+
+            List<List<Line>> scripts = parseScripts(response, pairs);
+            for (int i = 0; i < pairs.size(); i++) {
+                List<Line> script = scripts.get(i);
+                if (script.isEmpty() || pairs.get(i).finished) {
+                    abandoned.add(pairs.get(i));
+                } else {
+                    script.get(script.size() - 1).last = true;
+                    ready.add(script);
+                }
+            }
+        });
+    }
+
+    private void appendSpeaker(StringBuilder prompt, String label, NPCProfile profile) {
+        prompt.append(label).append(" = ").append(profile.getEntityName())
+                .append(" (").append(profile.getPersonality()).append(")\n");
+    }
+
+    /**
+     * Parse the model's JSON script into lines per pair. Pairs missing from the
+     * reply get an empty script.
+     */
+    private List<List<Line>> parseScripts(String response, List<Pair> pairs) {
+        List<List<Line>> scripts = new ArrayList<>();
+        for (int i = 0; i < pairs.size(); i++) {
+            scripts.add(new ArrayList<>());
+        }
+
+        try {
+            // Models sometimes wrap JSON in a code fence or add a preamble
+            int start = response.indexOf('{');
+            int end = response.lastIndexOf('}');
+            if (start < 0 || end <= start) {
+                throw new IllegalArgumentException("no JSON object in response");
+            }
+
+            JsonNode root = objectMapper.readTree(response.substring(start, end + 1));
+            for (JsonNode conversation : root.path("conversations")) {
+                int index = conversation.path("pair").asInt(-1);
+                if (index < 0 || index >= pairs.size()) {
+                    continue;
+                }
+                List<Line> script = scripts.get(index);
+                for (JsonNode line : conversation.path("lines")) {
+                    String text = line.path("text").asText("").trim();
+                    if (!text.isEmpty() && script.size() < MAX_LINES_PER_PAIR) {
+                        boolean fromSpeaker = !"B".equalsIgnoreCase(line.path("speaker").asText("A").trim());
+                        script.add(new Line(pairs.get(index), fromSpeaker, text));
+                    }
+                }
+            }
+        } catch (Exception e) {
+            LOGGER.warn("[Easy NPC kracked AI] Could not parse NPC dialogue script: {}", e.getMessage());
+        }
+        return scripts;
+    }
+
+    private void play(Line line) {
+        Pair pair = line.pair;
+        Entity speaker = line.fromSpeaker ? pair.speaker : pair.listener;
+        Entity listener = line.fromSpeaker ? pair.listener : pair.speaker;
+        NPCProfile speakerProfile = line.fromSpeaker ? pair.speakerProfile : pair.listenerProfile;
+        NPCProfile listenerProfile = line.fromSpeaker ? pair.listenerProfile : pair.speakerProfile;
+
+        if (speaker.isRemoved() || listener.isRemoved()) {
+            finish(pair);
+            return;
+        }
+
+        // Broadcast to nearby players
+        String message = String.format("%s says to %s: \"%s\"",
+                speakerProfile.getEntityName(), listenerProfile.getEntityName(), line.text);
+        for (Entity player : NPCSpatialIndex.getInstance().queryRadius(pair.world, speaker, 8.0,
+                e -> e instanceof ServerPlayerEntity)) {
+            ((ServerPlayerEntity) player).sendMessage(Text.literal(message), false);
+        }
+
+        // Record the line
+        socialSystem.recordInteraction(speaker.getUuid(), listener.getUuid(),
+                AutonomousController.analyzeConversationQuality(line.text));
+
+        int historyBudget = configManager.getConfig().getAi().getHistoryTokenBudget();
+        speakerProfile.addConversationTurn(
+                ChatMessage.assistant("(to " + listenerProfile.getEntityName() + ") " + line.text));
+        speakerProfile.compactConversationHistory(historyBudget);
+        listenerProfile.addConversationTurn(
+                ChatMessage.user(speakerProfile.getEntityName() + ": " + line.text));
+        listenerProfile.compactConversationHistory(historyBudget);
+
+        PersonalityEngine.evolve(speakerProfile, "talking to " + listenerProfile.getEntityName(), line.text);
+
+        if (speakerProfile.isVoiceEnabled() && configManager.getConfig().getVoice().isEnabled()) {
+            voiceIntegration.speak(speaker, line.text);
+        }
+
+        if (line.last) {
+            npcRegistry.register(pair.speakerProfile);
+            npcRegistry.register(pair.listenerProfile);
+            finish(pair);
+        }
+    }
+
+    /**
+     * End a conversation and return both NPCs to idle. Server thread.
+     */
+    private void finish(Pair pair) {
+        pair.finished = true;
+        busy.remove(pair.speaker.getUuid());
+        busy.remove(pair.listener.getUuid());
+        states.endConversation(pair.speaker.getUuid());
+        states.endConversation(pair.listener.getUuid());
+    }
+}
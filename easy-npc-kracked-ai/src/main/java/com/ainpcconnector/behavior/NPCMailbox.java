@@ -0,0 +1,94 @@
+package com.ainpcconnector.behavior;
+
+import net.minecraft.server.network.ServerPlayerEntity;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Per-NPC queue of player messages.
+ * While a request for the NPC is in flight, incoming messages are held here and
+ * merged per player; when the request finishes everything that arrived is
+ * answered by a single follow-up completion.
+ */
+class NPCMailbox {
+
+    /**
+     * A message (or several merged messages) from one player.
+     */
+    static final class PendingMessage {
+        private ServerPlayerEntity player;
+        private final List<String> lines = new ArrayList<>();
+
+        PendingMessage(ServerPlayerEntity player, String message) {
+            this.player = player;
+            this.lines.add(message);
+        }
+
+        public ServerPlayerEntity getPlayer() {
+            return player;
+        }
+
+        public String getPlayerName() {
+            return player.getName().getString();
+        }
+
+        public String getMessage() {
+            return String.join("\n", lines);
+        }
+    }
+
+    private final List<PendingMessage> pending = new ArrayList<>();
+    private boolean busy = false;
+
+    /**
+     * Offer a message. Returns true if the NPC was idle and the caller should
+     * start a request for it now; otherwise the message is queued.
+     */
+    public synchronized boolean offer(ServerPlayerEntity player, String message) {
+        if (!busy) {
+            busy = true;
+            return true;
+        }
+
+        for (PendingMessage existing : pending) {
+            if (existing.player.getUuid().equals(player.getUuid())) {
+                existing.player = player;
+                // Drop exact repeats, merge anything new
+                for (String line : existing.lines) {
+                    if (line.trim().equalsIgnoreCase(message.trim())) {
+                        return false;
+                    }
+                }
+                existing.lines.add(message);
+                return false;
+            }
+        }
+
+        pending.add(new PendingMessage(player, message));
+        return false;
+    }
+
+    /**
+     * Take everything queued while the last request was in flight. If nothing
+     * is queued the mailbox becomes idle and an empty list is returned.
+     */
+    public synchronized List<PendingMessage> drainOrIdle() {
+        if (pending.isEmpty()) {
+            busy = false;
+            return List.of();
+        }
+
+        List<PendingMessage> batch = new ArrayList<>(pending);
+        pending.clear();
+        return batch;
+    }
+
+    /**
+     * Discard queued messages and mark the mailbox idle.
+     */
+    public synchronized void reset() {
+        pending.clear();
+        busy = false;
+    }
+}
@@ -0,0 +1,140 @@
+package com.ainpcconnector.behavior;
+
+import com.ainpcconnector.config.ConfigManager;
+import net.minecraft.entity.Entity;
+import net.minecraft.entity.ai.pathing.EntityNavigation;
+import net.minecraft.entity.ai.pathing.Path;
+import net.minecraft.entity.mob.MobEntity;
+
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Throttles pathfinding for autonomous NPCs.
+ * A new path is only computed when the NPC has no path, the target moved more
+ * than a few blocks, or a failed target's cooldown has passed, and the number
+ * of pathfinding calls per tick is capped.
+ * Server thread only.
+ */
+class NPCNavigator {
+
+    // Re-path when the target moved further than this (squared blocks)
+    private static final double REPATH_DISTANCE_SQ = 3.0 * 3.0;
+    // Don't retry an unreachable target for this many ticks
+    private static final long FAILED_PATH_COOLDOWN_TICKS = 100;
+
+    /**
+     * The last navigation request of one NPC.
+     */
+    private static final class NavState {
+        boolean hasTarget;
+        double targetX;
+        double targetY;
+        double targetZ;
+        long failedAtTick = Long.MIN_VALUE;
+    }
+
+    private final ConfigManager configManager;
+    private final Map<UUID, NavState> states = new HashMap<>();
+
+    private long budgetTick = Long.MIN_VALUE;
+    private int pathfindsThisTick = 0;
+
+    // Stats, published to the web server through NPCManager's tick stats snapshot
+    private long pathfinds = 0;
+    private long skipped = 0;
+    private long throttled = 0;
+    private long failures = 0;
+
+    NPCNavigator(ConfigManager configManager) {
+        this.configManager = configManager;
+    }
+
+    /**
+     * Move towards a position, reusing the current path where possible.
+     */
+    public void moveTo(MobEntity mob, double x, double y, double z, double speed) {
+        NavState state = states.computeIfAbsent(mob.getUuid(), k -> new NavState());
+        EntityNavigation navigation = mob.getNavigation();
+        long tick = mob.getWorld().getTime();
+
+        boolean sameTarget = state.hasTarget && squaredDistance(state, x, y, z) <= REPATH_DISTANCE_SQ;
+        if (sameTarget && !navigation.isIdle()) {
+            // Still following a path to (nearly) the same place
+            skipped++;
+            return;
+        }
+        if (sameTarget && tick - state.failedAtTick < FAILED_PATH_COOLDOWN_TICKS) {
+            skipped++;
+            return;
+        }
+
+        if (!takeBudget(tick)) {
+            // Try again on a later pass
+            throttled++;
+            return;
+        }
+
+        pathfinds++;
+        Path path = navigation.findPathTo(x, y, z, 0);
+        state.hasTarget = true;
+        state.targetX = x;
+        state.targetY = y;
+        state.targetZ = z;
+        if (path == null || !navigation.startMovingAlong(path, speed)) {
+            failures++;
+            state.failedAtTick = tick;
+        } else {
+            state.failedAtTick = Long.MIN_VALUE;
+        }
+    }
+
+    /**
+     * Follow another entity, re-pathing only once it has moved away from the last target.
+     */
+    public void follow(MobEntity mob, Entity target, double speed) {
+        moveTo(mob, target.getX(), target.getY(), target.getZ(), speed);
+    }
+
+    public void stop(MobEntity mob) {
+        mob.getNavigation().stop();
+        NavState state = states.get(mob.getUuid());
+        if (state != null) {
+            state.hasTarget = false;
+        }
+    }
+
+    public void forget(UUID uuid) {
+        states.remove(uuid);
+    }
+
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("pathfinds", pathfinds);
+        stats.put("skipped", skipped);
+        stats.put("throttled", throttled);
+        stats.put("failures", failures);
+        return stats;
+    }
+
+    private boolean takeBudget(long tick) {
+        if (tick != budgetTick) {
+            budgetTick = tick;
+            pathfindsThisTick = 0;
+        }
+        if (pathfindsThisTick >= configManager.getConfig().getNpc().getMaxPathfindsPerTick()) {
+            return false;
+        }
+        pathfindsThisTick++;
+        return true;
+    }
+
+    private static double squaredDistance(NavState state, double x, double y, double z) {
+        double dx = state.targetX - x;
+        double dy = state.targetY - y;
+        double dz = state.targetZ - z;
+        return dx * dx + dy * dy + dz * dz;
+    }
+}
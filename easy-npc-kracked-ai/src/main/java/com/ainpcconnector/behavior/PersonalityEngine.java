@@ -219,11 +219,6 @@ public class PersonalityEngine {
 
         prompt.append("Your personality: ").append(profile.getPersonality()).append("\n\n");
 
-        prompt.append("Personality Traits (scale 0-1):\n");
-        for (Map.Entry<String, Double> trait : profile.getPersonalityTraits().entrySet()) {
-            prompt.append("- ").append(trait.getKey()).append(": ").append(String.format("%.2f", trait.getValue())).append("\n");
-        }
-
         prompt.append("\nGuidelines for behavior:\n");
         prompt.append("- Stay in character as defined by your personality\n");
         prompt.append("- Respond naturally and conversationally\n");
@@ -244,6 +239,13 @@ public class PersonalityEngine {
             prompt.append("- You enjoy making jokes and being playful\n");
         }
 
+        // Traits drift with every conversation, so they go last and are rounded
+        // to keep the prompt prefix stable for upstream prompt caching
+        prompt.append("\nPersonality Traits (scale 0-1):\n");
+        for (Map.Entry<String, Double> trait : new TreeMap<>(profile.getPersonalityTraits()).entrySet()) {
+            prompt.append("- ").append(trait.getKey()).append(": ").append(String.format("%.1f", trait.getValue())).append("\n");
+        }
+
         return prompt.toString();
     }
 
@@ -0,0 +1,75 @@
+package com.ainpcconnector.behavior;
+
+import java.util.function.Consumer;
+
+/**
+ * Buffers streamed text deltas and emits them as sentence-sized chunks.
+ * Used to deliver streaming AI responses to chat without one message per token.
+ */
+class SentenceChunker {
+
+    // Emit at a word boundary once the buffer grows past this without a sentence end
+    private static final int MAX_CHUNK_LENGTH = 200;
+
+    private final Consumer<String> sink;
+    private final StringBuilder buffer = new StringBuilder();
+    private boolean emitted = false;
+
+    SentenceChunker(Consumer<String> sink) {
+        this.sink = sink;
+    }
+
+    /**
+     * Append a text delta, emitting every complete sentence it finishes.
+     */
+    public synchronized void accept(String delta) {
+        buffer.append(delta);
+
+        int end = lastSentenceEnd();
+        if (end < 0 && buffer.length() > MAX_CHUNK_LENGTH) {
+            end = buffer.lastIndexOf(" ");
+        }
+        if (end > 0) {
+            emit(buffer.substring(0, end));
+            buffer.delete(0, end);
+        }
+    }
+
+    /**
+     * Emit whatever is left in the buffer.
+     */
+    public synchronized void flush() {
+        emit(buffer.toString());
+        buffer.setLength(0);
+    }
+
+    /**
+     * Whether any chunk has been passed to the sink yet.
+     */
+    public synchronized boolean hasEmitted() {
+        return emitted;
+    }
+
+    /**
+     * Index just past the last sentence terminator that is followed by whitespace,
+     * or -1 if the buffer holds no complete sentence yet.
+     */
+    private int lastSentenceEnd() {
+        for (int i = buffer.length() - 2; i >= 0; i--) {
+            char c = buffer.charAt(i);
+            if ((c == '.' || c == '!' || c == '?' || c == '\n')
+                    && Character.isWhitespace(buffer.charAt(i + 1))) {
+                return i + 1;
+            }
+        }
+        return -1;
+    }
+
+    private void emit(String chunk) {
+        String trimmed = chunk.trim();
+        if (!trimmed.isEmpty()) {
+            emitted = true;
+            sink.accept(trimmed);
+        }
+    }
+}
@@ -1,30 +1,104 @@
 package com.ainpcconnector.config;
 
 import com.ainpcconnector.AINpcConnectorMod;
+import org.sqlite.SQLiteConfig;
 
 import java.io.File;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.sql.*;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.locks.ReentrantLock;
 
 /**
  * SQLite Database Manager for persistent storage.
  * Stores: Config, Users, AI Providers, NPC Profiles
+ *
+ * The database runs in WAL mode with one writer connection, serialized by a
+ * lock, and a small pool of read-only connections, so reads such as the web
+ * panel's are not blocked by a write in progress. Each connection caches its
+ * prepared statements.
  */
 public class DatabaseManager {
 
+    private static final int READER_POOL_SIZE = 3;
+    private static final int BUSY_TIMEOUT_MILLIS = 5000;
+
     private static DatabaseManager instance;
     private final Connection connection;
+    private final StatementCache writer;
+    private final BlockingQueue<StatementCache> readers = new ArrayBlockingQueue<>(READER_POOL_SIZE);
+    private volatile int readerCount = 0;
     private final ReentrantLock lock = new ReentrantLock();
 
-    private DatabaseManager(File dbFile) throws SQLException {
+    /**
+     * A connection and the statements prepared on it. Cached statements stay open
+     * until the connection is closed, so callers must not close them.
+     */
+    private static final class StatementCache {
+        private final Connection connection;
+        private final Map<String, PreparedStatement> statements = new HashMap<>();
+
+        StatementCache(Connection connection) {
+            this.connection = connection;
+        }
+
+        PreparedStatement prepare(String sql) throws SQLException {
+            PreparedStatement stmt = statements.get(sql);
+            if (stmt == null) {
+                stmt = connection.prepareStatement(sql);
+                statements.put(sql, stmt);
+            }
+            return stmt;
+        }
+
+        void close() throws SQLException {
+            for (PreparedStatement stmt : statements.values()) {
+                stmt.close();
+            }
+            statements.clear();
+            connection.close();
+        }
+    }
+
+    @FunctionalInterface
+    private interface SqlWork<T> {
+        T run(StatementCache db) throws SQLException;
+    }
 
-        this.connection = DriverManager.getConnection("jdbc:sqlite:" + dbFile.getAbsolutePath());
+    private DatabaseManager(File dbFile) throws SQLException {
+        String url = "jdbc:sqlite:" + dbFile.getAbsolutePath();
+
+        // WAL lets readers run alongside the writer; NORMAL only syncs at checkpoints, which is safe in WAL mode
+        SQLiteConfig writerConfig = new SQLiteConfig();
+        writerConfig.setJournalMode(SQLiteConfig.JournalMode.WAL);
+        writerConfig.setSynchronous(SQLiteConfig.SynchronousMode.NORMAL);
+        writerConfig.setBusyTimeout(BUSY_TIMEOUT_MILLIS);
+        this.connection = DriverManager.getConnection(url, writerConfig.toProperties());
+        this.writer = new StatementCache(connection);
         initializeTables();
+
+        // Readers are opened after the schema exists
+        SQLiteConfig readerConfig = new SQLiteConfig();
+        readerConfig.setReadOnly(true);
+        readerConfig.setBusyTimeout(BUSY_TIMEOUT_MILLIS);
+        try {
+            for (int i = 0; i < READER_POOL_SIZE; i++) {
+                readers.add(new StatementCache(DriverManager.getConnection(url, readerConfig.toProperties())));
+                readerCount++;
+            }
+        } catch (SQLException e) {
+            // Reads fall back to the writer connection
+            AINpcConnectorMod.LOGGER.warn("[AI NPC Connector] Could not open read-only connections: {}", e.getMessage());
+        }
     }
 
     public static DatabaseManager getInstance() {
@@ -50,6 +124,14 @@ public class DatabaseManager {
     }
 
     private void initializeTables() throws SQLException {
+        // The first conversations table had text ids and timestamps and was never
+        // written to, so it is replaced rather than migrated
+        if (!hasColumn("conversations", "ts")) {
+            try (Statement stmt = connection.createStatement()) {
+                stmt.execute("DROP TABLE IF EXISTS conversations");
+            }
+        }
+
         try (Statement stmt = connection.createStatement()) {
             // Config table - stores main config as JSON
             stmt.execute("""
@@ -97,355 +179,498 @@ public class DatabaseManager {
                         )
                     """);
 
-            // Conversation table (stores chat history per NPC)
+            // Conversation log, append-only, one row per turn; ts is epoch millis
             stmt.execute("""
                         CREATE TABLE IF NOT EXISTS conversations (
-                            id TEXT PRIMARY KEY,
+                            id INTEGER PRIMARY KEY,
                             npc_uuid TEXT NOT NULL,
                             role TEXT NOT NULL,
                             content TEXT NOT NULL,
-                            timestamp TEXT NOT NULL,
-                            FOREIGN KEY (npc_uuid) REFERENCES npc_profiles(entity_uuid) ON DELETE CASCADE
+                            ts INTEGER NOT NULL
                         )
                     """);
 
             // Create indexes
-            stmt.execute("CREATE INDEX IF NOT EXISTS idx_conversations_npc ON conversations(npc_uuid)");
+            stmt.execute("CREATE INDEX IF NOT EXISTS idx_conversations_npc_ts ON conversations(npc_uuid, ts)");
             stmt.execute("CREATE INDEX IF NOT EXISTS idx_npc_provider ON npc_profiles(ai_provider_id)");
         }
+
+        // Columns added after the initial schema
+        addColumnIfMissing("ai_providers", "max_concurrent_requests", "INTEGER DEFAULT 4");
+        addColumnIfMissing("ai_providers", "tokens_per_minute", "INTEGER DEFAULT 0");
+        addColumnIfMissing("npc_profiles", "world_id", "TEXT");
+        // Binary traits; personality_traits keeps the old JSON until the profile is next saved
+        addColumnIfMissing("npc_profiles", "traits_blob", "BLOB");
+    }
+
+    /**
+     * Add a column to an existing table if an older database does not have it yet.
+     */
+    private void addColumnIfMissing(String table, String column, String definition) throws SQLException {
+        if (hasColumn(table, column)) {
+            return;
+        }
+        try (Statement stmt = connection.createStatement()) {
+            stmt.execute("ALTER TABLE " + table + " ADD COLUMN " + column + " " + definition);
+            AINpcConnectorMod.LOGGER.info("[AI NPC Connector] Added column {}.{}", table, column);
+        }
     }
 
-    // ==================== CONFIG METHODS ====================
+    /**
+     * Run a query on a pooled read-only connection. Returns the fallback on error.
+     */
+    private <T> T read(String error, T fallback, SqlWork<T> work) {
+        if (readerCount == 0) {
+            return write(error, fallback, work);
+        }
+        StatementCache reader;
+        try {
+            reader = readers.take();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return fallback;
+        }
+        try {
+            return work.run(reader);
+        } catch (SQLException e) {
+            AINpcConnectorMod.LOGGER.error("[AI NPC Connector] " + error, e);
+            return fallback;
+        } finally {
+            readers.add(reader);
+        }
+    }
 
-    public String getConfigValue(String key) {
+    /**
+     * Run a statement on the writer connection. Returns the fallback on error.
+     */
+    private <T> T write(String error, T fallback, SqlWork<T> work) {
         lock.lock();
-        try (PreparedStatement stmt = connection.prepareStatement("SELECT value FROM config WHERE key = ?")) {
-            stmt.setString(1, key);
-            ResultSet rs = stmt.executeQuery();
-            if (rs.next()) {
-                return rs.getString("value");
-            }
-            return null;
+        try {
+            return work.run(writer);
         } catch (SQLException e) {
-            AINpcConnectorMod.LOGGER.error("[AI NPC Connector] Error getting config value", e);
-            return null;
+            AINpcConnectorMod.LOGGER.error("[AI NPC Connector] " + error, e);
+            return fallback;
         } finally {
             lock.unlock();
         }
     }
 
+    private boolean hasColumn(String table, String column) throws SQLException {
+        try (Statement stmt = connection.createStatement();
+                ResultSet rs = stmt.executeQuery("PRAGMA table_info(" + table + ")")) {
+            while (rs.next()) {
+                if (column.equalsIgnoreCase(rs.getString("name"))) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    // ==================== CONFIG METHODS ====================
+
+    public String getConfigValue(String key) {
+        return read("Error getting config value", null, db -> {
+            PreparedStatement stmt = db.prepare("SELECT value FROM config WHERE key = ?");
+            stmt.setString(1, key);
+            try (ResultSet rs = stmt.executeQuery()) {
+                return rs.next() ? rs.getString("value") : null;
+            }
+        });
+    }
+
     public void setConfigValue(String key, String value) {
-        lock.lock();
-        try (PreparedStatement stmt = connection.prepareStatement(
-                "INSERT OR REPLACE INTO config (key, value) VALUES (?, ?)")) {
+        write("Error setting config value", null, db -> {
+            PreparedStatement stmt = db.prepare("INSERT OR REPLACE INTO config (key, value) VALUES (?, ?)");
             stmt.setString(1, key);
             stmt.setString(2, value);
             stmt.executeUpdate();
-        } catch (SQLException e) {
-            AINpcConnectorMod.LOGGER.error("[AI NPC Connector] Error setting config value", e);
-        } finally {
-            lock.unlock();
-        }
+            return null;
+        });
     }
 
     // ==================== AI PROVIDER METHODS ====================
 
     public List<ModConfig.ProviderConfig> getAIProviders() {
-        lock.lock();
         List<ModConfig.ProviderConfig> providers = new ArrayList<>();
-        try (PreparedStatement stmt = connection.prepareStatement("SELECT * FROM ai_providers")) {
-            ResultSet rs = stmt.executeQuery();
-            while (rs.next()) {
-                ModConfig.ProviderConfig provider = new ModConfig.ProviderConfig();
-                provider.setId(rs.getString("id"));
-                provider.setName(rs.getString("name"));
-                provider.setApiKey(rs.getString("api_key"));
-                provider.setEndpoint(rs.getString("endpoint"));
-                provider.setModel(rs.getString("model"));
-                providers.add(provider);
+        read("Error getting AI providers", null, db -> {
+            try (ResultSet rs = db.prepare("SELECT * FROM ai_providers").executeQuery()) {
+                while (rs.next()) {
+                    ModConfig.ProviderConfig provider = new ModConfig.ProviderConfig();
+                    provider.setId(rs.getString("id"));
+                    provider.setName(rs.getString("name"));
+                    provider.setApiKey(rs.getString("api_key"));
+                    provider.setEndpoint(rs.getString("endpoint"));
+                    provider.setModel(rs.getString("model"));
+                    provider.setMaxConcurrentRequests(rs.getInt("max_concurrent_requests"));
+                    provider.setTokensPerMinute(rs.getInt("tokens_per_minute"));
+                    providers.add(provider);
+                }
             }
-        } catch (SQLException e) {
-            AINpcConnectorMod.LOGGER.error("[AI NPC Connector] Error getting AI providers", e);
-        } finally {
-            lock.unlock();
-        }
+            return null;
+        });
         return providers;
     }
 
     public void saveAIProvider(ModConfig.ProviderConfig provider) {
-        lock.lock();
-        try (PreparedStatement stmt = connection.prepareStatement(
-                "INSERT OR REPLACE INTO ai_providers (id, name, api_key, endpoint, model) VALUES (?, ?, ?, ?, ?)")) {
+        write("Error saving AI provider", null, db -> {
+            PreparedStatement stmt = db.prepare(
+                    "INSERT OR REPLACE INTO ai_providers (id, name, api_key, endpoint, model, max_concurrent_requests, tokens_per_minute) VALUES (?, ?, ?, ?, ?, ?, ?)");
             stmt.setString(1, provider.getId());
             stmt.setString(2, provider.getName());
             stmt.setString(3, provider.getApiKey());
             stmt.setString(4, provider.getEndpoint());
             stmt.setString(5, provider.getModel());
+            stmt.setInt(6, provider.getMaxConcurrentRequests());
+            stmt.setInt(7, provider.getTokensPerMinute());
             stmt.executeUpdate();
-        } catch (SQLException e) {
-            AINpcConnectorMod.LOGGER.error("[AI NPC Connector] Error saving AI provider", e);
-        } finally {
-            lock.unlock();
-        }
+            return null;
+        });
     }
 
     public void deleteAIProvider(String id) {
-        lock.lock();
-        try (PreparedStatement stmt = connection.prepareStatement("DELETE FROM ai_providers WHERE id = ?")) {
+        write("Error deleting AI provider", null, db -> {
+            PreparedStatement stmt = db.prepare("DELETE FROM ai_providers WHERE id = ?");
             stmt.setString(1, id);
             stmt.executeUpdate();
-        } catch (SQLException e) {
-            AINpcConnectorMod.LOGGER.error("[AI NPC Connector] Error deleting AI provider", e);
-        } finally {
-            lock.unlock();
-        }
+            return null;
+        });
     }
 
     // ==================== USER METHODS ====================
 
     public UserRecord getUser(String username) {
-        lock.lock();
-        try (PreparedStatement stmt = connection.prepareStatement("SELECT * FROM users WHERE username = ?")) {
+        return read("Error getting user", null, db -> {
+            PreparedStatement stmt = db.prepare("SELECT * FROM users WHERE username = ?");
             stmt.setString(1, username);
-            ResultSet rs = stmt.executeQuery();
-            if (rs.next()) {
-                return new UserRecord(
-                        rs.getString("username"),
-                        rs.getString("password_hash"),
-                        rs.getString("role"),
-                        rs.getString("created_at"));
+            try (ResultSet rs = stmt.executeQuery()) {
+                return rs.next() ? toUser(rs) : null;
             }
-            return null;
-        } catch (SQLException e) {
-            AINpcConnectorMod.LOGGER.error("[AI NPC Connector] Error getting user", e);
-            return null;
-        } finally {
-            lock.unlock();
-        }
+        });
     }
 
     public List<UserRecord> getAllUsers() {
-        lock.lock();
         List<UserRecord> users = new ArrayList<>();
-        try (PreparedStatement stmt = connection.prepareStatement("SELECT * FROM users")) {
-            ResultSet rs = stmt.executeQuery();
-            while (rs.next()) {
-                users.add(new UserRecord(
-                        rs.getString("username"),
-                        rs.getString("password_hash"),
-                        rs.getString("role"),
-                        rs.getString("created_at")));
+        read("Error getting all users", null, db -> {
+            try (ResultSet rs = db.prepare("SELECT * FROM users").executeQuery()) {
+                while (rs.next()) {
+                    users.add(toUser(rs));
+                }
             }
-        } catch (SQLException e) {
-            AINpcConnectorMod.LOGGER.error("[AI NPC Connector] Error getting all users", e);
-        } finally {
-            lock.unlock();
-        }
+            return null;
+        });
         return users;
     }
 
     public void saveUser(UserRecord user) {
-        lock.lock();
-        try (PreparedStatement stmt = connection.prepareStatement(
-                "INSERT OR REPLACE INTO users (username, password_hash, role, created_at) VALUES (?, ?, ?, ?)")) {
+        write("Error saving user", null, db -> {
+            PreparedStatement stmt = db.prepare(
+                    "INSERT OR REPLACE INTO users (username, password_hash, role, created_at) VALUES (?, ?, ?, ?)");
             stmt.setString(1, user.username());
             stmt.setString(2, user.passwordHash());
             stmt.setString(3, user.role());
             stmt.setString(4, user.createdAt() != null ? user.createdAt() : java.time.Instant.now().toString());
             stmt.executeUpdate();
-        } catch (SQLException e) {
-            AINpcConnectorMod.LOGGER.error("[AI NPC Connector] Error saving user", e);
-        } finally {
-            lock.unlock();
-        }
+            return null;
+        });
     }
 
     public void deleteUser(String username) {
-        lock.lock();
-        try (PreparedStatement stmt = connection.prepareStatement("DELETE FROM users WHERE username = ?")) {
+        write("Error deleting user", null, db -> {
+            PreparedStatement stmt = db.prepare("DELETE FROM users WHERE username = ?");
             stmt.setString(1, username);
             stmt.executeUpdate();
-        } catch (SQLException e) {
-            AINpcConnectorMod.LOGGER.error("[AI NPC Connector] Error deleting user", e);
-        } finally {
-            lock.unlock();
-        }
+            return null;
+        });
+    }
+
+    private static UserRecord toUser(ResultSet rs) throws SQLException {
+        return new UserRecord(
+                rs.getString("username"),
+                rs.getString("password_hash"),
+                rs.getString("role"),
+                rs.getString("created_at"));
     }
 
     // ==================== NPC PROFILE METHODS ====================
 
+    private static final String UPSERT_NPC_PROFILE = """
+                INSERT OR REPLACE INTO npc_profiles
+                (entity_uuid, entity_name, ai_enabled, voice_enabled, ai_provider_id,
+                 personality, system_prompt, personality_traits, traits_blob, conversation_history,
+                 world_id, created_at, updated_at)
+                VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)
+            """;
+    private static final String DELETE_NPC_PROFILE = "DELETE FROM npc_profiles WHERE entity_uuid = ?";
+    private static final String INSERT_CONVERSATION_TURN =
+            "INSERT INTO conversations (npc_uuid, role, content, ts) VALUES (?, ?, ?, ?)";
+    private static final String DELETE_CONVERSATION = "DELETE FROM conversations WHERE npc_uuid = ?";
+
     public NPCProfileRecord getNPCProfile(UUID uuid) {
-        lock.lock();
-        try (PreparedStatement stmt = connection.prepareStatement("SELECT * FROM npc_profiles WHERE entity_uuid = ?")) {
+        return read("Error getting NPC profile", null, db -> {
+            PreparedStatement stmt = db.prepare("SELECT * FROM npc_profiles WHERE entity_uuid = ?");
             stmt.setString(1, uuid.toString());
-            ResultSet rs = stmt.executeQuery();
-            if (rs.next()) {
-                return new NPCProfileRecord(
-                        UUID.fromString(rs.getString("entity_uuid")),
-                        rs.getString("entity_name"),
-                        rs.getBoolean("ai_enabled"),
-                        rs.getBoolean("voice_enabled"),
-                        rs.getString("ai_provider_id"),
-                        rs.getString("personality"),
-                        rs.getString("system_prompt"),
-                        rs.getString("personality_traits"),
-                        rs.getString("conversation_history"),
-                        rs.getString("created_at"),
-                        rs.getString("updated_at"));
+            try (ResultSet rs = stmt.executeQuery()) {
+                return rs.next() ? toNPCProfile(rs) : null;
             }
-            return null;
-        } catch (SQLException e) {
-            AINpcConnectorMod.LOGGER.error("[AI NPC Connector] Error getting NPC profile", e);
-            return null;
-        } finally {
-            lock.unlock();
-        }
+        });
     }
 
     public List<NPCProfileRecord> getAllNPCProfiles() {
-        lock.lock();
         List<NPCProfileRecord> profiles = new ArrayList<>();
-        try (PreparedStatement stmt = connection.prepareStatement("SELECT * FROM npc_profiles")) {
-            ResultSet rs = stmt.executeQuery();
-            while (rs.next()) {
-                profiles.add(new NPCProfileRecord(
-                        UUID.fromString(rs.getString("entity_uuid")),
-                        rs.getString("entity_name"),
-                        rs.getBoolean("ai_enabled"),
-                        rs.getBoolean("voice_enabled"),
-                        rs.getString("ai_provider_id"),
-                        rs.getString("personality"),
-                        rs.getString("system_prompt"),
-                        rs.getString("personality_traits"),
-                        rs.getString("conversation_history"),
-                        rs.getString("created_at"),
-                        rs.getString("updated_at")));
+        read("Error getting all NPC profiles", null, db -> {
+            try (ResultSet rs = db.prepare("SELECT * FROM npc_profiles").executeQuery()) {
+                while (rs.next()) {
+                    profiles.add(toNPCProfile(rs));
+                }
             }
-        } catch (SQLException e) {
-            AINpcConnectorMod.LOGGER.error("[AI NPC Connector] Error getting all NPC profiles", e);
-        } finally {
-            lock.unlock();
-        }
+            return null;
+        });
         return profiles;
     }
 
+    /**
+     * Name, AI flag and world of every NPC, without the traits and history columns.
+     */
+    public List<NPCProfileSummary> getNPCProfileSummaries() {
+        List<NPCProfileSummary> summaries = new ArrayList<>();
+        read("Error getting NPC profile summaries", null, db -> {
+            try (ResultSet rs = db.prepare("SELECT entity_uuid, entity_name, ai_enabled, world_id FROM npc_profiles")
+                    .executeQuery()) {
+                while (rs.next()) {
+                    summaries.add(new NPCProfileSummary(
+                            UUID.fromString(rs.getString("entity_uuid")),
+                            rs.getString("entity_name"),
+                            rs.getBoolean("ai_enabled"),
+                            rs.getString("world_id")));
+                }
+            }
+            return null;
+        });
+        return summaries;
+    }
+
     public void saveNPCProfile(NPCProfileRecord profile) {
-        lock.lock();
-        try (PreparedStatement stmt = connection.prepareStatement("""
-                    INSERT OR REPLACE INTO npc_profiles
-                    (entity_uuid, entity_name, ai_enabled, voice_enabled, ai_provider_id,
-                     personality, system_prompt, personality_traits, conversation_history,
-                     created_at, updated_at)
-                    VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)
-                """)) {
-            String now = java.time.Instant.now().toString();
-            stmt.setString(1, profile.uuid().toString());
-            stmt.setString(2, profile.entityName());
-            stmt.setBoolean(3, profile.aiEnabled());
-            stmt.setBoolean(4, profile.voiceEnabled());
-            stmt.setString(5, profile.aiProviderId());
-            stmt.setString(6, profile.personality());
-            stmt.setString(7, profile.systemPrompt());
-            stmt.setString(8, profile.personalityTraits());
-            stmt.setString(9, profile.conversationHistory());
-            stmt.setString(10, profile.createdAt() != null ? profile.createdAt() : now);
-            stmt.setString(11, now);
+        write("Error saving NPC profile", null, db -> {
+            PreparedStatement stmt = db.prepare(UPSERT_NPC_PROFILE);
+            bindNPCProfile(stmt, profile, java.time.Instant.now().toString());
             stmt.executeUpdate();
-        } catch (SQLException e) {
-            AINpcConnectorMod.LOGGER.error("[AI NPC Connector] Error saving NPC profile", e);
-        } finally {
-            lock.unlock();
+            return null;
+        });
+    }
+
+    /**
+     * Save and delete NPC profiles, clear conversation logs and append new turns,
+     * all in one transaction with batched statements. Deleted profiles lose their
+     * log too. Returns false if the transaction was rolled back.
+     */
+    public boolean writeNPCProfiles(List<NPCProfileRecord> saves, Collection<UUID> deletes,
+            Collection<UUID> clearedConversations, List<ConversationTurnRecord> turns) {
+        if (saves.isEmpty() && deletes.isEmpty() && clearedConversations.isEmpty() && turns.isEmpty()) {
+            return true;
         }
+        return write("Error writing NPC profiles", false, db -> {
+            db.connection.setAutoCommit(false);
+            try {
+                String now = java.time.Instant.now().toString();
+                if (!saves.isEmpty()) {
+                    PreparedStatement upsert = db.prepare(UPSERT_NPC_PROFILE);
+                    for (NPCProfileRecord profile : saves) {
+                        bindNPCProfile(upsert, profile, now);
+                        upsert.addBatch();
+                    }
+                    upsert.executeBatch();
+                }
+                if (!deletes.isEmpty()) {
+                    PreparedStatement delete = db.prepare(DELETE_NPC_PROFILE);
+                    for (UUID uuid : deletes) {
+                        delete.setString(1, uuid.toString());
+                        delete.addBatch();
+                    }
+                    delete.executeBatch();
+                }
+                if (!deletes.isEmpty() || !clearedConversations.isEmpty()) {
+                    PreparedStatement clear = db.prepare(DELETE_CONVERSATION);
+                    for (UUID uuid : deletes) {
+                        clear.setString(1, uuid.toString());
+                        clear.addBatch();
+                    }
+                    for (UUID uuid : clearedConversations) {
+                        clear.setString(1, uuid.toString());
+                        clear.addBatch();
+                    }
+                    clear.executeBatch();
+                }
+                if (!turns.isEmpty()) {
+                    PreparedStatement insert = db.prepare(INSERT_CONVERSATION_TURN);
+                    for (ConversationTurnRecord turn : turns) {
+                        bindConversationTurn(insert, turn);
+                        insert.addBatch();
+                    }
+                    insert.executeBatch();
+                }
+                db.connection.commit();
+                return true;
+            } catch (SQLException e) {
+                db.connection.rollback();
+                throw e;
+            } finally {
+                db.connection.setAutoCommit(true);
+            }
+        });
+    }
+
+    private static void bindNPCProfile(PreparedStatement stmt, NPCProfileRecord profile, String now)
+            throws SQLException {
+        stmt.setString(1, profile.uuid().toString());
+        stmt.setString(2, profile.entityName());
+        stmt.setBoolean(3, profile.aiEnabled());
+        stmt.setBoolean(4, profile.voiceEnabled());
+        stmt.setString(5, profile.aiProviderId());
+        stmt.setString(6, profile.personality());
+        stmt.setString(7, profile.systemPrompt());
+        stmt.setString(8, profile.personalityTraits());
+        stmt.setBytes(9, profile.traitsBlob());
+        stmt.setString(10, profile.conversationHistory());
+        stmt.setString(11, profile.worldId());
+        stmt.setString(12, profile.createdAt() != null ? profile.createdAt() : now);
+        stmt.setString(13, now);
+    }
+
+    private static NPCProfileRecord toNPCProfile(ResultSet rs) throws SQLException {
+        return new NPCProfileRecord(
+                UUID.fromString(rs.getString("entity_uuid")),
+                rs.getString("entity_name"),
+                rs.getBoolean("ai_enabled"),
+                rs.getBoolean("voice_enabled"),
+                rs.getString("ai_provider_id"),
+                rs.getString("personality"),
+                rs.getString("system_prompt"),
+                rs.getString("personality_traits"),
+                rs.getBytes("traits_blob"),
+                rs.getString("conversation_history"),
+                rs.getString("world_id"),
+                rs.getString("created_at"),
+                rs.getString("updated_at"));
     }
 
     public void deleteNPCProfile(UUID uuid) {
-        lock.lock();
-        try (PreparedStatement stmt = connection.prepareStatement("DELETE FROM npc_profiles WHERE entity_uuid = ?")) {
+        write("Error deleting NPC profile", null, db -> {
+            PreparedStatement stmt = db.prepare(DELETE_NPC_PROFILE);
             stmt.setString(1, uuid.toString());
             stmt.executeUpdate();
-        } catch (SQLException e) {
-            AINpcConnectorMod.LOGGER.error("[AI NPC Connector] Error deleting NPC profile", e);
-        } finally {
-            lock.unlock();
-        }
+            PreparedStatement log = db.prepare(DELETE_CONVERSATION);
+            log.setString(1, uuid.toString());
+            log.executeUpdate();
+            return null;
+        });
     }
 
     // ==================== CONVERSATION METHODS ====================
 
     public void addConversationMessage(UUID npcUuid, String role, String content) {
-        lock.lock();
-        try (PreparedStatement stmt = connection.prepareStatement("""
-                    INSERT INTO conversations (id, npc_uuid, role, content, timestamp)
-                    VALUES (?, ?, ?, ?, ?)
-                """)) {
-            stmt.setString(1, UUID.randomUUID().toString());
-            stmt.setString(2, npcUuid.toString());
-            stmt.setString(3, role);
-            stmt.setString(4, content);
-            stmt.setString(5, java.time.Instant.now().toString());
+        write("Error adding conversation message", null, db -> {
+            PreparedStatement stmt = db.prepare(INSERT_CONVERSATION_TURN);
+            bindConversationTurn(stmt, new ConversationTurnRecord(npcUuid, role, content, System.currentTimeMillis()));
             stmt.executeUpdate();
-        } catch (SQLException e) {
-            AINpcConnectorMod.LOGGER.error("[AI NPC Connector] Error adding conversation message", e);
-        } finally {
-            lock.unlock();
-        }
+            return null;
+        });
     }
 
-    public List<ConversationMessage> getConversationHistory(UUID npcUuid, int limit) {
-        lock.lock();
-        List<ConversationMessage> messages = new ArrayList<>();
-        try (PreparedStatement stmt = connection.prepareStatement(
-                "SELECT * FROM conversations WHERE npc_uuid = ? ORDER BY timestamp DESC LIMIT ?")) {
+    /**
+     * The latest turns of an NPC, oldest first.
+     */
+    public List<ConversationTurnRecord> getRecentConversationTurns(UUID npcUuid, int limit) {
+        List<ConversationTurnRecord> turns = new ArrayList<>();
+        read("Error getting conversation turns", null, db -> {
+            PreparedStatement stmt = db.prepare(
+                    "SELECT role, content, ts FROM conversations WHERE npc_uuid = ? ORDER BY ts DESC, id DESC LIMIT ?");
             stmt.setString(1, npcUuid.toString());
             stmt.setInt(2, limit);
-            ResultSet rs = stmt.executeQuery();
-            while (rs.next()) {
-                messages.add(new ConversationMessage(
-                        rs.getString("role"),
-                        rs.getString("content"),
-                        rs.getString("timestamp")));
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    turns.add(new ConversationTurnRecord(
+                            npcUuid,
+                            rs.getString("role"),
+                            rs.getString("content"),
+                            rs.getLong("ts")));
+                }
             }
-        } catch (SQLException e) {
-            AINpcConnectorMod.LOGGER.error("[AI NPC Connector] Error getting conversation history", e);
-        } finally {
-            lock.unlock();
+            return null;
+        });
+        Collections.reverse(turns);
+        return turns;
+    }
+
+    public List<ConversationMessage> getConversationHistory(UUID npcUuid, int limit) {
+        List<ConversationMessage> messages = new ArrayList<>();
+        List<ConversationTurnRecord> turns = getRecentConversationTurns(npcUuid, limit);
+        // Newest first
+        for (int i = turns.size() - 1; i >= 0; i--) {
+            ConversationTurnRecord turn = turns.get(i);
+            messages.add(new ConversationMessage(
+                    turn.role(),
+                    turn.content(),
+                    java.time.Instant.ofEpochMilli(turn.timestamp()).toString()));
         }
         return messages;
     }
 
+    private static void bindConversationTurn(PreparedStatement stmt, ConversationTurnRecord turn)
+            throws SQLException {
+        stmt.setString(1, turn.npcUuid().toString());
+        stmt.setString(2, turn.role());
+        stmt.setString(3, turn.content());
+        stmt.setLong(4, turn.timestamp());
+    }
+
     public void clearConversationHistory(UUID npcUuid) {
-        lock.lock();
-        try (PreparedStatement stmt = connection.prepareStatement("DELETE FROM conversations WHERE npc_uuid = ?")) {
+        write("Error clearing conversation history", null, db -> {
+            PreparedStatement stmt = db.prepare(DELETE_CONVERSATION);
             stmt.setString(1, npcUuid.toString());
             stmt.executeUpdate();
-        } catch (SQLException e) {
-            AINpcConnectorMod.LOGGER.error("[AI NPC Connector] Error clearing conversation history", e);
-        } finally {
-            lock.unlock();
-        }
+            return null;
+        });
     }
 
     // ==================== UTILITY METHODS ====================
 
     public void close() {
+        lock.lock();
         try {
+            List<StatementCache> pooled = new ArrayList<>();
+            readers.drainTo(pooled);
+            readerCount = 0;
+            for (StatementCache reader : pooled) {
+                reader.close();
+            }
             if (connection != null && !connection.isClosed()) {
-                connection.close();
+                writer.close();
             }
         } catch (SQLException e) {
             AINpcConnectorMod.LOGGER.error("[AI NPC Connector] Error closing database", e);
+        } finally {
+            lock.unlock();
         }
     }
 
     public void backup(Path backupPath) throws SQLException {
         // Execute SQLite backup command
-        try (Statement stmt = connection.createStatement();
-                ResultSet rs = stmt.executeQuery("SELECT sql FROM sqlite_master WHERE sql NOT NULL")) {
+        String schema = read("Backup failed", null, db -> {
             StringBuilder backup = new StringBuilder();
-            while (rs.next()) {
-                backup.append(rs.getString("sql")).append(";\n");
+            try (Statement stmt = db.connection.createStatement();
+                    ResultSet rs = stmt.executeQuery("SELECT sql FROM sqlite_master WHERE sql NOT NULL")) {
+                while (rs.next()) {
+                    backup.append(rs.getString("sql")).append(";\n");
+                }
             }
-            Files.writeString(backupPath, backup.toString());
+            return backup.toString();
+        });
+        if (schema == null) {
+            throw new SQLException("Backup failed");
+        }
+        try {
+            Files.writeString(backupPath, schema);
         } catch (Exception e) {
             throw new SQLException("Backup failed", e);
         }
@@ -468,12 +693,28 @@ public class DatabaseManager {
             String aiProviderId,
             String personality,
             String systemPrompt,
-            String personalityTraits, // JSON string
+            String personalityTraits, // legacy JSON string
+            byte[] traitsBlob, // TraitCodec encoding
             String conversationHistory, // JSON string
+            String worldId,
             String createdAt,
             String updatedAt) {
     }
 
+    public record NPCProfileSummary(
+            UUID uuid,
+            String entityName,
+            boolean aiEnabled,
+            String worldId) {
+    }
+
+    public record ConversationTurnRecord(
+            UUID npcUuid,
+            String role,
+            String content,
+            long timestamp) { // epoch millis
+    }
+
     public record ConversationMessage(
             String role,
             String content,
@@ -91,6 +91,20 @@ public class ModConfig {
 
     public static class AIConfig {
         private String defaultProviderId = null; // ID of default AI provider
+        private boolean streamResponses = true; // send player replies sentence by sentence as they generate
+        private int schedulerQueueLimit = 32; // queued requests per provider before ambient chatter is shed
+        private boolean responseCacheEnabled = true; // reuse responses for repeated prompts
+        private int responseCacheTtlSeconds = 600;
+        private int responseCacheMaxEntries = 1000;
+        private int responseCacheVariants = 3; // distinct responses collected per prompt before serving from cache
+        private int historyTokenBudget = 1000; // estimated tokens of conversation history sent per request
+        private List<String> fallbackProviderIds = new ArrayList<>(); // tried in order when the NPC's provider fails
+        private int maxRetries = 2; // retries per provider on rate limits, server errors and timeouts
+        private int retryBaseDelayMillis = 500;
+        private int maxRetryDelayMillis = 5000; // longer Retry-After hints skip to the next provider
+        private boolean hedgingEnabled = true; // race the first fallback once a player request exceeds p95 latency
+        private int circuitFailureThreshold = 5; // consecutive failures before a provider is skipped
+        private int circuitOpenSeconds = 30;
 
         public String getDefaultProviderId() {
             return defaultProviderId;
@@ -99,6 +113,118 @@ public class ModConfig {
         public void setDefaultProviderId(String defaultProviderId) {
             this.defaultProviderId = defaultProviderId;
         }
+
+        public boolean isStreamResponses() {
+            return streamResponses;
+        }
+
+        public void setStreamResponses(boolean streamResponses) {
+            this.streamResponses = streamResponses;
+        }
+
+        public int getSchedulerQueueLimit() {
+            return Math.max(1, schedulerQueueLimit);
+        }
+
+        public void setSchedulerQueueLimit(int schedulerQueueLimit) {
+            this.schedulerQueueLimit = schedulerQueueLimit;
+        }
+
+        public boolean isResponseCacheEnabled() {
+            return responseCacheEnabled;
+        }
+
+        public void setResponseCacheEnabled(boolean responseCacheEnabled) {
+            this.responseCacheEnabled = responseCacheEnabled;
+        }
+
+        public int getResponseCacheTtlSeconds() {
+            return Math.max(1, responseCacheTtlSeconds);
+        }
+
+        public void setResponseCacheTtlSeconds(int responseCacheTtlSeconds) {
+            this.responseCacheTtlSeconds = responseCacheTtlSeconds;
+        }
+
+        public int getResponseCacheMaxEntries() {
+            return Math.max(1, responseCacheMaxEntries);
+        }
+
+        public void setResponseCacheMaxEntries(int responseCacheMaxEntries) {
+            this.responseCacheMaxEntries = responseCacheMaxEntries;
+        }
+
+        public int getResponseCacheVariants() {
+            return Math.max(1, responseCacheVariants);
+        }
+
+        public void setResponseCacheVariants(int responseCacheVariants) {
+            this.responseCacheVariants = responseCacheVariants;
+        }
+
+        public int getHistoryTokenBudget() {
+            return Math.max(0, historyTokenBudget);
+        }
+
+        public void setHistoryTokenBudget(int historyTokenBudget) {
+            this.historyTokenBudget = historyTokenBudget;
+        }
+
+        public List<String> getFallbackProviderIds() {
+            return fallbackProviderIds != null ? fallbackProviderIds : List.of();
+        }
+
+        public void setFallbackProviderIds(List<String> fallbackProviderIds) {
+            this.fallbackProviderIds = fallbackProviderIds;
+        }
+
+        public int getMaxRetries() {
+            return Math.max(0, maxRetries);
+        }
+
+        public void setMaxRetries(int maxRetries) {
+            this.maxRetries = maxRetries;
+        }
+
+        public int getRetryBaseDelayMillis() {
+            return Math.max(1, retryBaseDelayMillis);
+        }
+
+        public void setRetryBaseDelayMillis(int retryBaseDelayMillis) {
+            this.retryBaseDelayMillis = retryBaseDelayMillis;
+        }
+
+        public int getMaxRetryDelayMillis() {
+            return Math.max(0, maxRetryDelayMillis);
+        }
+
+        public void setMaxRetryDelayMillis(int maxRetryDelayMillis) {
+            this.maxRetryDelayMillis = maxRetryDelayMillis;
+        }
+
+        public boolean isHedgingEnabled() {
+            return hedgingEnabled;
+        }
+
+        public void setHedgingEnabled(boolean hedgingEnabled) {
+            this.hedgingEnabled = hedgingEnabled;
+        }
+
+        public int getCircuitFailureThreshold() {
+            return Math.max(1, circuitFailureThreshold);
+        }
+
+        public void setCircuitFailureThreshold(int circuitFailureThreshold) {
+            this.circuitFailureThreshold = circuitFailureThreshold;
+        }
+
+        public int getCircuitOpenSeconds() {
+            return Math.max(1, circuitOpenSeconds);
+        }
+
+        public void setCircuitOpenSeconds(int circuitOpenSeconds) {
+            this.circuitOpenSeconds = circuitOpenSeconds;
+        }
     }
 
     /**
@@ -110,6 +236,8 @@ public class ModConfig {
         private String apiKey;
         private String endpoint;
         private String model;
+        private int maxConcurrentRequests = 4; // in-flight request ceiling for this provider
+        private int tokensPerMinute = 0; // estimated token budget per minute, 0 = unlimited
 
         public ProviderConfig() {
             this.id = UUID.randomUUID().toString();
@@ -154,20 +282,73 @@ public class ModConfig {
         public void setModel(String model) {
             this.model = model;
         }
+
+        public int getMaxConcurrentRequests() {
+            return Math.max(1, maxConcurrentRequests);
+        }
+
+        public void setMaxConcurrentRequests(int maxConcurrentRequests) {
+            this.maxConcurrentRequests = maxConcurrentRequests;
+        }
+
+        public int getTokensPerMinute() {
+            return Math.max(0, tokensPerMinute);
+        }
+
+        public void setTokensPerMinute(int tokensPerMinute) {
+            this.tokensPerMinute = tokensPerMinute;
+        }
     }
 
     public static class NPCConfig {
-        private int aiThinkIntervalTicks = 40; // 2 seconds
+        private int aiThinkIntervalTicks = 40; // 2 seconds, scaled per NPC by personality and server load
+        private int decisionIntervalTicks = 100; // how often an NPC picks a new behavior
+        private double targetMspt = 40.0; // think intervals stretch while ticks take longer than this
+        private double maxCadenceStretch = 4.0; // at most this many times the configured interval
         private double personalityEvolutionRate = 0.01;
+        private boolean batchNpcDialogue = true; // one completion scripts several NPC conversations
+        private int dialogueBatchWindowTicks = 40; // how long openings are collected before sending
+        private int dialogueLineIntervalTicks = 60; // pause between scripted lines
+        private double tickBudgetMillis = 5.0; // NPC processing time per server tick, the rest carries over
+        private int lodFullRadius = 32; // full autonomous behavior within this many blocks of a player
+        private int lodReducedRadius = 96; // reduced behavior up to here, frozen beyond
+        private int lodReducedInterval = 4; // reduced NPCs run every Nth pass
+        private int maxPathfindsPerTick = 8; // path computations across all NPCs, the rest wait a pass
+        private int profileFlushIntervalMillis = 2000; // how often changed NPC profiles are written
+        private int maxResidentProfiles = 512; // profiles kept in memory, loaded NPCs are never evicted
 
         public int getAiThinkIntervalTicks() {
-            return aiThinkIntervalTicks;
+            return Math.max(1, aiThinkIntervalTicks);
         }
 
         public void setAiThinkIntervalTicks(int aiThinkIntervalTicks) {
             this.aiThinkIntervalTicks = aiThinkIntervalTicks;
         }
 
+        public int getDecisionIntervalTicks() {
+            return Math.max(1, decisionIntervalTicks);
+        }
+
+        public void setDecisionIntervalTicks(int decisionIntervalTicks) {
+            this.decisionIntervalTicks = decisionIntervalTicks;
+        }
+
+        public double getTargetMspt() {
+            return Math.max(1.0, targetMspt);
+        }
+
+        public void setTargetMspt(double targetMspt) {
+            this.targetMspt = targetMspt;
+        }
+
+        public double getMaxCadenceStretch() {
+            return Math.max(1.0, maxCadenceStretch);
+        }
+
+        public void setMaxCadenceStretch(double maxCadenceStretch) {
+            this.maxCadenceStretch = maxCadenceStretch;
+        }
+
         public double getPersonalityEvolutionRate() {
             return personalityEvolutionRate;
         }
@@ -175,6 +356,86 @@ public class ModConfig {
         public void setPersonalityEvolutionRate(double personalityEvolutionRate) {
             this.personalityEvolutionRate = personalityEvolutionRate;
         }
+
+        public boolean isBatchNpcDialogue() {
+            return batchNpcDialogue;
+        }
+
+        public void setBatchNpcDialogue(boolean batchNpcDialogue) {
+            this.batchNpcDialogue = batchNpcDialogue;
+        }
+
+        public int getDialogueBatchWindowTicks() {
+            return Math.max(1, dialogueBatchWindowTicks);
+        }
+
+        public void setDialogueBatchWindowTicks(int dialogueBatchWindowTicks) {
+            this.dialogueBatchWindowTicks = dialogueBatchWindowTicks;
+        }
+
+        public int getDialogueLineIntervalTicks() {
+            return Math.max(1, dialogueLineIntervalTicks);
+        }
+
+        public void setDialogueLineIntervalTicks(int dialogueLineIntervalTicks) {
+            this.dialogueLineIntervalTicks = dialogueLineIntervalTicks;
+        }
+
+        public double getTickBudgetMillis() {
+            return Math.max(0.1, tickBudgetMillis);
+        }
+
+        public void setTickBudgetMillis(double tickBudgetMillis) {
+            this.tickBudgetMillis = tickBudgetMillis;
+        }
+
+        public int getLodFullRadius() {
+            return Math.max(1, lodFullRadius);
+        }
+
+        public void setLodFullRadius(int lodFullRadius) {
+            this.lodFullRadius = lodFullRadius;
+        }
+
+        public int getLodReducedRadius() {
+            return Math.max(getLodFullRadius(), lodReducedRadius);
+        }
+
+        public void setLodReducedRadius(int lodReducedRadius) {
+            this.lodReducedRadius = lodReducedRadius;
+        }
+
+        public int getLodReducedInterval() {
+            return Math.max(1, lodReducedInterval);
+        }
+
+        public void setLodReducedInterval(int lodReducedInterval) {
+            this.lodReducedInterval = lodReducedInterval;
+        }
+
+        public int getMaxPathfindsPerTick() {
+            return Math.max(1, maxPathfindsPerTick);
+        }
+
+        public void setMaxPathfindsPerTick(int maxPathfindsPerTick) {
+            this.maxPathfindsPerTick = maxPathfindsPerTick;
+        }
+
+        public int getProfileFlushIntervalMillis() {
+            return Math.max(100, profileFlushIntervalMillis);
+        }
+
+        public void setProfileFlushIntervalMillis(int profileFlushIntervalMillis) {
+            this.profileFlushIntervalMillis = profileFlushIntervalMillis;
+        }
+
+        public int getMaxResidentProfiles() {
+            return Math.max(1, maxResidentProfiles);
+        }
+
+        public void setMaxResidentProfiles(int maxResidentProfiles) {
+            this.maxResidentProfiles = maxResidentProfiles;
+        }
     }
 
     /**
@@ -0,0 +1,68 @@
+package com.ainpcconnector.npc;
+
+import com.ainpcconnector.AINpcConnectorMod;
+import com.ainpcconnector.config.ModConfig;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Decides how often each NPC thinks.
+ * The configured think interval is scaled by the NPC's energy (energetic NPCs
+ * think more often, tired ones less) and stretched while the server tick takes longer than the target
+ * MSPT. Settings are read on every call so config changes apply immediately.
+ * Server thread only; the web server reads a snapshot published by NPCManager.
+ */
+class NPCCadence {
+
+    private long tickStartNanos = 0;
+    private double averageMspt = 0;
+    private double loadStretch = 1.0;
+
+    public void startTick() {
+        tickStartNanos = System.nanoTime();
+    }
+
+    /**
+     * Measure the tick that just ran and update the load stretch.
+     */
+    public void endTick() {
+        if (tickStartNanos == 0) {
+            return;
+        }
+        ModConfig.NPCConfig config = config();
+        double mspt = (System.nanoTime() - tickStartNanos) / 1_000_000.0;
+        averageMspt = averageMspt * 0.95 + mspt * 0.05;
+        loadStretch = Math.max(1.0, Math.min(config.getMaxCadenceStretch(), averageMspt / config.getTargetMspt()));
+    }
+
+    /**
+     * Think interval in ticks for an NPC with the given energy (0..1), or
+     * negative if the energy is not known yet.
+     */
+    public int intervalFor(double energy) {
+        double scale = energy >= 0 ? 1.25 - Math.min(1.0, energy) * 0.5 : 1.0;
+        return (int) Math.max(1, Math.round(config().getAiThinkIntervalTicks() * scale * loadStretch));
+    }
+
+    /**
+     * Interval used to spread the first pass of a newly loaded NPC.
+     */
+    public int baseInterval() {
+        return (int) Math.round(config().getAiThinkIntervalTicks() * loadStretch);
+    }
+
+    public Map<String, Object> getStats() {
+        ModConfig.NPCConfig config = config();
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("averageMspt", averageMspt);
+        stats.put("targetMspt", config.getTargetMspt());
+        stats.put("loadStretch", loadStretch);
+        stats.put("baseIntervalTicks", config.getAiThinkIntervalTicks());
+        return stats;
+    }
+
+    private static ModConfig.NPCConfig config() {
+        return AINpcConnectorMod.getConfigManager().getConfig().getNpc();
+    }
+}
@@ -1,13 +1,16 @@
 package com.ainpcconnector.npc;
 
 import com.ainpcconnector.AINpcConnectorMod;
+import com.ainpcconnector.behavior.AIController;
 import com.ainpcconnector.behavior.AutonomousController;
 import net.fabricmc.fabric.api.event.lifecycle.v1.ServerEntityEvents;
 import net.fabricmc.fabric.api.event.lifecycle.v1.ServerTickEvents;
 import net.minecraft.entity.Entity;
 import net.minecraft.entity.EntityType;
+import net.minecraft.registry.RegistryKey;
 import net.minecraft.server.world.ServerWorld;
 import net.minecraft.util.Identifier;
+import net.minecraft.world.World;
 import net.minecraft.util.ActionResult;
 import net.fabricmc.fabric.api.event.player.UseEntityCallback;
 import net.fabricmc.fabric.api.message.v1.ServerMessageEvents;
@@ -15,7 +18,15 @@ import net.minecraft.server.network.ServerPlayerEntity;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.lang.ref.WeakReference;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
+import java.util.function.ToIntFunction;
 
 /**
  * Manages detection, tracking, and lifecycle of NPCs.
@@ -25,13 +36,37 @@ public class NPCManager {
 
     private static final Logger LOGGER = LoggerFactory.getLogger(NPCManager.class);
 
+    // How often the tick stats served to the web dashboard are refreshed
+    private static final int STATS_INTERVAL_TICKS = 20;
+
     private final NPCRegistry registry;
+    private final NPCSpatialIndex spatialIndex;
     private AutonomousController autonomousController;
+    private AIController aiController;
+
+    // Live handles of loaded NPCs, maintained by the entity load/unload events
+    private final Map<UUID, NPCHandle> loadedNPCs = new HashMap<>();
 
-    private int tickCounter = 0;
+    // Every NPC is processed once per think interval, which the cadence adapts to energy and load
+    private final NPCTickScheduler tickScheduler = new NPCTickScheduler();
+    private final NPCCadence cadence = new NPCCadence();
+    // Reused every tick so scheduling doesn't allocate a lambda
+    private final Consumer<UUID> tickTask = this::tickNPC;
+    private final ToIntFunction<UUID> intervalTask = this::thinkInterval;
+    private net.minecraft.server.MinecraftServer tickServer;
+    // Built on the server thread, read by the web server
+    private volatile Map<String, Object> tickStats = Map.of();
+
+    /**
+     * A loaded NPC entity and the world it is in. The entity is held weakly so a
+     * missed unload event cannot keep it alive.
+     */
+    private record NPCHandle(WeakReference<Entity> entity, RegistryKey<World> worldKey) {
+    }
 
     public NPCManager() {
         this.registry = NPCRegistry.getInstance();
+        this.spatialIndex = NPCSpatialIndex.getInstance();
     }
 
     /**
@@ -41,6 +76,13 @@ public class NPCManager {
         this.autonomousController = controller;
     }
 
+    /**
+     * Set the AI controller.
+     */
+    public void setAIController(AIController controller) {
+        this.aiController = controller;
+    }
+
     /**
      * Initialize event listeners for NPC detection.
      */
@@ -48,23 +90,46 @@ public class NPCManager {
         // Listen for entity spawning
         ServerEntityEvents.ENTITY_LOAD.register((entity, world) -> {
             if (isEasyNPC(entity)) {
+                loadedNPCs.put(entity.getUuid(), new NPCHandle(new WeakReference<>(entity), world.getRegistryKey()));
+                tickScheduler.add(entity.getUuid(), cadence.baseInterval());
+                spatialIndex.track(entity, world);
                 onNPCLoaded(entity, world);
+            } else if (entity instanceof ServerPlayerEntity) {
+                spatialIndex.track(entity, world);
             }
         });
 
         // Listen for entity unloading
         ServerEntityEvents.ENTITY_UNLOAD.register((entity, world) -> {
             if (isEasyNPC(entity)) {
+                loadedNPCs.remove(entity.getUuid());
+                tickScheduler.remove(entity.getUuid());
+                spatialIndex.untrack(entity.getUuid());
                 onNPCUnloaded(entity);
+            } else if (entity instanceof ServerPlayerEntity) {
+                spatialIndex.untrack(entity.getUuid());
             }
         });
 
+        ServerTickEvents.START_SERVER_TICK.register(server -> cadence.startTick());
+
         // Tick event for NPC behavior processing
         ServerTickEvents.END_SERVER_TICK.register(server -> {
-            tickCounter++;
-            if (tickCounter >= 40) { // Every 2 seconds
-                tickCounter = 0;
-                onServerTick(server);
+            spatialIndex.update();
+            PlayerProximity.getInstance().update(server);
+            long budgetNanos = (long) (AINpcConnectorMod.getConfigManager().getConfig().getNpc()
+                    .getTickBudgetMillis() * 1_000_000);
+            tickServer = server;
+            tickScheduler.tick(server.getTicks(), budgetNanos, tickTask, intervalTask);
+            if (autonomousController != null) {
+                // Apply finished behavior plans and send this tick's decisions to the planners
+                autonomousController.tickPlanning();
+                // Batched NPC dialogue is played out line by line on its own schedule
+                autonomousController.tickDialogue(server.getTicks());
+            }
+            cadence.endTick();
+            if (server.getTicks() % STATS_INTERVAL_TICKS == 0) {
+                tickStats = buildTickStats();
             }
         });
 
@@ -81,9 +146,7 @@ public class NPCManager {
 
         // Chat listener for proximity-based responses
         ServerMessageEvents.CHAT_MESSAGE.register((message, sender, params) -> {
-            // Get server from player's world instead of sender.getServer() which changed in 1.21.1
             ServerWorld senderWorld = sender.getServerWorld();
-            net.minecraft.server.MinecraftServer server = senderWorld.getServer();
             double sx = sender.getX();
             double sy = sender.getY();
             double sz = sender.getZ();
@@ -91,25 +154,18 @@ public class NPCManager {
             // Get content string
             String content = message.getContent().getString();
 
-            // Find nearby active NPCs
-            for (NPCProfile profile : registry.getAllProfiles()) {
-                if (profile.isAiEnabled()) {
-                    Entity npcEntity = findEntityInLoadedWorlds(server, profile.getEntityUuid());
-                    if (npcEntity != null) {
-                        // Check world equivalence using registry key to be extra safe
-                        if (npcEntity.getWorld().getRegistryKey().equals(senderWorld.getRegistryKey())) {
-                            double dx = npcEntity.getX() - sx;
-                            double dy = npcEntity.getY() - sy;
-                            double dz = npcEntity.getZ() - sz;
-                            double distSq = dx * dx + dy * dy + dz * dz;
-
-                            if (distSq < 100.0) { // 10 blocks radius (10^2 = 100)
-                                AINpcConnectorMod.getAIController().ifPresent(controller -> {
-                                    controller.handlePlayerInteraction(sender, npcEntity, content);
-                                });
-                            }
-                        }
-                    }
+            // Find nearby active NPCs (10 blocks radius) through the spatial index
+            List<Entity> nearbyNPCs = spatialIndex.queryRadius(senderWorld, sx, sy, sz, 10.0,
+                    e -> !(e instanceof ServerPlayerEntity));
+            for (Entity npcEntity : nearbyNPCs) {
+                if (getLoadedEntity(npcEntity.getUuid()) != npcEntity) {
+                    continue;
+                }
+                NPCProfile profile = registry.getProfile(npcEntity.getUuid());
+                if (profile != null && profile.isAiEnabled()) {
+                    AINpcConnectorMod.getAIController().ifPresent(controller -> {
+                        controller.handlePlayerInteraction(sender, npcEntity, content);
+                    });
                 }
             }
         });
@@ -118,16 +174,20 @@ public class NPCManager {
     }
 
     /**
-     * Finds an entity in any loaded world.
+     * The loaded entity of an NPC, or null if it is not loaded. Server thread only.
      */
-    private Entity findEntityInLoadedWorlds(net.minecraft.server.MinecraftServer server, UUID uuid) {
-        for (ServerWorld world : server.getWorlds()) {
-            for (Entity entity : world.iterateEntities()) {
-                if (entity.getUuid().equals(uuid))
-                    return entity;
-            }
+    public Entity getLoadedEntity(UUID uuid) {
+        NPCHandle handle = loadedNPCs.get(uuid);
+        if (handle == null) {
+            return null;
         }
-        return null;
+        Entity entity = handle.entity().get();
+        if (entity == null || entity.isRemoved()) {
+            loadedNPCs.remove(uuid);
+            registry.unpin(uuid);
+            return null;
+        }
+        return entity;
     }
 
     /**
@@ -157,9 +217,27 @@ public class NPCManager {
         LOGGER.info("[Easy NPC kracked AI] Easy NPC detected: {} ({})",
                 entity.getName().getString(), uuid);
 
-        // Get or create profile
-        NPCProfile profile = registry.getOrCreateProfile(entity);
+        // Keep the profile resident while loaded. A stored profile is read on the
+        // persistence thread; the NPC stays inactive until it arrives.
+        registry.pin(uuid);
+        CompletableFuture<NPCProfile> load = registry.loadProfileAsync(entity);
+        if (load.isDone() && !load.isCompletedExceptionally()) {
+            onProfileReady(entity, world, load.join());
+            return;
+        }
+        load.whenComplete((profile, error) -> world.getServer().execute(() -> {
+            if (error != null) {
+                LOGGER.error("[Easy NPC kracked AI] Failed to load profile of NPC {}", uuid, error);
+            } else if (getLoadedEntity(uuid) == entity) {
+                onProfileReady(entity, world, profile);
+            }
+        }));
+    }
 
+    /**
+     * Called on the server thread once the profile of a loaded NPC is available.
+     */
+    private void onProfileReady(Entity entity, ServerWorld world, NPCProfile profile) {
         // Update position tracking
         // Using stable coordinate access instead of version-sensitive
         // getPos()/getBlockPos()
@@ -172,6 +250,9 @@ public class NPCManager {
         AINpcConnectorMod.getAIController().ifPresent(controller -> {
             controller.onNPCLoaded(entity, profile);
         });
+        if (autonomousController != null) {
+            autonomousController.onNPCLoaded(entity);
+        }
     }
 
     /**
@@ -179,6 +260,7 @@ public class NPCManager {
      */
     private void onNPCUnloaded(Entity entity) {
         UUID uuid = entity.getUuid();
+        registry.unpin(uuid);
 
         // Check if the entity is being removed permanently (killed or discarded)
         // If it's just unloading (unloaded to chunk), we keep the profile
@@ -193,51 +275,73 @@ public class NPCManager {
         AINpcConnectorMod.getAIController().ifPresent(controller -> {
             controller.onNPCUnloaded(entity);
         });
+        if (autonomousController != null) {
+            autonomousController.onNPCUnloaded(entity);
+        }
     }
 
     /**
-     * Called every server tick for NPC behavior processing.
+     * Process AI behavior for one loaded NPC. Called by the tick scheduler.
      */
-    private void onServerTick(net.minecraft.server.MinecraftServer server) {
-        // Collect all Easy NPC entities and their worlds to avoid crashes
-        java.util.Map<UUID, Entity> entityMap = new java.util.HashMap<>();
-        java.util.Map<UUID, ServerWorld> worldMap = new java.util.HashMap<>();
-
-        for (ServerWorld world : server.getWorlds()) {
-            for (Entity entity : world.iterateEntities()) {
-                if (isEasyNPC(entity)) {
-                    entityMap.put(entity.getUuid(), entity);
-                    worldMap.put(entity.getUuid(), world);
-                }
-            }
+    private void tickNPC(UUID uuid) {
+        net.minecraft.server.MinecraftServer server = tickServer;
+        NPCHandle handle = loadedNPCs.get(uuid);
+        Entity entity = handle != null ? handle.entity().get() : null;
+        if (entity == null || entity.isRemoved()) {
+            loadedNPCs.remove(uuid);
+            tickScheduler.remove(uuid);
+            registry.unpin(uuid);
+            return;
         }
 
-        // Process AI behavior for all enabled NPCs
-        for (NPCProfile profile : registry.getAllProfiles()) {
-            if (profile.isAiEnabled()) {
-                // Find the entity and its world in our pre-collected maps
-                Entity entity = entityMap.get(profile.getEntityUuid());
-                ServerWorld world = worldMap.get(profile.getEntityUuid());
+        NPCProfile profile = registry.getProfile(uuid);
+        ServerWorld world = server.getWorld(handle.worldKey());
+        if (profile == null || !profile.isAiEnabled() || !entity.isAlive() || world == null) {
+            return;
+        }
 
-                if (entity != null && entity.isAlive() && world != null) {
-                    // Update position using stable coordinate access
-                    profile.setLastKnownPosition(
-                            new net.minecraft.util.math.Vec3d(entity.getX(), entity.getY(), entity.getZ()));
+        // Share the entity's own immutable position instead of copying it every pass
+        profile.setLastKnownPosition(entity.getPos());
 
-                    // Process legacy AI behavior (looking at players)
-                    AINpcConnectorMod.getAIController().ifPresent(controller -> {
-                        controller.processTick(world, entity, profile);
-                    });
+        // Process legacy AI behavior (looking at players)
+        if (aiController != null) {
+            aiController.processTick(world, entity, profile);
+        }
 
-                    // Process autonomous behavior (movement, socializing, etc.)
-                    if (autonomousController != null) {
-                        autonomousController.processAutonomousBehavior(world, entity, profile);
-                    }
-                }
-            }
+        // Process autonomous behavior (movement, socializing, etc.)
+        if (autonomousController != null) {
+            autonomousController.processAutonomousBehavior(world, entity, profile);
         }
     }
 
+    /**
+     * Think interval of an NPC in ticks. Called by the tick scheduler.
+     */
+    private int thinkInterval(UUID uuid) {
+        return cadence.intervalFor(autonomousController != null ? autonomousController.getEnergy(uuid) : -1);
+    }
+
+    /**
+     * Per-tick cost of NPC processing, as of the last snapshot taken on the
+     * server thread. Safe to call from any thread.
+     */
+    public Map<String, Object> getTickStats() {
+        return tickStats;
+    }
+
+    /**
+     * Collect the tick stats. Server thread only.
+     */
+    private Map<String, Object> buildTickStats() {
+        Map<String, Object> stats = tickScheduler.getStats();
+        stats.put("loadedNPCs", loadedNPCs.size());
+        stats.put("residentProfiles", registry.residentCount());
+        stats.put("cadence", cadence.getStats());
+        if (autonomousController != null) {
+            stats.put("navigation", autonomousController.getNavigationStats());
+        }
+        return Collections.unmodifiableMap(stats);
+    }
 
     /**
      * Get the NPC registry.
@@ -252,4 +356,12 @@ public class NPCManager {
     public void saveAll() {
         registry.save();
     }
+
+    /**
+     * Stop background persistence and write the remaining changes.
+     * Call after the AI controllers and request scheduler have shut down.
+     */
+    public void shutdown() {
+        registry.shutdown();
+    }
 }
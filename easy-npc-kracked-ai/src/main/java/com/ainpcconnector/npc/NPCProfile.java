@@ -1,18 +1,26 @@
 package com.ainpcconnector.npc;
 
+import com.ainpcconnector.ai.ChatMessage;
 import net.minecraft.entity.Entity;
 import net.minecraft.util.math.BlockPos;
 import net.minecraft.util.math.Vec3d;
 
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.Objects;
 import java.util.UUID;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Supplier;
 
 /**
  * Profile data for an AI-controlled NPC.
  */
 public class NPCProfile {
 
+    static final int MAX_CONVERSATION_TURNS = 40;
+
     private final UUID entityUuid;
     private String entityName;
     private String entityType;
@@ -40,13 +48,36 @@ public class NPCProfile {
     private transient net.minecraft.util.math.BlockPos homePosition;
     private String worldId;
 
-    // Conversation history (last 10 messages)
-    private String conversationHistory = "";
+    // Recent conversation turns, oldest first. The full history lives in the
+    // conversation log; this tail is loaded from it on first use.
+    private final List<ChatMessage> conversationTurns = new ArrayList<>();
+    @com.fasterxml.jackson.annotation.JsonIgnore
+    private transient Supplier<List<ChatMessage>> historySource;
+    // Turns not yet appended to the log, and whether the logged history was cleared
+    @com.fasterxml.jackson.annotation.JsonIgnore
+    private final transient List<LoggedTurn> unsavedTurns = new ArrayList<>();
+    @com.fasterxml.jackson.annotation.JsonIgnore
+    private transient boolean historyCleared;
+
+    // Set when a persisted field changes, cleared by the registry's flusher.
+    // New profiles start dirty so they get written.
+    @com.fasterxml.jackson.annotation.JsonIgnore
+    private final transient AtomicBoolean dirty = new AtomicBoolean(true);
+
+    // When the profile was last looked up, for evicting cold profiles from the registry
+    @com.fasterxml.jackson.annotation.JsonIgnore
+    private transient volatile long lastAccessMillis = System.currentTimeMillis();
 
     public enum NPCStatus {
         IDLE, CONVERSING, MOVING, THINKING
     }
 
+    /**
+     * A conversation turn and when it was added, waiting to be logged.
+     */
+    record LoggedTurn(ChatMessage turn, long timestamp) {
+    }
+
     public NPCProfile(UUID entityUuid, String entityName, String entityType) {
         this.entityUuid = entityUuid;
         this.entityName = entityName;
@@ -81,6 +112,7 @@ public class NPCProfile {
 
     public void setEntityName(String entityName) {
         this.entityName = entityName;
+        markDirty();
     }
 
     public String getEntityType() {
@@ -97,6 +129,7 @@ public class NPCProfile {
 
     public void setAiProviderId(String aiProviderId) {
         this.aiProviderId = aiProviderId;
+        markDirty();
     }
 
     public String getSystemPrompt() {
@@ -105,6 +138,7 @@ public class NPCProfile {
 
     public void setSystemPrompt(String systemPrompt) {
         this.systemPrompt = systemPrompt;
+        markDirty();
     }
 
     public String getPersonality() {
@@ -113,6 +147,7 @@ public class NPCProfile {
 
     public void setPersonality(String personality) {
         this.personality = personality;
+        markDirty();
     }
 
     public int getInteractionCount() {
@@ -129,10 +164,13 @@ public class NPCProfile {
 
     public void setPersonalityTrait(String trait, double value) {
         personalityTraits.put(trait, Math.max(0.0, Math.min(1.0, value)));
+        markDirty();
     }
 
     public double getPersonalityTrait(String trait) {
-        return personalityTraits.getOrDefault(trait, 0.5);
+        // get() rather than getOrDefault(trait, 0.5) so the default isn't boxed on every call
+        Double value = personalityTraits.get(trait);
+        return value != null ? value : 0.5;
     }
 
     public boolean isAiEnabled() {
@@ -141,6 +179,7 @@ public class NPCProfile {
 
     public void setAiEnabled(boolean aiEnabled) {
         this.aiEnabled = aiEnabled;
+        markDirty();
     }
 
     public boolean isVoiceEnabled() {
@@ -149,6 +188,7 @@ public class NPCProfile {
 
     public void setVoiceEnabled(boolean voiceEnabled) {
         this.voiceEnabled = voiceEnabled;
+        markDirty();
     }
 
     public NPCStatus getStatus() {
@@ -180,28 +220,147 @@ public class NPCProfile {
     }
 
     public void setWorldId(String worldId) {
-        this.worldId = worldId;
+        if (!Objects.equals(this.worldId, worldId)) {
+            this.worldId = worldId;
+            markDirty();
+        }
     }
 
-    public String getConversationHistory() {
-        return conversationHistory;
+    /**
+     * Conversation history as a flat transcript.
+     */
+    public synchronized String getConversationHistory() {
+        hydrateConversation();
+        StringBuilder sb = new StringBuilder();
+        for (ChatMessage turn : conversationTurns) {
+            if (sb.length() > 0) {
+                sb.append("\n");
+            }
+            sb.append(turn.role() == ChatMessage.Role.ASSISTANT ? "NPC: " : "").append(turn.content());
+        }
+        return sb.toString();
     }
 
-    public void addToConversationHistory(String message) {
-        if (conversationHistory.isEmpty()) {
-            conversationHistory = message;
-        } else {
-            conversationHistory += "\n" + message;
+    /**
+     * Snapshot of the conversation turns, oldest first.
+     */
+    public synchronized List<ChatMessage> getConversationTurns() {
+        hydrateConversation();
+        return List.copyOf(conversationTurns);
+    }
+
+    public synchronized void addConversationTurn(ChatMessage turn) {
+        hydrateConversation();
+        conversationTurns.add(turn);
+        unsavedTurns.add(new LoggedTurn(turn, System.currentTimeMillis()));
+
+        // Trim in chunks rather than one turn at a time so the history sent
+        // upstream keeps the same prefix for several requests in a row
+        if (conversationTurns.size() > MAX_CONVERSATION_TURNS) {
+            conversationTurns.subList(0, conversationTurns.size() - MAX_CONVERSATION_TURNS / 2).clear();
         }
+    }
 
-        // Keep only last 1000 characters
-        if (conversationHistory.length() > 1000) {
-            conversationHistory = conversationHistory.substring(conversationHistory.length() - 1000);
+    /**
+     * Drop the oldest turns once the history exceeds the token budget, down to
+     * half the budget.
+     */
+    public synchronized void compactConversationHistory(int tokenBudget) {
+        hydrateConversation();
+        if (ChatMessage.estimateTokens(conversationTurns) <= tokenBudget) {
+            return;
         }
+        List<ChatMessage> kept = ChatMessage.window(conversationTurns, tokenBudget / 2);
+        conversationTurns.subList(0, conversationTurns.size() - kept.size()).clear();
+    }
+
+    public synchronized void clearConversationHistory() {
+        historySource = null;
+        conversationTurns.clear();
+        unsavedTurns.clear();
+        historyCleared = true;
+    }
+
+    /**
+     * Where to load the recent turns from on first use. Set by the registry for
+     * profiles loaded from the database.
+     */
+    synchronized void setHistorySource(Supplier<List<ChatMessage>> historySource) {
+        this.historySource = historySource;
+    }
+
+    /**
+     * Take the turns added since the last call.
+     */
+    synchronized List<LoggedTurn> drainUnsavedTurns() {
+        if (unsavedTurns.isEmpty()) {
+            return List.of();
+        }
+        List<LoggedTurn> drained = new ArrayList<>(unsavedTurns);
+        unsavedTurns.clear();
+        return drained;
+    }
+
+    /**
+     * Take the cleared flag: the logged history must be deleted before newer turns are appended.
+     */
+    synchronized boolean takeHistoryCleared() {
+        boolean cleared = historyCleared;
+        historyCleared = false;
+        return cleared;
+    }
+
+    /**
+     * Put back turns and the cleared flag from a failed write, ahead of anything added since.
+     */
+    synchronized void requeueUnsaved(List<LoggedTurn> turns, boolean cleared) {
+        if (historyCleared) {
+            // Cleared again since - the old turns are gone anyway
+            return;
+        }
+        unsavedTurns.addAll(0, turns);
+        historyCleared = cleared;
+    }
+
+    /**
+     * Whether there are turns or a clear not yet written to the conversation log.
+     */
+    synchronized boolean hasUnsavedTurns() {
+        return !unsavedTurns.isEmpty() || historyCleared;
+    }
+
+    private void hydrateConversation() {
+        if (historySource != null) {
+            Supplier<List<ChatMessage>> source = historySource;
+            historySource = null;
+            conversationTurns.addAll(0, source.get());
+        }
+    }
+
+    /**
+     * Flag the profile for the next write-behind flush.
+     */
+    public void markDirty() {
+        dirty.set(true);
+    }
+
+    /**
+     * Clear the dirty flag, returning whether it was set.
+     */
+    public boolean clearDirty() {
+        return dirty.getAndSet(false);
+    }
+
+    boolean isDirty() {
+        return dirty.get();
+    }
+
+    void touch() {
+        lastAccessMillis = System.currentTimeMillis();
     }
 
-    public void clearConversationHistory() {
-        conversationHistory = "";
+    long getLastAccessMillis() {
+        return lastAccessMillis;
     }
 
     public long getLastPersonalityUpdate() {
@@ -1,16 +1,29 @@
 package com.ainpcconnector.npc;
 
 import com.ainpcconnector.AINpcConnectorMod;
+import com.ainpcconnector.ai.ChatMessage;
 import com.ainpcconnector.config.DatabaseManager;
 import com.google.gson.Gson;
 import com.google.gson.GsonBuilder;
 
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 
 /**
  * Persistent registry for NPC profiles using SQLite.
- * Stores all NPC configurations to database.
+ * Writes are write-behind: changed profiles are flagged dirty and a background
+ * flusher writes all of them, plus pending deletes, in one transaction every
+ * few seconds. {@link #save()} flushes immediately.
+ * Only a summary of each NPC is read at startup. Full profiles are read on the
+ * persistence thread when the NPC's entity loads ({@link #loadProfileAsync}),
+ * so the server thread never waits on the database, and once more than
+ * {@code npc.maxResidentProfiles} are in memory the least recently used clean
+ * ones are evicted after a flush. Profiles of loaded NPCs are pinned.
+ * {@link #shutdown()} stops the flusher and writes what is left.
  */
 public class NPCRegistry {
 
@@ -19,12 +32,26 @@ public class NPCRegistry {
             .registerTypeAdapter(UUID.class, new UUIDAdapter())
             .create();
 
+    // Resident profiles, and a summary of every known profile
     private final Map<UUID, NPCProfile> profiles = new ConcurrentHashMap<>();
+    private final Map<UUID, DatabaseManager.NPCProfileSummary> summaries = new ConcurrentHashMap<>();
+    private final Set<UUID> pinned = ConcurrentHashMap.newKeySet();
+    private final Set<UUID> pendingDeletes = ConcurrentHashMap.newKeySet();
+    // Profile reads queued on the persistence thread, guarded by itself
+    private final Map<UUID, CompletableFuture<NPCProfile>> loading = new HashMap<>();
     private DatabaseManager database;
 
+    private final ScheduledThreadPoolExecutor flusher = new ScheduledThreadPoolExecutor(1, r -> {
+        Thread t = new Thread(r, "AI-NPC-Persistence");
+        t.setDaemon(true);
+        return t;
+    });
+
     private static NPCRegistry instance;
 
     private NPCRegistry() {
+        // On shutdown, drop the next periodic flush instead of waiting for it
+        flusher.setExecuteExistingDelayedTasksAfterShutdownPolicy(false);
         // Try to get database
         try {
             database = AINpcConnectorMod.getConfigManager().getDatabase();
@@ -32,6 +59,7 @@ public class NPCRegistry {
         } catch (Exception e) {
             AINpcConnectorMod.LOGGER.warn("[AI NPC Connector] Database not available for NPC registry");
         }
+        scheduleFlush();
     }
 
     public static NPCRegistry getInstance() {
@@ -59,12 +87,38 @@ public class NPCRegistry {
     private void loadFromDatabase() {
         if (database == null) return;
 
-        List<DatabaseManager.NPCProfileRecord> records = database.getAllNPCProfiles();
-        for (DatabaseManager.NPCProfileRecord record : records) {
-            NPCProfile profile = convertToProfile(record);
-            profiles.put(profile.getEntityUuid(), profile);
+        for (DatabaseManager.NPCProfileSummary summary : database.getNPCProfileSummaries()) {
+            summaries.put(summary.uuid(), summary);
         }
-        AINpcConnectorMod.LOGGER.info("[AI NPC Connector] Loaded {} NPC profiles from database", profiles.size());
+        AINpcConnectorMod.LOGGER.info("[AI NPC Connector] Indexed {} NPC profiles from database", summaries.size());
+    }
+
+    /**
+     * Read one full profile from the database, or null if it isn't there.
+     */
+    private NPCProfile loadProfile(UUID uuid) {
+        if (database == null) {
+            return null;
+        }
+        DatabaseManager.NPCProfileRecord record = database.getNPCProfile(uuid);
+        if (record == null) {
+            return null;
+        }
+        NPCProfile profile = convertToProfile(record);
+        boolean legacyTraits = record.traitsBlob() == null
+                && record.personalityTraits() != null && !record.personalityTraits().isEmpty();
+        boolean legacyHistory = record.conversationHistory() != null && !record.conversationHistory().isEmpty();
+        if (!legacyHistory) {
+            // Recent turns are read from the log on first use
+            profile.setHistorySource(() -> loadRecentTurns(uuid));
+        }
+        if (!legacyTraits && !legacyHistory) {
+            // Freshly loaded, nothing to write back
+            profile.clearDirty();
+        }
+        // Otherwise the dirty row is rewritten on the next flush: legacy JSON traits
+        // as a blob, and legacy history (imported as unsaved turns) into the log
+        return profile;
     }
 
     private NPCProfile convertToProfile(DatabaseManager.NPCProfileRecord record) {
@@ -79,9 +133,16 @@ public class NPCRegistry {
         profile.setAiProviderId(record.aiProviderId());
         profile.setPersonality(record.personality());
         profile.setSystemPrompt(record.systemPrompt());
+        profile.setWorldId(record.worldId());
 
-        // Parse personality traits JSON
-        if (record.personalityTraits() != null && !record.personalityTraits().isEmpty()) {
+        // Decode personality traits, from the binary column or else the legacy JSON
+        if (record.traitsBlob() != null) {
+            try {
+                TraitCodec.decode(record.traitsBlob()).forEach(profile::setPersonalityTrait);
+            } catch (IllegalArgumentException e) {
+                AINpcConnectorMod.LOGGER.warn("[AI NPC Connector] Failed to decode personality traits: " + e.getMessage());
+            }
+        } else if (record.personalityTraits() != null && !record.personalityTraits().isEmpty()) {
             try {
                 @SuppressWarnings("unchecked")
                 Map<String, Double> traits = GSON.fromJson(record.personalityTraits(), Map.class);
@@ -95,18 +156,15 @@ public class NPCRegistry {
             }
         }
 
-        // Parse conversation history JSON (stored as formatted string)
+        // Parse legacy conversation history JSON (list of role/content turns)
         if (record.conversationHistory() != null && !record.conversationHistory().isEmpty()) {
             try {
                 @SuppressWarnings("unchecked")
                 List<Map<String, String>> history = GSON.fromJson(record.conversationHistory(), List.class);
                 if (history != null) {
-                    StringBuilder sb = new StringBuilder();
                     for (Map<String, String> msg : history) {
-                        if (sb.length() > 0) sb.append("\n");
-                        sb.append(msg.get("role")).append(": ").append(msg.get("content"));
+                        profile.addConversationTurn(toTurn(msg.get("role"), msg.get("content")));
                     }
-                    profile.addToConversationHistory(sb.toString());
                 }
             } catch (Exception e) {
                 AINpcConnectorMod.LOGGER.warn("[AI NPC Connector] Failed to parse conversation history: " + e.getMessage());
@@ -116,27 +174,19 @@ public class NPCRegistry {
         return profile;
     }
 
-    private DatabaseManager.NPCProfileRecord convertToRecord(NPCProfile profile) {
-        String traitsJson = GSON.toJson(profile.getPersonalityTraits());
-        // Convert conversation history string to JSON array
-        List<Map<String, String>> historyList = new ArrayList<>();
-        String history = profile.getConversationHistory();
-        if (history != null && !history.isEmpty()) {
-            String[] lines = history.split("\n");
-            for (String line : lines) {
-                Map<String, String> msg = new HashMap<>();
-                int colonIdx = line.indexOf(": ");
-                if (colonIdx > 0) {
-                    msg.put("role", line.substring(0, colonIdx));
-                    msg.put("content", line.substring(colonIdx + 2));
-                } else {
-                    msg.put("role", "user");
-                    msg.put("content", line);
-                }
-                historyList.add(msg);
+    private List<ChatMessage> loadRecentTurns(UUID uuid) {
+        List<ChatMessage> turns = new ArrayList<>();
+        if (database != null) {
+            for (DatabaseManager.ConversationTurnRecord record
+                    : database.getRecentConversationTurns(uuid, NPCProfile.MAX_CONVERSATION_TURNS)) {
+                turns.add(toTurn(record.role(), record.content()));
             }
         }
-        String historyJson = GSON.toJson(historyList);
+        return turns;
+    }
+
+    private DatabaseManager.NPCProfileRecord convertToRecord(NPCProfile profile) {
+        byte[] traits = TraitCodec.encode(profile.getPersonalityTraits());
 
         return new DatabaseManager.NPCProfileRecord(
             profile.getEntityUuid(),
@@ -146,55 +196,331 @@ public class NPCRegistry {
             profile.getAiProviderId(),
             profile.getPersonality(),
             profile.getSystemPrompt(),
-            traitsJson,
-            historyJson,
+            null, // traits are written as a blob only
+            traits,
+            null, // conversation turns live in the conversations log
+            profile.getWorldId(),
             null, // createdAt - not tracked in profile
             null  // updatedAt - will be set by database
         );
     }
 
+    private static DatabaseManager.NPCProfileSummary summarize(NPCProfile profile) {
+        return new DatabaseManager.NPCProfileSummary(
+                profile.getEntityUuid(), profile.getEntityName(), profile.isAiEnabled(), profile.getWorldId());
+    }
+
+    /**
+     * Map a stored turn to a chat message. Older rows used free-form role labels
+     * ("Player", "NPC", "Said to ...", "Heard from ...") split from a transcript.
+     */
+    private static ChatMessage toTurn(String role, String content) {
+        if (role == null) {
+            return ChatMessage.user(content);
+        }
+        switch (role) {
+            case "user":
+            case "Player":
+                return ChatMessage.user(content);
+            case "assistant":
+            case "NPC":
+                return ChatMessage.assistant(content);
+            default:
+                return role.startsWith("Said to")
+                        ? ChatMessage.assistant(role + ": " + content)
+                        : ChatMessage.user(role + ": " + content);
+        }
+    }
+
     /**
-     * Save NPC profiles to database.
+     * Write all pending changes to the database now.
      */
     public void save() {
-        // Saving is done immediately on each operation
+        flush();
+    }
+
+    /**
+     * Stop the periodic flusher, let queued profile reads finish and write
+     * everything still pending in one last flush. Call once nothing else
+     * changes profiles any more.
+     */
+    public void shutdown() {
+        flusher.shutdown();
+        try {
+            if (!flusher.awaitTermination(10, TimeUnit.SECONDS)) {
+                AINpcConnectorMod.LOGGER.warn("[AI NPC Connector] Persistence thread did not stop in time");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        flush();
     }
 
     /**
-     * Register or update an NPC profile.
+     * Write dirty profiles, new conversation turns and pending deletes in one
+     * transaction. Updates to the same NPC since the last flush are coalesced
+     * into a single row write; turns are appended to the log.
+     */
+    public synchronized void flush() {
+        if (database == null) {
+            return;
+        }
+
+        List<NPCProfile> flushed = new ArrayList<>();
+        List<DatabaseManager.NPCProfileRecord> saves = new ArrayList<>();
+        Map<NPCProfile, List<NPCProfile.LoggedTurn>> drainedTurns = new HashMap<>();
+        List<UUID> cleared = new ArrayList<>();
+        List<DatabaseManager.ConversationTurnRecord> turns = new ArrayList<>();
+        for (NPCProfile profile : profiles.values()) {
+            UUID uuid = profile.getEntityUuid();
+            if (profile.takeHistoryCleared()) {
+                cleared.add(uuid);
+            }
+            List<NPCProfile.LoggedTurn> logged = profile.drainUnsavedTurns();
+            if (!logged.isEmpty()) {
+                drainedTurns.put(profile, logged);
+                for (NPCProfile.LoggedTurn turn : logged) {
+                    turns.add(new DatabaseManager.ConversationTurnRecord(
+                            uuid, turn.turn().role().wireName(), turn.turn().content(), turn.timestamp()));
+                }
+            }
+
+            if (!profile.clearDirty()) {
+                continue;
+            }
+            try {
+                saves.add(convertToRecord(profile));
+                flushed.add(profile);
+            } catch (RuntimeException e) {
+                // Modified while serializing - try again next flush
+                profile.markDirty();
+            }
+        }
+        List<UUID> deletes = new ArrayList<>(pendingDeletes);
+        pendingDeletes.removeAll(deletes);
+
+        if (database.writeNPCProfiles(saves, deletes, cleared, turns)) {
+            for (DatabaseManager.NPCProfileRecord record : saves) {
+                if (profiles.containsKey(record.uuid())) {
+                    summaries.put(record.uuid(), new DatabaseManager.NPCProfileSummary(
+                            record.uuid(), record.entityName(), record.aiEnabled(), record.worldId()));
+                }
+            }
+            evictColdProfiles();
+        } else {
+            flushed.forEach(NPCProfile::markDirty);
+            for (NPCProfile profile : profiles.values()) {
+                List<NPCProfile.LoggedTurn> logged = drainedTurns.getOrDefault(profile, List.of());
+                boolean wasCleared = cleared.contains(profile.getEntityUuid());
+                if (wasCleared || !logged.isEmpty()) {
+                    profile.requeueUnsaved(logged, wasCleared);
+                }
+            }
+            for (UUID uuid : deletes) {
+                if (!profiles.containsKey(uuid)) {
+                    pendingDeletes.add(uuid);
+                }
+            }
+        }
+    }
+
+    /**
+     * Drop the least recently used profiles beyond the resident limit. Only
+     * profiles with nothing left to write and no loaded entity are evicted;
+     * they are read back from the database on the next lookup.
+     */
+    private void evictColdProfiles() {
+        int excess = profiles.size() - maxResidentProfiles();
+        if (excess <= 0) {
+            return;
+        }
+        List<NPCProfile> candidates = new ArrayList<>();
+        for (NPCProfile profile : profiles.values()) {
+            if (!pinned.contains(profile.getEntityUuid()) && !profile.isDirty() && !profile.hasUnsavedTurns()) {
+                candidates.add(profile);
+            }
+        }
+        candidates.sort(Comparator.comparingLong(NPCProfile::getLastAccessMillis));
+        int evicted = 0;
+        for (NPCProfile profile : candidates) {
+            if (evicted >= excess) {
+                break;
+            }
+            UUID uuid = profile.getEntityUuid();
+            if (profiles.remove(uuid, profile)) {
+                if (profile.isDirty() || profile.hasUnsavedTurns() || pinned.contains(uuid)) {
+                    // Changed or loaded while being evicted - keep it
+                    profiles.putIfAbsent(uuid, profile);
+                } else {
+                    evicted++;
+                }
+            }
+        }
+        if (evicted > 0) {
+            AINpcConnectorMod.LOGGER.debug("[AI NPC Connector] Evicted {} cold NPC profiles", evicted);
+        }
+    }
+
+    private void scheduleFlush() {
+        try {
+            flusher.schedule(() -> {
+                try {
+                    flush();
+                } catch (Exception e) {
+                    AINpcConnectorMod.LOGGER.error("[AI NPC Connector] NPC profile flush failed", e);
+                } finally {
+                    scheduleFlush();
+                }
+            }, flushIntervalMillis(), TimeUnit.MILLISECONDS);
+        } catch (RejectedExecutionException e) {
+            // Shut down; the final flush is done by shutdown()
+        }
+    }
+
+    private static long flushIntervalMillis() {
+        var configManager = AINpcConnectorMod.getConfigManager();
+        return configManager != null ? configManager.getConfig().getNpc().getProfileFlushIntervalMillis() : 2000;
+    }
+
+    private static int maxResidentProfiles() {
+        var configManager = AINpcConnectorMod.getConfigManager();
+        return configManager != null ? configManager.getConfig().getNpc().getMaxResidentProfiles() : 512;
+    }
+
+    /**
+     * Register or update an NPC profile. The write happens on the next flush.
      */
     public void register(NPCProfile profile) {
         profiles.put(profile.getEntityUuid(), profile);
+        summaries.put(profile.getEntityUuid(), summarize(profile));
+        pendingDeletes.remove(profile.getEntityUuid());
+        profile.markDirty();
+    }
 
-        if (database != null) {
-            database.saveNPCProfile(convertToRecord(profile));
+    /**
+     * Get a resident NPC profile by UUID, or null if it isn't in memory.
+     * Never touches the database, so it is safe on the server thread.
+     */
+    public NPCProfile getProfile(UUID uuid) {
+        NPCProfile profile = profiles.get(uuid);
+        if (profile != null) {
+            profile.touch();
         }
+        return profile;
     }
 
     /**
-     * Get an NPC profile by UUID.
+     * Get an NPC profile by UUID, reading it from the database if it isn't
+     * resident. Blocks until the read is done: not for the server thread.
      */
-    public NPCProfile getProfile(UUID uuid) {
-        return profiles.get(uuid);
+    public NPCProfile getOrLoadProfile(UUID uuid) {
+        NPCProfile profile = getProfile(uuid);
+        if (profile != null || !summaries.containsKey(uuid)) {
+            return profile;
+        }
+        return loadAsync(uuid).join();
     }
 
     /**
      * Get an NPC profile by entity, creating a new one if it doesn't exist.
+     * Returns null while a stored profile is still being read; the read is
+     * started if it isn't already.
      */
     public NPCProfile getOrCreateProfile(net.minecraft.entity.Entity entity) {
         UUID uuid = entity.getUuid();
-        NPCProfile profile = profiles.get(uuid);
+        NPCProfile profile = getProfile(uuid);
+        if (profile != null) {
+            return profile;
+        }
+        if (summaries.containsKey(uuid)) {
+            loadAsync(uuid);
+            return null;
+        }
+        return createIfAbsent(uuid, new NPCProfile(entity));
+    }
 
-        if (profile == null) {
-            profile = new NPCProfile(entity);
-            profiles.put(uuid, profile);
+    /**
+     * Get the profile of a loading NPC entity: resident, read from the database
+     * on the persistence thread, or created. The future may complete on the
+     * persistence thread.
+     */
+    public CompletableFuture<NPCProfile> loadProfileAsync(net.minecraft.entity.Entity entity) {
+        UUID uuid = entity.getUuid();
+        NPCProfile profile = getProfile(uuid);
+        if (profile != null) {
+            return CompletableFuture.completedFuture(profile);
+        }
+        // Built here, where the entity may be read, in case there is no stored row after all
+        NPCProfile created = new NPCProfile(entity);
+        if (!summaries.containsKey(uuid)) {
+            return CompletableFuture.completedFuture(createIfAbsent(uuid, created));
+        }
+        return loadAsync(uuid).thenApply(loaded -> loaded != null ? loaded : createIfAbsent(uuid, created));
+    }
 
-            if (database != null) {
-                database.saveNPCProfile(convertToRecord(profile));
+    private NPCProfile createIfAbsent(UUID uuid, NPCProfile created) {
+        // New profiles start dirty, so the next flush writes them
+        NPCProfile profile = profiles.computeIfAbsent(uuid, k -> created);
+        if (profile == created) {
+            summaries.put(uuid, summarize(created));
+            pendingDeletes.remove(uuid);
+        }
+        return profile;
+    }
+
+    /**
+     * Read a stored profile on the persistence thread, sharing a read already queued.
+     * Completes with null if the row is gone.
+     */
+    private CompletableFuture<NPCProfile> loadAsync(UUID uuid) {
+        synchronized (loading) {
+            CompletableFuture<NPCProfile> pending = loading.get(uuid);
+            if (pending != null) {
+                return pending;
+            }
+            CompletableFuture<NPCProfile> future = new CompletableFuture<>();
+            loading.put(uuid, future);
+            try {
+                flusher.execute(() -> {
+                    try {
+                        NPCProfile profile = profiles.computeIfAbsent(uuid, this::loadProfile);
+                        if (profile == null) {
+                            // The row is gone; forget it so later lookups don't query again
+                            summaries.remove(uuid);
+                        }
+                        finishLoad(uuid, future, profile, null);
+                    } catch (RuntimeException e) {
+                        finishLoad(uuid, future, null, e);
+                    }
+                });
+            } catch (RejectedExecutionException e) {
+                // Shutting down
+                finishLoad(uuid, future, null, null);
             }
+            return future;
         }
+    }
 
-        return profile;
+    private void finishLoad(UUID uuid, CompletableFuture<NPCProfile> future, NPCProfile profile, Throwable error) {
+        synchronized (loading) {
+            loading.remove(uuid, future);
+        }
+        if (error != null) {
+            future.completeExceptionally(error);
+        } else {
+            future.complete(profile);
+        }
+    }
+
+    /**
+     * Keep an NPC's profile resident while its entity is loaded.
+     */
+    public void pin(UUID uuid) {
+        pinned.add(uuid);
+    }
+
+    public void unpin(UUID uuid) {
+        pinned.remove(uuid);
     }
 
     /**
@@ -202,23 +528,46 @@ public class NPCRegistry {
      */
     public void remove(UUID uuid) {
         profiles.remove(uuid);
-
-        if (database != null) {
-            database.deleteNPCProfile(uuid);
-        }
+        summaries.remove(uuid);
+        pendingDeletes.add(uuid);
     }
 
     /**
-     * Get all registered profiles.
+     * Profiles currently in memory.
      */
-    public Collection<NPCProfile> getAllProfiles() {
+    public Collection<NPCProfile> getResidentProfiles() {
         return profiles.values();
     }
 
     /**
-     * Get the number of registered profiles.
+     * Summaries of all profiles sorted by name, one page at a time. Resident
+     * profiles are summarized as they are now, including unsaved changes.
+     */
+    public List<DatabaseManager.NPCProfileSummary> getSummaries(int offset, int limit) {
+        List<DatabaseManager.NPCProfileSummary> all = new ArrayList<>(summaries.size());
+        for (DatabaseManager.NPCProfileSummary summary : summaries.values()) {
+            NPCProfile profile = profiles.get(summary.uuid());
+            all.add(profile != null ? summarize(profile) : summary);
+        }
+        all.sort(Comparator.comparing(DatabaseManager.NPCProfileSummary::entityName,
+                        Comparator.nullsLast(String.CASE_INSENSITIVE_ORDER))
+                .thenComparing(DatabaseManager.NPCProfileSummary::uuid));
+        int from = Math.max(0, Math.min(offset, all.size()));
+        int to = Math.min(all.size(), from + Math.max(0, limit));
+        return new ArrayList<>(all.subList(from, to));
+    }
+
+    /**
+     * Get the number of registered profiles, resident or not.
      */
     public int size() {
+        return summaries.size();
+    }
+
+    /**
+     * Get the number of profiles in memory.
+     */
+    public int residentCount() {
         return profiles.size();
     }
 
@@ -226,21 +575,19 @@ public class NPCRegistry {
      * Check if a profile exists for the given UUID.
      */
     public boolean hasProfile(UUID uuid) {
-        return profiles.containsKey(uuid);
+        return summaries.containsKey(uuid) || profiles.containsKey(uuid);
     }
 
     /**
      * Clear all profiles.
      */
-    public void clear() {
+    public synchronized void clear() {
+        pendingDeletes.addAll(summaries.keySet());
+        pendingDeletes.addAll(profiles.keySet());
         profiles.clear();
-
-        if (database != null) {
-            // Clear all profiles from database
-            for (DatabaseManager.NPCProfileRecord record : database.getAllNPCProfiles()) {
-                database.deleteNPCProfile(record.uuid());
-            }
-        }
+        summaries.clear();
+        // Deleted in one transaction, together with their conversation logs
+        flush();
     }
 
     /**
@@ -0,0 +1,279 @@
+package com.ainpcconnector.npc;
+
+import it.unimi.dsi.fastutil.longs.Long2ObjectOpenHashMap;
+import net.minecraft.entity.Entity;
+import net.minecraft.registry.RegistryKey;
+import net.minecraft.server.network.ServerPlayerEntity;
+import net.minecraft.server.world.ServerWorld;
+import net.minecraft.world.World;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.function.Predicate;
+
+/**
+ * Grid-bucketed index of tracked NPCs and players per world.
+ * Entities are added and removed from the entity load/unload events and
+ * re-bucketed once per tick when they cross a cell boundary, so radius and
+ * nearest-neighbour queries only look at the cells the radius covers instead of
+ * every entity in the world.
+ * Not thread-safe: all calls must come from the server thread.
+ */
+public class NPCSpatialIndex {
+
+    private static NPCSpatialIndex instance;
+
+    // Cells are 16 blocks (one chunk) wide
+    private static final int CELL_SHIFT = 4;
+
+    /**
+     * A tracked entity and the cell it was last bucketed in.
+     */
+    public static final class Entry {
+        private final Entity entity;
+        private final ServerWorld world;
+        private final boolean player;
+        private long cell;
+
+        private Entry(Entity entity, ServerWorld world, boolean player) {
+            this.entity = entity;
+            this.world = world;
+            this.player = player;
+        }
+
+        public Entity getEntity() {
+            return entity;
+        }
+
+        public ServerWorld getWorld() {
+            return world;
+        }
+
+        public boolean isPlayer() {
+            return player;
+        }
+    }
+
+    private final Map<UUID, Entry> entries = new HashMap<>();
+    // Primitive long keys so cell lookups don't box
+    private final Map<RegistryKey<World>, Long2ObjectOpenHashMap<List<Entry>>> cells = new HashMap<>();
+
+    private NPCSpatialIndex() {
+    }
+
+    public static synchronized NPCSpatialIndex getInstance() {
+        if (instance == null) {
+            instance = new NPCSpatialIndex();
+        }
+        return instance;
+    }
+
+    /**
+     * Start tracking an entity in a world. Re-tracking moves it, e.g. after a dimension change.
+     */
+    public void track(Entity entity, ServerWorld world) {
+        untrack(entity.getUuid());
+
+        Entry entry = new Entry(entity, world, entity instanceof ServerPlayerEntity);
+        entry.cell = cellOf(entity.getX(), entity.getZ());
+        entries.put(entity.getUuid(), entry);
+        bucket(world.getRegistryKey(), entry.cell).add(entry);
+    }
+
+    public void untrack(UUID uuid) {
+        Entry entry = entries.remove(uuid);
+        if (entry != null) {
+            unbucket(entry);
+        }
+    }
+
+    /**
+     * Re-bucket entities that moved into another cell and drop removed ones.
+     * Called once per server tick.
+     */
+    public void update() {
+        Iterator<Entry> it = entries.values().iterator();
+        while (it.hasNext()) {
+            Entry entry = it.next();
+            if (entry.entity.isRemoved()) {
+                it.remove();
+                unbucket(entry);
+                continue;
+            }
+
+            long cell = cellOf(entry.entity.getX(), entry.entity.getZ());
+            if (cell != entry.cell) {
+                unbucket(entry);
+                entry.cell = cell;
+                bucket(entry.world.getRegistryKey(), cell).add(entry);
+            }
+        }
+    }
+
+    public Entry getEntry(UUID uuid) {
+        return entries.get(uuid);
+    }
+
+    /**
+     * Tracked entities within the radius of a point, in no particular order.
+     */
+    public List<Entity> queryRadius(ServerWorld world, double x, double y, double z, double radius,
+            Predicate<Entity> filter) {
+        List<Entity> result = new ArrayList<>();
+        Long2ObjectOpenHashMap<List<Entry>> worldCells = cells.get(world.getRegistryKey());
+        if (worldCells == null) {
+            return result;
+        }
+
+        double radiusSq = radius * radius;
+        int minX = cellCoord(x - radius);
+        int maxX = cellCoord(x + radius);
+        int minZ = cellCoord(z - radius);
+        int maxZ = cellCoord(z + radius);
+        for (int cx = minX; cx <= maxX; cx++) {
+            for (int cz = minZ; cz <= maxZ; cz++) {
+                List<Entry> bucket = worldCells.get(key(cx, cz));
+                if (bucket == null) {
+                    continue;
+                }
+                for (Entry entry : bucket) {
+                    Entity entity = entry.entity;
+                    if (!entity.isRemoved() && entity.squaredDistanceTo(x, y, z) < radiusSq
+                            && filter.test(entity)) {
+                        result.add(entity);
+                    }
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Tracked entities within the radius of another entity, excluding that entity.
+     */
+    public List<Entity> queryRadius(ServerWorld world, Entity center, double radius, Predicate<Entity> filter) {
+        UUID self = center.getUuid();
+        return queryRadius(world, center.getX(), center.getY(), center.getZ(), radius,
+                e -> !e.getUuid().equals(self) && filter.test(e));
+    }
+
+    /**
+     * Up to k tracked entities within the radius, nearest first.
+     */
+    public List<Entity> nearest(ServerWorld world, Entity center, double radius, int k, Predicate<Entity> filter) {
+        List<Entity> found = queryRadius(world, center, radius, filter);
+        if (found.size() > 1) {
+            found.sort((a, b) -> Double.compare(center.squaredDistanceTo(a), center.squaredDistanceTo(b)));
+        }
+        return found.size() > k ? found.subList(0, k) : found;
+    }
+
+    /**
+     * The nearest tracked entity within the radius of another entity, excluding
+     * that entity, or null. Does not allocate.
+     */
+    public Entity nearest(ServerWorld world, Entity center, double radius, Predicate<Entity> filter) {
+        return scan(world, center, radius, filter, false);
+    }
+
+    /**
+     * Whether any tracked entity other than the center is within the radius. Does not allocate.
+     */
+    public boolean anyWithin(ServerWorld world, Entity center, double radius, Predicate<Entity> filter) {
+        return scan(world, center, radius, filter, true) != null;
+    }
+
+    public int size() {
+        return entries.size();
+    }
+
+    public void clear() {
+        entries.clear();
+        cells.clear();
+    }
+
+    /**
+     * Nearest match around the center, or the first match if firstMatch is set.
+     * Written without iterators or lambdas since it runs for every NPC pass.
+     */
+    private Entity scan(ServerWorld world, Entity center, double radius, Predicate<Entity> filter,
+            boolean firstMatch) {
+        Long2ObjectOpenHashMap<List<Entry>> worldCells = cells.get(world.getRegistryKey());
+        if (worldCells == null) {
+            return null;
+        }
+
+        double x = center.getX();
+        double z = center.getZ();
+        double nearestDist = radius * radius;
+        Entity nearest = null;
+        int minX = cellCoord(x - radius);
+        int maxX = cellCoord(x + radius);
+        int minZ = cellCoord(z - radius);
+        int maxZ = cellCoord(z + radius);
+        for (int cx = minX; cx <= maxX; cx++) {
+            for (int cz = minZ; cz <= maxZ; cz++) {
+                List<Entry> bucket = worldCells.get(key(cx, cz));
+                if (bucket == null) {
+                    continue;
+                }
+                for (int i = 0, n = bucket.size(); i < n; i++) {
+                    Entity entity = bucket.get(i).entity;
+                    if (entity == center || entity.isRemoved()) {
+                        continue;
+                    }
+                    double dist = center.squaredDistanceTo(entity);
+                    if (dist < nearestDist && filter.test(entity)) {
+                        if (firstMatch) {
+                            return entity;
+                        }
+                        nearest = entity;
+                        nearestDist = dist;
+                    }
+                }
+            }
+        }
+        return nearest;
+    }
+
+    private List<Entry> bucket(RegistryKey<World> worldKey, long cell) {
+        Long2ObjectOpenHashMap<List<Entry>> worldCells = cells.computeIfAbsent(worldKey,
+                k -> new Long2ObjectOpenHashMap<>());
+        List<Entry> bucket = worldCells.get(cell);
+        if (bucket == null) {
+            bucket = new ArrayList<>(4);
+            worldCells.put(cell, bucket);
+        }
+        return bucket;
+    }
+
+    private void unbucket(Entry entry) {
+        Long2ObjectOpenHashMap<List<Entry>> worldCells = cells.get(entry.world.getRegistryKey());
+        if (worldCells == null) {
+            return;
+        }
+        List<Entry> bucket = worldCells.get(entry.cell);
+        if (bucket != null) {
+            bucket.remove(entry);
+            if (bucket.isEmpty()) {
+                worldCells.remove(entry.cell);
+            }
+        }
+    }
+
+    private static int cellCoord(double coordinate) {
+        return (int) Math.floor(coordinate) >> CELL_SHIFT;
+    }
+
+    private static long cellOf(double x, double z) {
+        return key(cellCoord(x), cellCoord(z));
+    }
+
+    private static long key(int cx, int cz) {
+        return ((long) cx << 32) | (cz & 0xFFFFFFFFL);
+    }
+}
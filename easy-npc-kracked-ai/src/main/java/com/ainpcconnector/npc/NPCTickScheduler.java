@@ -0,0 +1,171 @@
+package com.ainpcconnector.npc;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.function.Consumer;
+import java.util.function.ToIntFunction;
+
+/**
+ * Runs each NPC every few ticks on its own interval.
+ * NPCs sit in a timing wheel of tick buckets; after an NPC is processed it is
+ * put back into the bucket of its next due tick, so intervals can change from
+ * one pass to the next. Due NPCs are processed until the per-tick time budget
+ * is spent; the rest carry over to the next tick.
+ * Server thread only; the web server reads a snapshot published by NPCManager.
+ */
+class NPCTickScheduler {
+
+    // Longest interval the wheel can hold
+    static final int MAX_INTERVAL = 1023;
+    private static final int WHEEL_SIZE = MAX_INTERVAL + 1;
+    private static final int NOT_SCHEDULED = -1;
+
+    /**
+     * A scheduled NPC. The queued flag replaces a set of queued UUIDs so
+     * queueing doesn't allocate.
+     */
+    private static final class Task {
+        final UUID uuid;
+        boolean queued;
+        int bucket = NOT_SCHEDULED;
+
+        Task(UUID uuid) {
+            this.uuid = uuid;
+        }
+    }
+
+    private final List<Task>[] buckets;
+    private final Map<UUID, Task> tasks = new HashMap<>();
+    private final ArrayDeque<Task> runQueue = new ArrayDeque<>();
+    private int currentTick = 0;
+
+    // Stats, published to the web server through NPCManager's tick stats snapshot
+    private long lastTickNanos = 0;
+    private double averageTickNanos = 0;
+    private long maxTickNanos = 0;
+    private int lastProcessed = 0;
+    private int carriedOver = 0;
+    private long overBudgetTicks = 0;
+    private double averageInterval = 0;
+    private long windowMaxNanos = 0;
+    private int windowTicks = 0;
+
+    @SuppressWarnings("unchecked")
+    NPCTickScheduler() {
+        this.buckets = new List[WHEEL_SIZE];
+        for (int i = 0; i < WHEEL_SIZE; i++) {
+            buckets[i] = new ArrayList<>();
+        }
+    }
+
+    /**
+     * Schedule an NPC. Its first pass is spread over the given interval by UUID
+     * hash so NPCs loaded together don't all run on the same tick.
+     */
+    public void add(UUID uuid, int firstInterval) {
+        if (!tasks.containsKey(uuid)) {
+            Task task = new Task(uuid);
+            tasks.put(uuid, task);
+            schedule(task, 1 + Math.floorMod(uuid.hashCode(), clampInterval(firstInterval)));
+        }
+    }
+
+    public void remove(UUID uuid) {
+        Task task = tasks.remove(uuid);
+        if (task != null) {
+            if (task.queued) {
+                runQueue.remove(task);
+            } else if (task.bucket != NOT_SCHEDULED) {
+                buckets[task.bucket].remove(task);
+            }
+        }
+    }
+
+    /**
+     * Queue the NPCs due this tick and process as many as fit in the budget.
+     * At least one NPC is processed per tick so a single slow NPC cannot stall the rest.
+     * Each processed NPC is rescheduled after the interval the function returns for it.
+     */
+    public void tick(int serverTick, long budgetNanos, Consumer<UUID> task, ToIntFunction<UUID> intervalOf) {
+        currentTick = serverTick;
+        List<Task> due = buckets[Math.floorMod(serverTick, WHEEL_SIZE)];
+        for (int i = 0, n = due.size(); i < n; i++) {
+            Task scheduled = due.get(i);
+            scheduled.bucket = NOT_SCHEDULED;
+            scheduled.queued = true;
+            runQueue.add(scheduled);
+        }
+        due.clear();
+
+        long start = System.nanoTime();
+        long elapsed = 0;
+        int processed = 0;
+        long intervalSum = 0;
+        while (!runQueue.isEmpty() && (processed == 0 || elapsed < budgetNanos)) {
+            Task next = runQueue.poll();
+            next.queued = false;
+            task.accept(next.uuid);
+            // The task may have removed itself
+            if (tasks.get(next.uuid) == next) {
+                int interval = clampInterval(intervalOf.applyAsInt(next.uuid));
+                schedule(next, interval);
+                intervalSum += interval;
+            }
+            processed++;
+            elapsed = System.nanoTime() - start;
+        }
+
+        if (processed > 0) {
+            averageInterval = averageInterval * 0.95 + ((double) intervalSum / processed) * 0.05;
+        }
+        recordTick(elapsed, processed);
+    }
+
+    public int size() {
+        return tasks.size();
+    }
+
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("averageIntervalTicks", averageInterval);
+        stats.put("lastTickMillis", lastTickNanos / 1_000_000.0);
+        stats.put("averageTickMillis", averageTickNanos / 1_000_000.0);
+        stats.put("maxTickMillis", maxTickNanos / 1_000_000.0);
+        stats.put("lastProcessed", lastProcessed);
+        stats.put("carriedOver", carriedOver);
+        stats.put("overBudgetTicks", overBudgetTicks);
+        return stats;
+    }
+
+    private void schedule(Task task, int interval) {
+        task.bucket = Math.floorMod(currentTick + interval, WHEEL_SIZE);
+        buckets[task.bucket].add(task);
+    }
+
+    private void recordTick(long elapsed, int processed) {
+        lastTickNanos = elapsed;
+        averageTickNanos = averageTickNanos * 0.95 + elapsed * 0.05;
+        lastProcessed = processed;
+        carriedOver = runQueue.size();
+        if (!runQueue.isEmpty()) {
+            overBudgetTicks++;
+        }
+
+        // Max over the last 40 ticks
+        windowMaxNanos = Math.max(windowMaxNanos, elapsed);
+        if (++windowTicks >= 40) {
+            maxTickNanos = windowMaxNanos;
+            windowMaxNanos = 0;
+            windowTicks = 0;
+        }
+    }
+
+    private static int clampInterval(int interval) {
+        return Math.max(1, Math.min(MAX_INTERVAL, interval));
+    }
+}
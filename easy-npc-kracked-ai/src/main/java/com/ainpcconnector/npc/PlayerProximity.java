@@ -0,0 +1,298 @@
+package com.ainpcconnector.npc;
+
+import it.unimi.dsi.fastutil.longs.Long2IntOpenHashMap;
+import net.minecraft.entity.Entity;
+import net.minecraft.registry.RegistryKey;
+import net.minecraft.server.MinecraftServer;
+import net.minecraft.server.network.ServerPlayerEntity;
+import net.minecraft.server.world.ServerWorld;
+import net.minecraft.util.math.BlockPos;
+import net.minecraft.world.World;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Per-tick snapshot of player positions, bucketed by chunk section per world.
+ * NPC code asks it for the nearest player instead of calling getClosestPlayer
+ * over and over. NPCs can also watch a radius and get enter/leave events, so an
+ * NPC with nobody around can stay asleep until a player actually approaches.
+ * Not thread-safe: all calls must come from the server thread.
+ */
+public class PlayerProximity {
+
+    private static PlayerProximity instance;
+
+    // Sections are 16 blocks wide in every direction
+    private static final int SECTION_SHIFT = 4;
+    // Each watch is checked every this many ticks, staggered over the watches
+    private static final int WATCH_CHECK_INTERVAL = 5;
+
+    /**
+     * Receives enter/leave events for a watched radius.
+     */
+    public interface Listener {
+        void onPlayerEnter(UUID npc, ServerPlayerEntity player);
+
+        default void onPlayerLeave(UUID npc) {
+        }
+    }
+
+    /**
+     * Players of one world this tick. Sections chain player indices through next[]
+     * so rebuilding the snapshot every tick doesn't allocate.
+     */
+    private static final class WorldSnapshot {
+        ServerPlayerEntity[] players = new ServerPlayerEntity[8];
+        double[] xs = new double[8];
+        double[] ys = new double[8];
+        double[] zs = new double[8];
+        int[] next = new int[8];
+        int count;
+        final Long2IntOpenHashMap sections = new Long2IntOpenHashMap();
+
+        WorldSnapshot() {
+            sections.defaultReturnValue(-1);
+        }
+
+        void clear() {
+            Arrays.fill(players, 0, count, null);
+            count = 0;
+            sections.clear();
+        }
+
+        void add(ServerPlayerEntity player) {
+            if (count == players.length) {
+                int size = count * 2;
+                players = Arrays.copyOf(players, size);
+                xs = Arrays.copyOf(xs, size);
+                ys = Arrays.copyOf(ys, size);
+                zs = Arrays.copyOf(zs, size);
+                next = Arrays.copyOf(next, size);
+            }
+            int i = count++;
+            players[i] = player;
+            xs[i] = player.getX();
+            ys[i] = player.getY();
+            zs[i] = player.getZ();
+            long section = sectionOf(xs[i], ys[i], zs[i]);
+            next[i] = sections.get(section);
+            sections.put(section, i);
+        }
+    }
+
+    private static final class Watch {
+        final Entity entity;
+        final RegistryKey<World> world;
+        final double radius;
+        final Listener listener;
+        boolean inside;
+        boolean cancelled;
+
+        Watch(Entity entity, RegistryKey<World> world, double radius, Listener listener) {
+            this.entity = entity;
+            this.world = world;
+            this.radius = radius;
+            this.listener = listener;
+        }
+    }
+
+    private final Map<RegistryKey<World>, WorldSnapshot> snapshots = new HashMap<>();
+    private final Map<UUID, Watch> watches = new HashMap<>();
+    private final List<Watch> watchList = new ArrayList<>();
+    private int tick = 0;
+
+    private PlayerProximity() {
+    }
+
+    public static synchronized PlayerProximity getInstance() {
+        if (instance == null) {
+            instance = new PlayerProximity();
+        }
+        return instance;
+    }
+
+    /**
+     * Rebuild the snapshot of every world and fire due watch events.
+     * Called once per server tick before NPCs are processed.
+     */
+    public void update(MinecraftServer server) {
+        for (WorldSnapshot snapshot : snapshots.values()) {
+            snapshot.clear();
+        }
+        for (ServerWorld world : server.getWorlds()) {
+            List<ServerPlayerEntity> players = world.getPlayers();
+            if (players.isEmpty()) {
+                continue;
+            }
+            WorldSnapshot snapshot = snapshots.computeIfAbsent(world.getRegistryKey(), k -> new WorldSnapshot());
+            for (int i = 0, n = players.size(); i < n; i++) {
+                ServerPlayerEntity player = players.get(i);
+                if (!player.isSpectator() && player.isAlive()) {
+                    snapshot.add(player);
+                }
+            }
+        }
+
+        checkWatches();
+        tick++;
+    }
+
+    /**
+     * The nearest player within the radius of a point, or null.
+     */
+    public ServerPlayerEntity closest(ServerWorld world, double x, double y, double z, double radius) {
+        WorldSnapshot snapshot = snapshots.get(world.getRegistryKey());
+        if (snapshot == null) {
+            return null;
+        }
+        int index = nearestIndex(snapshot, x, y, z, radius);
+        return index >= 0 ? snapshot.players[index] : null;
+    }
+
+    public ServerPlayerEntity closest(ServerWorld world, Entity entity, double radius) {
+        return closest(world, entity.getX(), entity.getY(), entity.getZ(), radius);
+    }
+
+    /**
+     * Squared distance from a point to the nearest player within the radius,
+     * or Double.MAX_VALUE if there is none.
+     */
+    public double nearestDistanceSq(ServerWorld world, double x, double y, double z, double radius) {
+        WorldSnapshot snapshot = snapshots.get(world.getRegistryKey());
+        if (snapshot == null) {
+            return Double.MAX_VALUE;
+        }
+        int index = nearestIndex(snapshot, x, y, z, radius);
+        return index >= 0 ? distanceSq(snapshot, index, x, y, z) : Double.MAX_VALUE;
+    }
+
+    /**
+     * Watch the radius around an NPC. The listener gets onPlayerEnter when the
+     * first player comes within range and onPlayerLeave when the last one leaves.
+     * Replaces an existing watch of the same NPC.
+     */
+    public void watch(Entity entity, ServerWorld world, double radius, Listener listener) {
+        unwatch(entity.getUuid());
+        Watch watch = new Watch(entity, world.getRegistryKey(), radius, listener);
+        watches.put(entity.getUuid(), watch);
+        watchList.add(watch);
+    }
+
+    public void unwatch(UUID uuid) {
+        Watch watch = watches.remove(uuid);
+        if (watch != null) {
+            // Removed from the list on the next check
+            watch.cancelled = true;
+        }
+    }
+
+    public boolean isWatching(UUID uuid) {
+        return watches.containsKey(uuid);
+    }
+
+    public void clear() {
+        snapshots.clear();
+        watches.clear();
+        watchList.clear();
+    }
+
+    private void checkWatches() {
+        // Drop cancelled and removed watches first so listeners can unwatch freely
+        for (int i = watchList.size() - 1; i >= 0; i--) {
+            Watch watch = watchList.get(i);
+            if (watch.cancelled || watch.entity.isRemoved()) {
+                if (!watch.cancelled) {
+                    watches.remove(watch.entity.getUuid(), watch);
+                }
+                watchList.set(i, watchList.get(watchList.size() - 1));
+                watchList.remove(watchList.size() - 1);
+            }
+        }
+
+        // Iterate over a fixed count: listeners may add watches, which are checked next round
+        for (int i = tick % WATCH_CHECK_INTERVAL, n = watchList.size(); i < n; i += WATCH_CHECK_INTERVAL) {
+            Watch watch = watchList.get(i);
+            if (watch.cancelled) {
+                continue;
+            }
+            WorldSnapshot snapshot = snapshots.get(watch.world);
+            Entity entity = watch.entity;
+            int index = snapshot != null
+                    ? nearestIndex(snapshot, entity.getX(), entity.getY(), entity.getZ(), watch.radius)
+                    : -1;
+            if (index >= 0 && !watch.inside) {
+                watch.inside = true;
+                watch.listener.onPlayerEnter(entity.getUuid(), snapshot.players[index]);
+            } else if (index < 0 && watch.inside) {
+                watch.inside = false;
+                watch.listener.onPlayerLeave(entity.getUuid());
+            }
+        }
+    }
+
+    /**
+     * Index of the nearest player within the radius, or -1. Looks at the sections
+     * the radius covers, or at every player when that is fewer.
+     */
+    private static int nearestIndex(WorldSnapshot snapshot, double x, double y, double z, double radius) {
+        if (snapshot.count == 0) {
+            return -1;
+        }
+
+        double nearestDist = radius * radius;
+        int nearest = -1;
+        int minX = sectionCoord(x - radius);
+        int maxX = sectionCoord(x + radius);
+        int minY = sectionCoord(y - radius);
+        int maxY = sectionCoord(y + radius);
+        int minZ = sectionCoord(z - radius);
+        int maxZ = sectionCoord(z + radius);
+        long sectionCount = (long) (maxX - minX + 1) * (maxY - minY + 1) * (maxZ - minZ + 1);
+
+        if (sectionCount >= snapshot.count) {
+            for (int i = 0; i < snapshot.count; i++) {
+                double dist = distanceSq(snapshot, i, x, y, z);
+                if (dist < nearestDist) {
+                    nearest = i;
+                    nearestDist = dist;
+                }
+            }
+            return nearest;
+        }
+
+        for (int sx = minX; sx <= maxX; sx++) {
+            for (int sy = minY; sy <= maxY; sy++) {
+                for (int sz = minZ; sz <= maxZ; sz++) {
+                    for (int i = snapshot.sections.get(BlockPos.asLong(sx, sy, sz)); i >= 0; i = snapshot.next[i]) {
+                        double dist = distanceSq(snapshot, i, x, y, z);
+                        if (dist < nearestDist) {
+                            nearest = i;
+                            nearestDist = dist;
+                        }
+                    }
+                }
+            }
+        }
+        return nearest;
+    }
+
+    private static double distanceSq(WorldSnapshot snapshot, int i, double x, double y, double z) {
+        double dx = snapshot.xs[i] - x;
+        double dy = snapshot.ys[i] - y;
+        double dz = snapshot.zs[i] - z;
+        return dx * dx + dy * dy + dz * dz;
+    }
+
+    private static int sectionCoord(double coordinate) {
+        return (int) Math.floor(coordinate) >> SECTION_SHIFT;
+    }
+
+    private static long sectionOf(double x, double y, double z) {
+        return BlockPos.asLong(sectionCoord(x), sectionCoord(y), sectionCoord(z));
+    }
+}
@@ -0,0 +1,107 @@
+package com.ainpcconnector.npc;
+
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Compact binary encoding of personality traits, stored as a BLOB.
+ * Layout (version 1): a version byte, a bitmask of which fixed slots are
+ * present, one float32 per present slot, then the count of other traits
+ * followed by each as a length-prefixed UTF-8 name and a float32.
+ * Values are clamped to 0..1 anyway, so float32 loses nothing that matters.
+ */
+final class TraitCodec {
+
+    static final byte VERSION = 1;
+
+    // Traits every profile has get a slot instead of a name
+    private static final String[] SLOTS = { "friendliness", "curiosity", "aggression", "humor" };
+
+    private TraitCodec() {
+    }
+
+    static byte[] encode(Map<String, Double> traits) {
+        int mask = 0;
+        int size = 2 + Short.BYTES;
+        Map<String, byte[]> others = new LinkedHashMap<>();
+        for (Map.Entry<String, Double> entry : traits.entrySet()) {
+            if (entry.getValue() == null) {
+                continue;
+            }
+            int slot = slotOf(entry.getKey());
+            if (slot >= 0) {
+                mask |= 1 << slot;
+                size += Float.BYTES;
+            } else {
+                byte[] name = entry.getKey().getBytes(StandardCharsets.UTF_8);
+                if (name.length > 0xFFFF) {
+                    throw new IllegalArgumentException("Trait name too long: " + name.length + " bytes");
+                }
+                others.put(entry.getKey(), name);
+                size += Short.BYTES + name.length + Float.BYTES;
+            }
+        }
+        if (others.size() > 0xFFFF) {
+            throw new IllegalArgumentException("Too many traits: " + others.size());
+        }
+
+        ByteBuffer buffer = ByteBuffer.allocate(size);
+        buffer.put(VERSION);
+        buffer.put((byte) mask);
+        for (int slot = 0; slot < SLOTS.length; slot++) {
+            if ((mask & (1 << slot)) != 0) {
+                buffer.putFloat(traits.get(SLOTS[slot]).floatValue());
+            }
+        }
+        buffer.putShort((short) others.size());
+        for (Map.Entry<String, byte[]> entry : others.entrySet()) {
+            buffer.putShort((short) entry.getValue().length);
+            buffer.put(entry.getValue());
+            buffer.putFloat(traits.get(entry.getKey()).floatValue());
+        }
+        return buffer.array();
+    }
+
+    /**
+     * Decode a blob written by {@link #encode}. Throws IllegalArgumentException
+     * for an unknown version or a truncated blob.
+     */
+    static Map<String, Double> decode(byte[] data) {
+        try {
+            ByteBuffer buffer = ByteBuffer.wrap(data);
+            byte version = buffer.get();
+            if (version != VERSION) {
+                throw new IllegalArgumentException("Unknown trait encoding version " + version);
+            }
+            Map<String, Double> traits = new HashMap<>();
+            int mask = buffer.get() & 0xFF;
+            for (int slot = 0; slot < SLOTS.length; slot++) {
+                if ((mask & (1 << slot)) != 0) {
+                    traits.put(SLOTS[slot], (double) buffer.getFloat());
+                }
+            }
+            int count = buffer.getShort() & 0xFFFF;
+            for (int i = 0; i < count; i++) {
+                byte[] name = new byte[buffer.getShort() & 0xFFFF];
+                buffer.get(name);
+                traits.put(new String(name, StandardCharsets.UTF_8), (double) buffer.getFloat());
+            }
+            return traits;
+        } catch (BufferUnderflowException e) {
+            throw new IllegalArgumentException("Truncated trait blob", e);
+        }
+    }
+
+    private static int slotOf(String trait) {
+        for (int slot = 0; slot < SLOTS.length; slot++) {
+            if (SLOTS[slot].equals(trait)) {
+                return slot;
+            }
+        }
+        return -1;
+    }
+}
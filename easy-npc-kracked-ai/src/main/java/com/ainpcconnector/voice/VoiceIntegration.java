@@ -2,6 +2,7 @@ package com.ainpcconnector.voice;
 
 import com.ainpcconnector.ai.AIProvider;
 import com.ainpcconnector.ai.AIProviderFactory;
+import com.ainpcconnector.ai.AIRequestScheduler;
 import com.ainpcconnector.config.ConfigManager;
 import com.ainpcconnector.npc.NPCProfile;
 import com.ainpcconnector.npc.NPCRegistry;
@@ -45,7 +46,9 @@ public class VoiceIntegration {
 
         // Use the NPC's configured AI provider for TTS
         AIProvider aiProvider = AIProviderFactory.createForNPC(profile, configManager.getConfig());
-        aiProvider.generateSpeech(text).thenAccept(audioData -> {
+        // TTS does not count against the chat token budget, only the provider's concurrency
+        AIRequestScheduler.getInstance().submit(aiProvider, AIRequestScheduler.Priority.BACKGROUND,
+                entity.getUuid(), 0, () -> aiProvider.generateSpeech(text)).thenAccept(audioData -> {
             if (audioData != null && audioData.length > 0) {
                 processAndPlay(api, entity, audioData);
             } else {
@@ -105,6 +105,7 @@ public class WebServer {
 
         // NPC routes
         javalin.get("/api/npcs", createAuthHandler(ctx -> new NPCHandler().handleListNPCs(ctx)));
+        javalin.get("/api/npcs/scheduler", createAuthHandler(ctx -> new NPCHandler().handleTickStats(ctx)));
         javalin.get("/api/npcs/{id}", createAuthHandler(ctx -> new NPCHandler().handleGetNPC(ctx)));
         javalin.put("/api/npcs/{id}", createAuthHandler(ctx -> new NPCHandler().handleUpdateNPC(ctx)));
         javalin.delete("/api/npcs/{id}", createAuthHandler(ctx -> new NPCHandler().handleDeleteNPC(ctx)));
@@ -122,6 +123,9 @@ public class WebServer {
 
         // AI test routes
         javalin.post("/api/ai/test", createAuthHandler(ctx -> new AIHandler(configManager).handleTestConnection(ctx)));
+        javalin.get("/api/ai/scheduler", createAuthHandler(ctx -> new AIHandler(configManager).handleSchedulerStats(ctx)));
+        javalin.get("/api/ai/cache", createAuthHandler(ctx -> new AIHandler(configManager).handleCacheStats(ctx)));
+        javalin.delete("/api/ai/cache", createAdminHandler(ctx -> new AIHandler(configManager).handleClearCache(ctx)));
 
         // Start server
         javalin.start(bindAddress, port);
@@ -2,6 +2,8 @@ package com.ainpcconnector.web.handlers;
 
 import com.ainpcconnector.ai.AIProvider;
 import com.ainpcconnector.ai.AIProviderFactory;
+import com.ainpcconnector.ai.AIRequestScheduler;
+import com.ainpcconnector.ai.AIResponseCache;
 import com.ainpcconnector.config.ConfigManager;
 import com.ainpcconnector.config.ModConfig;
 import io.javalin.http.Context;
@@ -89,5 +91,30 @@ public class AIHandler {
         }
     }
 
+    /**
+     * Per-provider queue and in-flight counts of the request scheduler.
+     * GET /api/ai/scheduler
+     */
+    public void handleSchedulerStats(Context ctx) {
+        ctx.json(Map.of("providers", AIRequestScheduler.getInstance().getStats()));
+    }
+
+    /**
+     * Response cache hit/miss counters.
+     * GET /api/ai/cache
+     */
+    public void handleCacheStats(Context ctx) {
+        ctx.json(AIResponseCache.getInstance().getStats());
+    }
+
+    /**
+     * Clear the response cache (admin only).
+     * DELETE /api/ai/cache
+     */
+    public void handleClearCache(Context ctx) {
+        AIResponseCache.getInstance().clear();
+        ctx.json(Map.of("message", "Response cache cleared"));
+    }
+
     public record TestRequest(String providerId) {}
 }
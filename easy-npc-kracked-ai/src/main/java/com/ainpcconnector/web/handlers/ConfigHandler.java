@@ -1,9 +1,13 @@
 package com.ainpcconnector.web.handlers;
 
+import com.ainpcconnector.ai.AIProviderRegistry;
+import com.ainpcconnector.ai.AIResponseCache;
 import com.ainpcconnector.config.ConfigManager;
 import com.ainpcconnector.config.ModConfig;
 import io.javalin.http.Context;
 
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
 import java.util.UUID;
 
@@ -36,17 +40,47 @@ public class ConfigHandler {
                 "ai", Map.of(
                         "defaultProviderId",
                         config.getAi().getDefaultProviderId() != null ? config.getAi().getDefaultProviderId() : "",
+                        "streamResponses", config.getAi().isStreamResponses(),
+                        "schedulerQueueLimit", config.getAi().getSchedulerQueueLimit(),
+                        "responseCacheEnabled", config.getAi().isResponseCacheEnabled(),
+                        "responseCacheTtlSeconds", config.getAi().getResponseCacheTtlSeconds(),
+                        "responseCacheMaxEntries", config.getAi().getResponseCacheMaxEntries(),
+                        "responseCacheVariants", config.getAi().getResponseCacheVariants(),
+                        "historyTokenBudget", config.getAi().getHistoryTokenBudget(),
+                        "resilience", Map.of(
+                                "fallbackProviderIds", config.getAi().getFallbackProviderIds(),
+                                "maxRetries", config.getAi().getMaxRetries(),
+                                "retryBaseDelayMillis", config.getAi().getRetryBaseDelayMillis(),
+                                "maxRetryDelayMillis", config.getAi().getMaxRetryDelayMillis(),
+                                "hedgingEnabled", config.getAi().isHedgingEnabled(),
+                                "circuitFailureThreshold", config.getAi().getCircuitFailureThreshold(),
+                                "circuitOpenSeconds", config.getAi().getCircuitOpenSeconds()),
                         "providers", config.getAiProviders().stream()
                                 .map(p -> Map.of(
                                         "id", p.getId() != null ? p.getId() : "",
                                         "name", p.getName() != null ? p.getName() : "Unknown",
                                         "endpoint", p.getEndpoint() != null ? p.getEndpoint() : "",
                                         "model", p.getModel() != null ? p.getModel() : "",
+                                        "maxConcurrentRequests", p.getMaxConcurrentRequests(),
+                                        "tokensPerMinute", p.getTokensPerMinute(),
                                         "hasApiKey", p.getApiKey() != null && !p.getApiKey().isEmpty()))
                                 .toList()),
-                "npc", Map.of(
-                        "aiThinkIntervalTicks", config.getNpc().getAiThinkIntervalTicks(),
-                        "personalityEvolutionRate", config.getNpc().getPersonalityEvolutionRate()),
+                "npc", Map.ofEntries(
+                        Map.entry("aiThinkIntervalTicks", config.getNpc().getAiThinkIntervalTicks()),
+                        Map.entry("decisionIntervalTicks", config.getNpc().getDecisionIntervalTicks()),
+                        Map.entry("targetMspt", config.getNpc().getTargetMspt()),
+                        Map.entry("maxCadenceStretch", config.getNpc().getMaxCadenceStretch()),
+                        Map.entry("personalityEvolutionRate", config.getNpc().getPersonalityEvolutionRate()),
+                        Map.entry("batchNpcDialogue", config.getNpc().isBatchNpcDialogue()),
+                        Map.entry("dialogueBatchWindowTicks", config.getNpc().getDialogueBatchWindowTicks()),
+                        Map.entry("dialogueLineIntervalTicks", config.getNpc().getDialogueLineIntervalTicks()),
+                        Map.entry("tickBudgetMillis", config.getNpc().getTickBudgetMillis()),
+                        Map.entry("lodFullRadius", config.getNpc().getLodFullRadius()),
+                        Map.entry("lodReducedRadius", config.getNpc().getLodReducedRadius()),
+                        Map.entry("lodReducedInterval", config.getNpc().getLodReducedInterval()),
+                        Map.entry("maxPathfindsPerTick", config.getNpc().getMaxPathfindsPerTick()),
+                        Map.entry("profileFlushIntervalMillis", config.getNpc().getProfileFlushIntervalMillis()),
+                        Map.entry("maxResidentProfiles", config.getNpc().getMaxResidentProfiles())),
                 "voice", Map.of(
                         "enabled", config.getVoice().isEnabled(),
                         "ttsProvider",
@@ -80,6 +114,51 @@ public class ConfigHandler {
                 if (request.ai.defaultProviderId() != null) {
                     config.getAi().setDefaultProviderId(request.ai.defaultProviderId());
                 }
+                if (request.ai.streamResponses() != null) {
+                    config.getAi().setStreamResponses(request.ai.streamResponses());
+                }
+                if (request.ai.schedulerQueueLimit() != null) {
+                    config.getAi().setSchedulerQueueLimit(request.ai.schedulerQueueLimit());
+                }
+                if (request.ai.responseCacheEnabled() != null) {
+                    config.getAi().setResponseCacheEnabled(request.ai.responseCacheEnabled());
+                    if (!request.ai.responseCacheEnabled()) {
+                        AIResponseCache.getInstance().clear();
+                    }
+                }
+                if (request.ai.responseCacheTtlSeconds() != null) {
+                    config.getAi().setResponseCacheTtlSeconds(request.ai.responseCacheTtlSeconds());
+                }
+                if (request.ai.responseCacheMaxEntries() != null) {
+                    config.getAi().setResponseCacheMaxEntries(request.ai.responseCacheMaxEntries());
+                }
+                if (request.ai.responseCacheVariants() != null) {
+                    config.getAi().setResponseCacheVariants(request.ai.responseCacheVariants());
+                }
+                if (request.ai.historyTokenBudget() != null) {
+                    config.getAi().setHistoryTokenBudget(request.ai.historyTokenBudget());
+                }
+                if (request.ai.fallbackProviderIds() != null) {
+                    config.getAi().setFallbackProviderIds(new ArrayList<>(request.ai.fallbackProviderIds()));
+                }
+                if (request.ai.maxRetries() != null) {
+                    config.getAi().setMaxRetries(request.ai.maxRetries());
+                }
+                if (request.ai.retryBaseDelayMillis() != null) {
+                    config.getAi().setRetryBaseDelayMillis(request.ai.retryBaseDelayMillis());
+                }
+                if (request.ai.maxRetryDelayMillis() != null) {
+                    config.getAi().setMaxRetryDelayMillis(request.ai.maxRetryDelayMillis());
+                }
+                if (request.ai.hedgingEnabled() != null) {
+                    config.getAi().setHedgingEnabled(request.ai.hedgingEnabled());
+                }
+                if (request.ai.circuitFailureThreshold() != null) {
+                    config.getAi().setCircuitFailureThreshold(request.ai.circuitFailureThreshold());
+                }
+                if (request.ai.circuitOpenSeconds() != null) {
+                    config.getAi().setCircuitOpenSeconds(request.ai.circuitOpenSeconds());
+                }
             }
 
             // Update NPC config
@@ -87,9 +166,48 @@ public class ConfigHandler {
                 if (request.npc.aiThinkIntervalTicks() != null) {
                     config.getNpc().setAiThinkIntervalTicks(request.npc.aiThinkIntervalTicks());
                 }
+                if (request.npc.decisionIntervalTicks() != null) {
+                    config.getNpc().setDecisionIntervalTicks(request.npc.decisionIntervalTicks());
+                }
+                if (request.npc.targetMspt() != null) {
+                    config.getNpc().setTargetMspt(request.npc.targetMspt());
+                }
+                if (request.npc.maxCadenceStretch() != null) {
+                    config.getNpc().setMaxCadenceStretch(request.npc.maxCadenceStretch());
+                }
                 if (request.npc.personalityEvolutionRate() != null) {
                     config.getNpc().setPersonalityEvolutionRate(request.npc.personalityEvolutionRate());
                 }
+                if (request.npc.batchNpcDialogue() != null) {
+                    config.getNpc().setBatchNpcDialogue(request.npc.batchNpcDialogue());
+                }
+                if (request.npc.dialogueBatchWindowTicks() != null) {
+                    config.getNpc().setDialogueBatchWindowTicks(request.npc.dialogueBatchWindowTicks());
+                }
+                if (request.npc.dialogueLineIntervalTicks() != null) {
+                    config.getNpc().setDialogueLineIntervalTicks(request.npc.dialogueLineIntervalTicks());
+                }
+                if (request.npc.tickBudgetMillis() != null) {
+                    config.getNpc().setTickBudgetMillis(request.npc.tickBudgetMillis());
+                }
+                if (request.npc.lodFullRadius() != null) {
+                    config.getNpc().setLodFullRadius(request.npc.lodFullRadius());
+                }
+                if (request.npc.lodReducedRadius() != null) {
+                    config.getNpc().setLodReducedRadius(request.npc.lodReducedRadius());
+                }
+                if (request.npc.lodReducedInterval() != null) {
+                    config.getNpc().setLodReducedInterval(request.npc.lodReducedInterval());
+                }
+                if (request.npc.maxPathfindsPerTick() != null) {
+                    config.getNpc().setMaxPathfindsPerTick(request.npc.maxPathfindsPerTick());
+                }
+                if (request.npc.profileFlushIntervalMillis() != null) {
+                    config.getNpc().setProfileFlushIntervalMillis(request.npc.profileFlushIntervalMillis());
+                }
+                if (request.npc.maxResidentProfiles() != null) {
+                    config.getNpc().setMaxResidentProfiles(request.npc.maxResidentProfiles());
+                }
             }
 
             // Update voice config
@@ -132,6 +250,12 @@ public class ConfigHandler {
             provider.setApiKey(request.apiKey());
             provider.setEndpoint(request.endpoint());
             provider.setModel(request.model());
+            if (request.maxConcurrentRequests() != null) {
+                provider.setMaxConcurrentRequests(request.maxConcurrentRequests());
+            }
+            if (request.tokensPerMinute() != null) {
+                provider.setTokensPerMinute(request.tokensPerMinute());
+            }
 
             configManager.saveAIProvider(provider);
 
@@ -169,8 +293,15 @@ public class ConfigHandler {
             if (request.model() != null) {
                 provider.setModel(request.model());
             }
+            if (request.maxConcurrentRequests() != null) {
+                provider.setMaxConcurrentRequests(request.maxConcurrentRequests());
+            }
+            if (request.tokensPerMinute() != null) {
+                provider.setTokensPerMinute(request.tokensPerMinute());
+            }
 
             configManager.saveAIProvider(provider);
+            AIProviderRegistry.getInstance().invalidate(id);
 
             ctx.json(Map.of("message", "Provider updated successfully"));
         } catch (Exception e) {
@@ -200,6 +331,7 @@ public class ConfigHandler {
 
             configManager.deleteAIProvider(id);
             configManager.updateConfig(config);
+            AIProviderRegistry.getInstance().invalidate(id);
 
             ctx.json(Map.of("message", "Provider deleted successfully"));
         } catch (Exception e) {
@@ -221,12 +353,39 @@ public class ConfigHandler {
     }
 
     public record AIUpdate(
-            String defaultProviderId) {
+            String defaultProviderId,
+            Boolean streamResponses,
+            Integer schedulerQueueLimit,
+            Boolean responseCacheEnabled,
+            Integer responseCacheTtlSeconds,
+            Integer responseCacheMaxEntries,
+            Integer responseCacheVariants,
+            Integer historyTokenBudget,
+            List<String> fallbackProviderIds,
+            Integer maxRetries,
+            Integer retryBaseDelayMillis,
+            Integer maxRetryDelayMillis,
+            Boolean hedgingEnabled,
+            Integer circuitFailureThreshold,
+            Integer circuitOpenSeconds) {
     }
 
     public record NPCUpdate(
             Integer aiThinkIntervalTicks,
-            Double personalityEvolutionRate) {
+            Integer decisionIntervalTicks,
+            Double targetMspt,
+            Double maxCadenceStretch,
+            Double personalityEvolutionRate,
+            Boolean batchNpcDialogue,
+            Integer dialogueBatchWindowTicks,
+            Integer dialogueLineIntervalTicks,
+            Double tickBudgetMillis,
+            Integer lodFullRadius,
+            Integer lodReducedRadius,
+            Integer lodReducedInterval,
+            Integer maxPathfindsPerTick,
+            Integer profileFlushIntervalMillis,
+            Integer maxResidentProfiles) {
     }
 
     public record VoiceUpdate(
@@ -238,6 +397,8 @@ public class ConfigHandler {
             String name,
             String apiKey,
             String endpoint,
-            String model) {
+            String model,
+            Integer maxConcurrentRequests,
+            Integer tokensPerMinute) {
     }
 }
@@ -1,5 +1,7 @@
 package com.ainpcconnector.web.handlers;
 
+import com.ainpcconnector.AINpcConnectorMod;
+import com.ainpcconnector.npc.NPCManager;
 import com.ainpcconnector.npc.NPCProfile;
 import com.ainpcconnector.npc.NPCRegistry;
 import io.javalin.http.Context;
@@ -18,12 +20,44 @@ public class NPCHandler {
         this.registry = NPCRegistry.getInstance();
     }
 
+    private static final int DEFAULT_PAGE_SIZE = 100;
+    private static final int MAX_PAGE_SIZE = 500;
+
     /**
-     * List all NPCs.
-     * GET /api/npcs
+     * List NPC summaries (uuid, name, AI flag, world), one page at a time.
+     * Full profiles are fetched per NPC.
+     * GET /api/npcs?offset=0&limit=100
      */
     public void handleListNPCs(Context ctx) {
-        ctx.json(registry.getAllProfiles());
+        try {
+            int offset = Math.max(0, intParam(ctx, "offset", 0));
+            int limit = Math.max(1, Math.min(MAX_PAGE_SIZE, intParam(ctx, "limit", DEFAULT_PAGE_SIZE)));
+            ctx.json(Map.of(
+                    "total", registry.size(),
+                    "offset", offset,
+                    "limit", limit,
+                    "npcs", registry.getSummaries(offset, limit)));
+        } catch (NumberFormatException e) {
+            ctx.status(400).json(Map.of("error", "Invalid offset or limit"));
+        }
+    }
+
+    private static int intParam(Context ctx, String name, int defaultValue) {
+        String value = ctx.queryParam(name);
+        return value != null && !value.isBlank() ? Integer.parseInt(value.trim()) : defaultValue;
+    }
+
+    /**
+     * Per-tick cost of NPC processing.
+     * GET /api/npcs/scheduler
+     */
+    public void handleTickStats(Context ctx) {
+        NPCManager npcManager = AINpcConnectorMod.getNpcManager();
+        if (npcManager == null) {
+            ctx.status(503).json(Map.of("error", "NPC manager not initialized"));
+            return;
+        }
+        ctx.json(npcManager.getTickStats());
     }
 
     /**
@@ -35,7 +69,7 @@ public class NPCHandler {
             String idStr = ctx.pathParam("id");
             UUID id = UUID.fromString(idStr);
 
-            NPCProfile profile = registry.getProfile(id);
+            NPCProfile profile = registry.getOrLoadProfile(id);
             if (profile == null) {
                 ctx.status(404).json(Map.of("error", "NPC not found"));
                 return;
@@ -57,7 +91,7 @@ public class NPCHandler {
             String idStr = ctx.pathParam("id");
             UUID id = UUID.fromString(idStr);
 
-            NPCProfile existingProfile = registry.getProfile(id);
+            NPCProfile existingProfile = registry.getOrLoadProfile(id);
             if (existingProfile == null) {
                 ctx.status(404).json(Map.of("error", "NPC not found"));
                 return;
@@ -5,6 +5,8 @@ const API_BASE = '/api';
 let authToken = localStorage.getItem('authToken');
 let currentUser = null;
 let currentNPC = null;
+let npcOffset = 0;
+const NPC_PAGE_SIZE = 100;
 let config = null;
 let providers = [];
 let currentProvider = null;
@@ -41,7 +43,9 @@ function initEventListeners() {
     document.getElementById('logout-btn').addEventListener('click', handleLogout);
 
     // NPCs
-    document.getElementById('refresh-npcs-btn').addEventListener('click', loadNPCs);
+    document.getElementById('refresh-npcs-btn').addEventListener('click', () => loadNPCs());
+    document.getElementById('npcs-prev-btn').addEventListener('click', () => loadNPCs(npcOffset - NPC_PAGE_SIZE));
+    document.getElementById('npcs-next-btn').addEventListener('click', () => loadNPCs(npcOffset + NPC_PAGE_SIZE));
 
     // Config
     document.getElementById('save-config-btn').addEventListener('click', saveConfig);
@@ -215,53 +219,60 @@ function switchTab(tabName) {
     if (tabName === 'users' && currentUser.role === 'ADMIN') loadUsers();
 }
 
-// Load NPCs
-async function loadNPCs() {
+// Load one page of NPC summaries; full profiles are fetched when a card is opened
+async function loadNPCs(offset = npcOffset) {
     try {
-        const response = await apiCall('/npcs');
-        const npcs = await response.json();
+        const response = await apiCall(`/npcs?offset=${Math.max(0, offset)}&limit=${NPC_PAGE_SIZE}`);
+        const page = await response.json();
+
+        // The last NPC of a page was deleted - step back a page
+        if (page.npcs.length === 0 && page.offset > 0 && page.total > 0) {
+            return loadNPCs(Math.max(0, page.total - NPC_PAGE_SIZE));
+        }
+        npcOffset = page.offset;
 
         const npcsList = document.getElementById('npcs-list');
         const noNPCs = document.getElementById('no-npcs');
+        const pager = document.getElementById('npcs-pager');
 
-        if (npcs.length === 0) {
+        if (page.npcs.length === 0) {
             npcsList.innerHTML = '';
             noNPCs.classList.remove('hidden');
+            pager.classList.add('hidden');
             return;
         }
 
         noNPCs.classList.add('hidden');
-        npcsList.innerHTML = npcs.map(npc => createNPCCard(npc)).join('');
+        npcsList.innerHTML = page.npcs.map(npc => createNPCCard(npc)).join('');
+
+        pager.classList.toggle('hidden', page.total <= page.limit);
+        document.getElementById('npcs-page-info').textContent =
+            `${page.offset + 1}-${page.offset + page.npcs.length} of ${page.total}`;
+        document.getElementById('npcs-prev-btn').disabled = page.offset === 0;
+        document.getElementById('npcs-next-btn').disabled = page.offset + page.npcs.length >= page.total;
     } catch (error) {
         console.error('Failed to load NPCs:', error);
         showToast('Failed to load NPCs', 'error');
     }
 }
 
-// Create NPC Card
+// Create NPC Card from a summary (uuid, entityName, aiEnabled, worldId)
 function createNPCCard(npc) {
-    const statusClass = npc.status ? npc.status.toLowerCase() : 'idle';
+    const statusClass = npc.aiEnabled ? 'idle' : 'offline';
     const aiEnabled = npc.aiEnabled ? 'Matrix Active' : 'Matrix Offline';
-    const traits = npc.personalityTraits || {};
 
     return `
-        <div class="npc-card" data-uuid="${npc.entityUuid}">
+        <div class="npc-card" data-uuid="${npc.uuid}">
             <div class="npc-card-header">
                 <div class="npc-name">${escapeHtml(npc.entityName)}</div>
                 <div class="npc-status ${statusClass}">
                     <div class="status-dot"></div>
-                    ${npc.status || 'Idle'}
+                    ${npc.aiEnabled ? 'Online' : 'Offline'}
                 </div>
             </div>
             <div class="npc-info">
-                <p>Type: ${escapeHtml(npc.entityType || 'Unknown')}</p>
+                <p>World: ${escapeHtml(npc.worldId || 'Unknown')}</p>
                 <p>State: ${aiEnabled}</p>
-                ${npc.personality ? `<p class="personality-quote">"${escapeHtml(npc.personality)}"</p>` : ''}
-            </div>
-            <div class="npc-traits">
-                <span class="trait-badge">Soc: ${(traits.friendliness || 0).toFixed(1)}</span>
-                <span class="trait-badge">Cur: ${(traits.curiosity || 0).toFixed(1)}</span>
-                <span class="trait-badge">Wit: ${(traits.humor || 0).toFixed(1)}</span>
             </div>
         </div>
     `;
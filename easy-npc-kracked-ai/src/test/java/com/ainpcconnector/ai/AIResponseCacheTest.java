@@ -0,0 +1,122 @@
+package com.ainpcconnector.ai;
+
+import com.ainpcconnector.config.ModConfig;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class AIResponseCacheTest {
+
+    private final ModConfig.AIConfig config = new ModConfig().getAi();
+    private long now = 1_000_000;
+    private final AIResponseCache cache = new AIResponseCache(() -> config, () -> now);
+
+    @BeforeEach
+    void configure() {
+        config.setResponseCacheEnabled(true);
+        config.setResponseCacheTtlSeconds(10);
+        config.setResponseCacheMaxEntries(2);
+        config.setResponseCacheVariants(1);
+    }
+
+    private static AIResponseCache.Key key(String message) {
+        return new AIResponseCache.Key("openai", "gpt-4o-mini", "system", "history", message);
+    }
+
+    private int size() {
+        return (Integer) cache.getStats().get("size");
+    }
+
+    @Test
+    void missesUntilVariantPoolIsFull() {
+        config.setResponseCacheVariants(2);
+        cache.put(key("hi"), "Hello!");
+        assertNull(cache.get(key("hi")));
+
+        cache.put(key("hi"), "Hey there.");
+        assertTrue(List.of("Hello!", "Hey there.").contains(cache.get(key("hi"))));
+    }
+
+    @Test
+    void ignoresDuplicateAndBlankResponses() {
+        config.setResponseCacheVariants(2);
+        cache.put(key("hi"), "Hello!");
+        cache.put(key("hi"), "Hello!");
+        cache.put(key("hi"), "  ");
+        assertNull(cache.get(key("hi")));
+    }
+
+    @Test
+    void expiresAfterTtl() {
+        cache.put(key("hi"), "Hello!");
+        assertEquals("Hello!", cache.get(key("hi")));
+
+        now += 10_000;
+        assertNull(cache.get(key("hi")));
+    }
+
+    @Test
+    void putStartsFreshPoolForExpiredEntry() {
+        cache.put(key("hi"), "Hello!");
+        now += 10_000;
+        cache.put(key("hi"), "Good evening.");
+        assertEquals("Good evening.", cache.get(key("hi")));
+    }
+
+    @Test
+    void expiredEntriesDoNotPushOutLiveOnes() {
+        cache.put(key("a"), "A");
+        now += 1_000;
+        cache.put(key("b"), "B");
+        now += 4_000;
+        // Touch a so b is the least recently used entry
+        assertEquals("A", cache.get(key("a")));
+
+        // a has expired, b is still live
+        now += 5_500;
+        cache.put(key("c"), "C");
+
+        assertEquals("B", cache.get(key("b")));
+        assertEquals("C", cache.get(key("c")));
+        assertEquals(2, size());
+    }
+
+    @Test
+    void periodicallyPurgesExpiredEntries() {
+        config.setResponseCacheMaxEntries(100);
+        cache.put(key("a"), "A");
+        cache.put(key("b"), "B");
+        assertEquals(2, size());
+
+        now += 31_000;
+        cache.put(key("c"), "C");
+        assertEquals(1, size());
+    }
+
+    @Test
+    void evictsLeastRecentlyUsedBeyondBound() {
+        cache.put(key("a"), "A");
+        cache.put(key("b"), "B");
+        assertEquals("A", cache.get(key("a")));
+        cache.put(key("c"), "C");
+
+        assertNull(cache.get(key("b")));
+        assertEquals("A", cache.get(key("a")));
+        assertEquals("C", cache.get(key("c")));
+    }
+
+    @Test
+    void countsHitsAndMisses() {
+        cache.put(key("a"), "A");
+        cache.get(key("a"));
+        cache.get(key("missing"));
+
+        assertEquals(1L, cache.getStats().get("hits"));
+        assertEquals(1L, cache.getStats().get("misses"));
+    }
+}
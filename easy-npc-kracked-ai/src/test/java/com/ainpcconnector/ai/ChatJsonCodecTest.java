@@ -0,0 +1,131 @@
+package com.ainpcconnector.ai;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import okhttp3.RequestBody;
+import okio.Buffer;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ChatJsonCodecTest {
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    private static JsonNode encode(RequestBody body) throws IOException {
+        Buffer buffer = new Buffer();
+        body.writeTo(buffer);
+        return MAPPER.readTree(buffer.readUtf8());
+    }
+
+    @Test
+    void encodesChatCompletionRequest() throws IOException {
+        List<ChatMessage> history = List.of(ChatMessage.user("Hi"), ChatMessage.assistant("Hello, traveler."));
+        JsonNode root = encode(ChatJsonCodec.chatCompletionRequest("gpt-4o-mini", "You are a villager.",
+                history, "Where is the mine?", true, 300));
+
+        assertEquals("gpt-4o-mini", root.get("model").asText());
+        assertTrue(root.get("stream").asBoolean());
+        assertEquals(300, root.get("max_tokens").asInt());
+
+        JsonNode messages = root.get("messages");
+        assertEquals(4, messages.size());
+        assertEquals("system", messages.get(0).get("role").asText());
+        assertEquals("You are a villager.", messages.get(0).get("content").asText());
+        assertEquals("user", messages.get(1).get("role").asText());
+        assertEquals("assistant", messages.get(2).get("role").asText());
+        assertEquals("Hello, traveler.", messages.get(2).get("content").asText());
+        assertEquals("Where is the mine?", messages.get(3).get("content").asText());
+    }
+
+    @Test
+    void omitsStreamFlagWhenNotStreaming() throws IOException {
+        JsonNode root = encode(ChatJsonCodec.chatCompletionRequest("m", "s", List.of(), "u", false, 500));
+        assertFalse(root.has("stream"));
+    }
+
+    @Test
+    void escapesEverythingJsonRequires() throws IOException {
+        String tricky = "quote \" backslash \\ newline \n tab \t bell \u0007 emoji 😀 café";
+        JsonNode root = encode(ChatJsonCodec.chatCompletionRequest("m", tricky, List.of(), tricky, false, 500));
+        assertEquals(tricky, root.get("messages").get(0).get("content").asText());
+        assertEquals(tricky, root.get("messages").get(1).get("content").asText());
+    }
+
+    @Test
+    void encodesNullContentAsEmpty() throws IOException {
+        JsonNode root = encode(ChatJsonCodec.chatCompletionRequest("m", null, List.of(), null, false, 500));
+        assertEquals("", root.get("messages").get(0).get("content").asText());
+        assertEquals("", root.get("messages").get(1).get("content").asText());
+    }
+
+    @Test
+    void encodesMessagesRequestWithTopLevelSystem() throws IOException {
+        JsonNode root = encode(ChatJsonCodec.messagesRequest("claude", null,
+                List.of(ChatMessage.user("Hi")), false, 200));
+
+        assertEquals("", root.get("system").asText());
+        assertEquals(200, root.get("max_tokens").asInt());
+        assertEquals(1, root.get("messages").size());
+        assertEquals("user", root.get("messages").get(0).get("role").asText());
+    }
+
+    @Test
+    void encodesSpeechRequest() throws IOException {
+        JsonNode root = encode(ChatJsonCodec.speechRequest("tts-1", "Hello", "alloy", "mp3"));
+        assertEquals("tts-1", root.get("model").asText());
+        assertEquals("Hello", root.get("input").asText());
+        assertEquals("alloy", root.get("voice").asText());
+        assertEquals("mp3", root.get("response_format").asText());
+    }
+
+    @Test
+    void readsNestedPathSkippingOtherFields() throws IOException {
+        String json = "{\"id\":\"x\",\"usage\":{\"tokens\":[1,2,{\"a\":3}]},"
+                + "\"choices\":[{\"message\":{\"content\":\"skip\"}},{\"message\":{\"role\":\"assistant\","
+                + "\"content\":\"Hello \\\"there\\\"\"}}]}";
+        assertEquals("Hello \"there\"", ChatJsonCodec.readText(json, "choices", 1, "message", "content"));
+        assertEquals("skip", ChatJsonCodec.readText(json, "choices", 0, "message", "content"));
+    }
+
+    @Test
+    void returnsNullForMissingOrNonScalarValues() throws IOException {
+        String json = "{\"choices\":[{\"delta\":{\"content\":null,\"tool\":{}}}]}";
+        assertNull(ChatJsonCodec.readText(json, "choices", 0, "delta", "content"));
+        assertNull(ChatJsonCodec.readText(json, "choices", 0, "delta", "tool"));
+        assertNull(ChatJsonCodec.readText(json, "choices", 1, "delta", "content"));
+        assertNull(ChatJsonCodec.readText(json, "missing"));
+        assertNull(ChatJsonCodec.readText(json, 0));
+        assertNull(ChatJsonCodec.readText("", "choices"));
+    }
+
+    @Test
+    void readsNumbersAsText() throws IOException {
+        assertEquals("42", ChatJsonCodec.readText("{\"n\":42}", "n"));
+    }
+
+    @Test
+    void readsFromStreamAndDrainsTheRest() throws IOException {
+        byte[] body = "{\"content\":[{\"type\":\"text\",\"text\":\"Hi\"}],\"stop_reason\":\"end_turn\"}"
+                .getBytes(StandardCharsets.UTF_8);
+        InputStream in = new ByteArrayInputStream(body);
+        assertEquals("Hi", ChatJsonCodec.readText(in, "content", 0, "text"));
+        assertEquals(-1, in.read());
+    }
+
+    @Test
+    void detectsTopLevelFieldsOnly() throws IOException {
+        assertTrue(ChatJsonCodec.hasField("{\"id\":1,\"error\":{\"message\":\"x\"}}", "error"));
+        assertFalse(ChatJsonCodec.hasField("{\"choices\":[{\"error\":1}],\"meta\":{\"error\":2}}", "error"));
+        assertFalse(ChatJsonCodec.hasField("[1,2]", "error"));
+    }
+}
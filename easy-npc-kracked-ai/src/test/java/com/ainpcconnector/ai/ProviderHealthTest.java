@@ -0,0 +1,75 @@
+package com.ainpcconnector.ai;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ProviderHealthTest {
+
+    private final ProviderHealth health = new ProviderHealth();
+
+    @Test
+    void opensAfterConsecutiveFailures() {
+        health.onFailure(3);
+        health.onFailure(3);
+        assertEquals(ProviderHealth.State.CLOSED, health.getState());
+
+        health.onFailure(3);
+        assertEquals(ProviderHealth.State.OPEN, health.getState());
+        assertFalse(health.allowRequest(60_000));
+    }
+
+    @Test
+    void successResetsFailureCount() {
+        health.onFailure(2);
+        health.onSuccess(100);
+        health.onFailure(2);
+        assertEquals(ProviderHealth.State.CLOSED, health.getState());
+    }
+
+    @Test
+    void letsOneProbeThroughWhenHalfOpen() {
+        health.onFailure(1);
+        assertTrue(health.allowRequest(0));
+        assertEquals(ProviderHealth.State.HALF_OPEN, health.getState());
+        assertFalse(health.allowRequest(0));
+
+        health.onSuccess(100);
+        assertEquals(ProviderHealth.State.CLOSED, health.getState());
+        assertTrue(health.allowRequest(0));
+    }
+
+    @Test
+    void failedProbeReopens() {
+        health.onFailure(5);
+        health.onFailure(5);
+        health.onFailure(5);
+        health.onFailure(5);
+        health.onFailure(5);
+        assertTrue(health.allowRequest(0));
+
+        health.onFailure(5);
+        assertEquals(ProviderHealth.State.OPEN, health.getState());
+    }
+
+    @Test
+    void abandonedProbeFreesTheSlot() {
+        health.onFailure(1);
+        assertTrue(health.allowRequest(0));
+        health.onAbandoned();
+        assertTrue(health.allowRequest(0));
+    }
+
+    @Test
+    void reportsP95OnlyWithEnoughSamples() {
+        for (int i = 1; i < 20; i++) {
+            health.onSuccess(i * 10);
+        }
+        assertEquals(-1, health.getP95LatencyMillis());
+
+        health.onSuccess(200);
+        assertEquals(190, health.getP95LatencyMillis());
+    }
+}
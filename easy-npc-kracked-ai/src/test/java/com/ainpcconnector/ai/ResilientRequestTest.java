@@ -0,0 +1,191 @@
+package com.ainpcconnector.ai;
+
+import com.ainpcconnector.config.ModConfig;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ResilientRequestTest {
+
+    private final AIRequestScheduler scheduler = AIRequestScheduler.getInstance();
+    private final ModConfig.AIConfig config = new ModConfig.AIConfig();
+    // Provider ids are unique per test so circuit state doesn't leak between tests
+    private final AIProvider primary = new StubProvider("primary-" + UUID.randomUUID());
+    private final AIProvider fallback = new StubProvider("fallback-" + UUID.randomUUID());
+
+    private final Map<AIProvider, AtomicInteger> calls = new ConcurrentHashMap<>();
+    private final List<String> deltas = new ArrayList<>();
+
+    @BeforeEach
+    void configure() {
+        config.setMaxRetries(2);
+        config.setRetryBaseDelayMillis(1);
+        config.setMaxRetryDelayMillis(50);
+        config.setCircuitFailureThreshold(5);
+        config.setCircuitOpenSeconds(60);
+        config.setHedgingEnabled(false);
+    }
+
+    /**
+     * Start a request whose calls are answered by the given function, per provider and call number.
+     */
+    private CompletableFuture<String> run(Function<Call, CompletableFuture<String>> answer) {
+        return new ResilientRequest(scheduler, List.of(primary, fallback), AIRequestScheduler.Priority.PLAYER,
+                UUID.randomUUID(), 100, config,
+                (provider, sink) -> answer.apply(new Call(provider,
+                        calls.computeIfAbsent(provider, p -> new AtomicInteger()).incrementAndGet(), sink)),
+                deltas::add).start();
+    }
+
+    private int callCount(AIProvider provider) {
+        AtomicInteger count = calls.get(provider);
+        return count != null ? count.get() : 0;
+    }
+
+    private static String await(CompletableFuture<String> future) throws Exception {
+        return future.get(5, TimeUnit.SECONDS);
+    }
+
+    @Test
+    void retriesRetryableFailures() throws Exception {
+        String response = await(run(call -> call.number() < 3
+                ? CompletableFuture.failedFuture(new ProviderHttpException(503, "unavailable", -1))
+                : CompletableFuture.completedFuture("ok")));
+
+        assertEquals("ok", response);
+        assertEquals(3, callCount(primary));
+        assertEquals(0, callCount(fallback));
+    }
+
+    @Test
+    void fallsBackOnceRetriesAreExhausted() throws Exception {
+        String response = await(run(call -> call.provider() == primary
+                ? CompletableFuture.failedFuture(new IOException("connection reset"))
+                : CompletableFuture.completedFuture("from fallback")));
+
+        assertEquals("from fallback", response);
+        assertEquals(3, callCount(primary));
+    }
+
+    @Test
+    void doesNotRetryClientErrors() throws Exception {
+        String response = await(run(call -> call.provider() == primary
+                ? CompletableFuture.failedFuture(new ProviderHttpException(400, "bad request", -1))
+                : CompletableFuture.completedFuture("from fallback")));
+
+        assertEquals("from fallback", response);
+        assertEquals(1, callCount(primary));
+    }
+
+    @Test
+    void fallsBackWhenRetryAfterIsTooLong() throws Exception {
+        String response = await(run(call -> call.provider() == primary
+                ? CompletableFuture.failedFuture(new ProviderHttpException(429, "slow down", 60_000))
+                : CompletableFuture.completedFuture("from fallback")));
+
+        assertEquals("from fallback", response);
+        assertEquals(1, callCount(primary));
+    }
+
+    @Test
+    void failsWithLastErrorWhenEveryProviderFails() {
+        CompletableFuture<String> request = run(call -> CompletableFuture.failedFuture(
+                new ProviderHttpException(500, call.provider().getId(), -1)));
+
+        ExecutionException e = assertThrows(ExecutionException.class, () -> await(request));
+        ProviderHttpException cause = assertInstanceOf(ProviderHttpException.class, e.getCause());
+        assertEquals(fallback.getId(), cause.getMessage());
+    }
+
+    @Test
+    void opensCircuitAndSkipsProvider() throws Exception {
+        config.setCircuitFailureThreshold(2);
+        config.setMaxRetries(1);
+        await(run(call -> call.provider() == primary
+                ? CompletableFuture.failedFuture(new ProviderHttpException(503, "unavailable", -1))
+                : CompletableFuture.completedFuture("from fallback")));
+        assertEquals(ProviderHealth.State.OPEN, scheduler.getHealth(primary).getState());
+
+        assertEquals("from fallback", await(run(call -> CompletableFuture.completedFuture("from fallback"))));
+        assertEquals(2, callCount(primary));
+    }
+
+    @Test
+    void doesNotReplayAfterOutputReachedTheCaller() {
+        CompletableFuture<String> request = run(call -> {
+            if (call.provider() == fallback) {
+                return CompletableFuture.completedFuture("from fallback");
+            }
+            call.sink().accept("Hello");
+            return CompletableFuture.failedFuture(new IOException("stream broke"));
+        });
+
+        assertThrows(ExecutionException.class, () -> await(request));
+        assertEquals(List.of("Hello"), deltas);
+        assertEquals(1, callCount(primary));
+        assertEquals(0, callCount(fallback));
+    }
+
+    @Test
+    void cancellingCancelsTheRunningAttempt() {
+        CompletableFuture<String> attempt = new CompletableFuture<>();
+        CompletableFuture<String> request = run(call -> attempt);
+
+        request.cancel(true);
+        assertTrue(attempt.isCancelled());
+    }
+
+    private record Call(AIProvider provider, int number, Consumer<String> sink) {
+    }
+
+    private record StubProvider(String id) implements AIProvider {
+
+        @Override
+        public CompletableFuture<String> chatCompletion(String systemPrompt, String userMessage,
+                List<ChatMessage> history) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public CompletableFuture<Boolean> testConnection() {
+            return CompletableFuture.completedFuture(true);
+        }
+
+        @Override
+        public String getName() {
+            return id;
+        }
+
+        @Override
+        public boolean isConfigured() {
+            return true;
+        }
+
+        @Override
+        public CompletableFuture<byte[]> generateSpeech(String text) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public String getModel() {
+            return "test";
+        }
+    }
+}
@@ -0,0 +1,74 @@
+package com.ainpcconnector.ai;
+
+import okio.Buffer;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class ServerSentEventsTest {
+
+    private static List<String> read(String stream) throws IOException {
+        List<String> events = new ArrayList<>();
+        ServerSentEvents.read(new Buffer().writeUtf8(stream), (event, data) -> {
+            events.add(event + "|" + data);
+            return true;
+        });
+        return events;
+    }
+
+    @Test
+    void dispatchesEventsOnBlankLines() throws IOException {
+        List<String> events = read("data: {\"a\":1}\n\ndata: {\"a\":2}\n\n");
+        assertEquals(List.of("null|{\"a\":1}", "null|{\"a\":2}"), events);
+    }
+
+    @Test
+    void keepsEventNamePerEvent() throws IOException {
+        List<String> events = read("event: message_start\ndata: x\n\ndata: y\n\n");
+        assertEquals(List.of("message_start|x", "null|y"), events);
+    }
+
+    @Test
+    void joinsMultiLineData() throws IOException {
+        assertEquals(List.of("null|first\nsecond"), read("data: first\ndata: second\n\n"));
+    }
+
+    @Test
+    void skipsCommentsAndUnknownFields() throws IOException {
+        assertEquals(List.of("null|x"), read(": keep-alive\nid: 7\nretry: 100\ndata: x\n\n"));
+    }
+
+    @Test
+    void stripsOnlyOneLeadingSpace() throws IOException {
+        assertEquals(List.of("null|  x", "null|y"), read("data:   x\n\ndata:y\n\n"));
+    }
+
+    @Test
+    void handlesCrLfLineEndings() throws IOException {
+        assertEquals(List.of("null|x"), read("data: x\r\n\r\n"));
+    }
+
+    @Test
+    void dispatchesTrailingEventWithoutBlankLine() throws IOException {
+        assertEquals(List.of("null|[DONE]"), read("data: [DONE]"));
+    }
+
+    @Test
+    void ignoresBlankLinesWithoutData() throws IOException {
+        assertEquals(List.of("null|x"), read("\n\nevent: ping\n\ndata: x\n\n"));
+    }
+
+    @Test
+    void stopsWhenHandlerReturnsFalse() throws IOException {
+        List<String> seen = new ArrayList<>();
+        ServerSentEvents.read(new Buffer().writeUtf8("data: a\n\ndata: b\n\n"), (event, data) -> {
+            seen.add(data);
+            return false;
+        });
+        assertEquals(List.of("a"), seen);
+    }
+}
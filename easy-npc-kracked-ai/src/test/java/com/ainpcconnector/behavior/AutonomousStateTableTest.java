@@ -0,0 +1,149 @@
+package com.ainpcconnector.behavior;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class AutonomousStateTableTest {
+
+    private final AutonomousStateTable table = new AutonomousStateTable();
+    private final Random random = new Random(42);
+
+    @Test
+    void hasNoSlotBeforeAcquire() {
+        assertEquals(AutonomousStateTable.NO_SLOT, table.slot(UUID.randomUUID()));
+    }
+
+    @Test
+    void acquireCreatesFreshStateOnce() {
+        UUID npc = UUID.randomUUID();
+        int slot = table.acquire(npc, random);
+
+        assertEquals(slot, table.slot(npc));
+        assertEquals(slot, table.acquire(npc, random));
+        assertEquals(AutonomousController.BehaviorMode.IDLE, table.mode(slot));
+        assertEquals(AutonomousController.DetailLevel.FULL, table.detailLevel(slot));
+        assertEquals(AutonomousStateTable.NEVER_RAN, table.lastRunTick(slot));
+        assertEquals(0.5, table.mood(slot));
+        assertEquals(1.0, table.energy(slot));
+        assertFalse(table.hasTarget(slot));
+        assertEquals("", table.thought(slot));
+        assertNotEquals(0, table.goals(slot));
+    }
+
+    @Test
+    void releasedSlotIsReusedWithFreshState() {
+        UUID first = UUID.randomUUID();
+        int slot = table.acquire(first, random);
+        table.setMode(slot, AutonomousController.BehaviorMode.WANDERING);
+        table.setActionTimer(slot, 40);
+        table.setIdleTimer(slot, 7);
+        table.setSkippedPasses(slot, 3);
+        table.setLastRunTick(slot, 1000);
+        table.setMood(slot, 0.1);
+        table.setEnergy(slot, 0.2);
+        table.setTarget(slot, 1, 2, 3);
+        table.setTargetEntity(slot, UUID.randomUUID());
+        table.setThought(slot, "Where is everyone?");
+
+        table.release(first);
+        assertEquals(AutonomousStateTable.NO_SLOT, table.slot(first));
+
+        UUID second = UUID.randomUUID();
+        assertEquals(slot, table.acquire(second, random));
+        assertEquals(AutonomousController.BehaviorMode.IDLE, table.mode(slot));
+        assertEquals(0, table.actionTimer(slot));
+        assertEquals(0, table.idleTimer(slot));
+        assertEquals(0, table.skippedPasses(slot));
+        assertEquals(AutonomousStateTable.NEVER_RAN, table.lastRunTick(slot));
+        assertEquals(0.5, table.mood(slot));
+        assertEquals(1.0, table.energy(slot));
+        assertFalse(table.hasTarget(slot));
+        assertNull(table.targetEntity(slot));
+        assertEquals("", table.thought(slot));
+    }
+
+    @Test
+    void releasingUnknownNpcIsHarmless() {
+        table.release(UUID.randomUUID());
+        int slot = table.acquire(UUID.randomUUID(), random);
+        assertEquals(0, slot);
+    }
+
+    @Test
+    void growsAndKeepsExistingState() {
+        List<UUID> npcs = new ArrayList<>();
+        for (int i = 0; i < 500; i++) {
+            UUID npc = UUID.randomUUID();
+            npcs.add(npc);
+            int slot = table.acquire(npc, random);
+            table.setActionTimer(slot, i);
+            table.setTarget(slot, i, -i, i * 2);
+        }
+
+        for (int i = 0; i < npcs.size(); i++) {
+            int slot = table.slot(npcs.get(i));
+            assertEquals(i, table.actionTimer(slot));
+            assertEquals(i, table.targetX(slot));
+            assertEquals(-i, table.targetY(slot));
+            assertEquals(i * 2, table.targetZ(slot));
+        }
+    }
+
+    @Test
+    void slotsStayDenseUnderChurn() {
+        List<UUID> loaded = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            UUID npc = UUID.randomUUID();
+            loaded.add(npc);
+            table.acquire(npc, random);
+        }
+        // Unload and reload NPCs many times; slots must come from the free list
+        for (int round = 0; round < 1000; round++) {
+            UUID gone = loaded.remove(random.nextInt(loaded.size()));
+            table.release(gone);
+            UUID fresh = UUID.randomUUID();
+            loaded.add(fresh);
+            assertTrue(table.acquire(fresh, random) < 100);
+        }
+    }
+
+    @Test
+    void conversationTracksStartAndOnlyEndsConversing() {
+        UUID npc = UUID.randomUUID();
+        int slot = table.acquire(npc, random);
+
+        table.startConversation(slot, 500);
+        assertEquals(AutonomousController.BehaviorMode.CONVERSING, table.mode(slot));
+        assertEquals(500, table.conversationStartTick(slot));
+
+        table.endConversation(npc);
+        assertEquals(AutonomousController.BehaviorMode.IDLE, table.mode(slot));
+
+        table.setMode(slot, AutonomousController.BehaviorMode.WANDERING);
+        table.endConversation(npc);
+        assertEquals(AutonomousController.BehaviorMode.WANDERING, table.mode(slot));
+
+        // No state: nothing to end
+        table.endConversation(UUID.randomUUID());
+    }
+
+    @Test
+    void pickGoalsSetsOneOrTwoKnownGoals() {
+        for (int i = 0; i < 1000; i++) {
+            int goals = AutonomousStateTable.pickGoals(random);
+            int count = Integer.bitCount(goals);
+            assertTrue(count == 1 || count == 2);
+            assertEquals(0, goals >>> AutonomousStateTable.GOALS.length);
+        }
+    }
+}
@@ -0,0 +1,68 @@
+package com.ainpcconnector.behavior;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class SentenceChunkerTest {
+
+    private final List<String> chunks = new ArrayList<>();
+    private final SentenceChunker chunker = new SentenceChunker(chunks::add);
+
+    @Test
+    void emitsCompleteSentencesOnly() {
+        chunker.accept("Hello there");
+        assertTrue(chunks.isEmpty());
+
+        chunker.accept(". How are");
+        assertEquals(List.of("Hello there."), chunks);
+
+        chunker.accept(" you? Fine");
+        assertEquals(List.of("Hello there.", "How are you?"), chunks);
+
+        chunker.flush();
+        assertEquals(List.of("Hello there.", "How are you?", "Fine"), chunks);
+    }
+
+    @Test
+    void emitsSeveralSentencesFromOneDeltaTogether() {
+        chunker.accept("One. Two! Three");
+        assertEquals(List.of("One. Two!"), chunks);
+    }
+
+    @Test
+    void doesNotSplitInsideNumbers() {
+        chunker.accept("It costs 3.50 emeralds");
+        assertTrue(chunks.isEmpty());
+    }
+
+    @Test
+    void splitsLongTextAtAWordBoundary() {
+        String word = "word ";
+        chunker.accept(word.repeat(50));
+        assertEquals(1, chunks.size());
+        assertTrue(chunks.get(0).length() <= 250);
+        assertFalse(chunks.get(0).endsWith(" "));
+    }
+
+    @Test
+    void flushOfEmptyBufferEmitsNothing() {
+        chunker.accept("   ");
+        chunker.flush();
+        assertTrue(chunks.isEmpty());
+        assertFalse(chunker.hasEmitted());
+    }
+
+    @Test
+    void tracksWhetherAnythingWasEmitted() {
+        chunker.accept("Partial");
+        assertFalse(chunker.hasEmitted());
+        chunker.accept(" sentence. ");
+        assertTrue(chunker.hasEmitted());
+    }
+}
@@ -0,0 +1,200 @@
+package com.ainpcconnector.npc;
+
+import org.junit.jupiter.api.Test;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.function.Consumer;
+import java.util.function.ToIntFunction;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+class NPCTickSchedulerTest {
+
+    private static final long NO_LIMIT = Long.MAX_VALUE;
+
+    private final NPCTickScheduler scheduler = new NPCTickScheduler();
+    private final Map<UUID, List<Integer>> runs = new HashMap<>();
+    private int tick = 0;
+
+    private void runTicks(int count, long budgetNanos, int interval) {
+        for (int i = 0; i < count; i++) {
+            tick++;
+            int now = tick;
+            scheduler.tick(now, budgetNanos,
+                    uuid -> runs.computeIfAbsent(uuid, k -> new ArrayList<>()).add(now),
+                    uuid -> interval);
+        }
+    }
+
+    @Test
+    void runsEachNpcOncePerInterval() {
+        UUID npc = UUID.randomUUID();
+        scheduler.add(npc, 5);
+        runTicks(100, NO_LIMIT, 5);
+
+        List<Integer> ticks = runs.get(npc);
+        assertTrue(ticks.get(0) <= 5);
+        for (int i = 1; i < ticks.size(); i++) {
+            assertEquals(5, ticks.get(i) - ticks.get(i - 1));
+        }
+        assertEquals(20, ticks.size());
+    }
+
+    @Test
+    void spreadsFirstPassOverTheInterval() {
+        for (int i = 0; i < 200; i++) {
+            scheduler.add(UUID.randomUUID(), 20);
+        }
+        int[] perTick = new int[21];
+        for (int i = 1; i <= 20; i++) {
+            tick = i;
+            int now = i;
+            scheduler.tick(now, NO_LIMIT, uuid -> perTick[now]++, uuid -> 20);
+        }
+
+        int total = 0;
+        for (int i = 1; i <= 20; i++) {
+            // Roughly 10 per tick; nowhere near all on one tick
+            assertTrue(perTick[i] < 40, "tick " + i + " ran " + perTick[i]);
+            total += perTick[i];
+        }
+        assertEquals(200, total);
+    }
+
+    @Test
+    void carriesOverWhenBudgetIsSpent() {
+        for (int i = 0; i < 3; i++) {
+            scheduler.add(UUID.randomUUID(), 1);
+        }
+        // A zero budget still processes one NPC per tick
+        runTicks(1, 0, 100);
+        assertEquals(1, runs.size());
+        assertEquals(2, scheduler.getStats().get("carriedOver"));
+
+        runTicks(2, 0, 100);
+        assertEquals(3, runs.size());
+        assertEquals(0, scheduler.getStats().get("carriedOver"));
+    }
+
+    @Test
+    void honorsChangingIntervals() {
+        UUID npc = UUID.randomUUID();
+        scheduler.add(npc, 1);
+        List<Integer> ticks = new ArrayList<>();
+        int[] interval = { 2 };
+        for (int i = 1; i <= 30; i++) {
+            int now = i;
+            scheduler.tick(now, NO_LIMIT, uuid -> ticks.add(now), uuid -> interval[0]);
+            if (now == 10) {
+                interval[0] = 7;
+            }
+        }
+
+        assertEquals(List.of(1, 3, 5, 7, 9, 11, 18, 25), ticks);
+    }
+
+    @Test
+    void removedNpcsStopRunning() {
+        UUID npc = UUID.randomUUID();
+        scheduler.add(npc, 1);
+        runTicks(3, NO_LIMIT, 1);
+        scheduler.remove(npc);
+        runTicks(10, NO_LIMIT, 1);
+
+        assertEquals(List.of(1, 2, 3), runs.get(npc));
+        assertEquals(0, scheduler.size());
+    }
+
+    @Test
+    void removingQueuedNpcDropsIt() {
+        UUID first = UUID.randomUUID();
+        UUID second = UUID.randomUUID();
+        scheduler.add(first, 1);
+        scheduler.add(second, 1);
+
+        // Budget for one: whichever runs first removes the other while it waits in the run queue
+        List<UUID> ran = new ArrayList<>();
+        for (int i = 1; i <= 5; i++) {
+            scheduler.tick(i, 0, uuid -> {
+                ran.add(uuid);
+                scheduler.remove(uuid.equals(first) ? second : first);
+            }, uuid -> 100);
+        }
+        assertEquals(1, ran.size());
+    }
+
+    @Test
+    void npcRemovingItselfIsNotRescheduled() {
+        UUID npc = UUID.randomUUID();
+        scheduler.add(npc, 1);
+        int[] count = { 0 };
+        for (int i = 1; i <= 10; i++) {
+            scheduler.tick(i, NO_LIMIT, uuid -> {
+                count[0]++;
+                scheduler.remove(uuid);
+            }, uuid -> 1);
+        }
+        assertEquals(1, count[0]);
+    }
+
+    @Test
+    void addingTwiceKeepsOneSchedule() {
+        UUID npc = UUID.randomUUID();
+        scheduler.add(npc, 1);
+        scheduler.add(npc, 1);
+        runTicks(4, NO_LIMIT, 1);
+
+        assertEquals(1, scheduler.size());
+        assertEquals(4, runs.get(npc).size());
+    }
+
+    @Test
+    void clampsIntervals() {
+        UUID npc = UUID.randomUUID();
+        scheduler.add(npc, 1);
+        runTicks(3, NO_LIMIT, 0);
+        assertEquals(List.of(1, 2, 3), runs.get(npc));
+
+        runs.clear();
+        scheduler.tick(++tick, NO_LIMIT, uuid -> runs.computeIfAbsent(uuid, k -> new ArrayList<>()).add(tick),
+                uuid -> 5000);
+        int ranAt = tick;
+        runTicks(NPCTickScheduler.MAX_INTERVAL, NO_LIMIT, 5000);
+        assertEquals(List.of(ranAt, ranAt + NPCTickScheduler.MAX_INTERVAL), runs.get(npc));
+    }
+
+    @Test
+    void steadyStateTickDoesNotAllocate() {
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        assumeTrue(threads.isThreadAllocatedMemorySupported() && threads.isThreadAllocatedMemoryEnabled());
+
+        for (int i = 0; i < 1000; i++) {
+            scheduler.add(UUID.randomUUID(), 20);
+        }
+        Consumer<UUID> task = uuid -> {
+        };
+        ToIntFunction<UUID> interval = uuid -> 20;
+        // Buckets grow on first use. An interval of 20 lines up with the 1024-tick wheel again after
+        // five turns, by then every bucket has held its largest batch
+        int warmup = 5 * (NPCTickScheduler.MAX_INTERVAL + 1) + 20;
+        for (int i = 1; i <= warmup; i++) {
+            scheduler.tick(i, NO_LIMIT, task, interval);
+        }
+
+        threads.getCurrentThreadAllocatedBytes();
+        long before = threads.getCurrentThreadAllocatedBytes();
+        for (int i = warmup + 1; i <= warmup + 200; i++) {
+            scheduler.tick(i, NO_LIMIT, task, interval);
+        }
+        long allocated = threads.getCurrentThreadAllocatedBytes() - before;
+
+        assertEquals(0, allocated, "bytes allocated by 200 ticks");
+    }
+}
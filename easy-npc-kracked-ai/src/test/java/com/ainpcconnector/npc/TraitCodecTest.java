@@ -0,0 +1,113 @@
+package com.ainpcconnector.npc;
+
+import com.google.gson.GsonBuilder;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class TraitCodecTest {
+
+    private static Map<String, Double> standardTraits() {
+        Map<String, Double> traits = new LinkedHashMap<>();
+        traits.put("friendliness", 0.7);
+        traits.put("curiosity", 0.5);
+        traits.put("aggression", 0.1);
+        traits.put("humor", 0.3);
+        return traits;
+    }
+
+    private static void assertTraitsEqual(Map<String, Double> expected, Map<String, Double> actual) {
+        assertEquals(expected.keySet(), actual.keySet());
+        for (Map.Entry<String, Double> entry : expected.entrySet()) {
+            // Stored as float32
+            assertEquals(entry.getValue().floatValue(), actual.get(entry.getKey()), 0.0, entry.getKey());
+        }
+    }
+
+    @Test
+    void roundTripsStandardTraitsInTwentyBytes() {
+        Map<String, Double> traits = standardTraits();
+        byte[] blob = TraitCodec.encode(traits);
+
+        assertEquals(20, blob.length);
+        assertTraitsEqual(traits, TraitCodec.decode(blob));
+    }
+
+    @Test
+    void roundTripsCustomTraits() {
+        Map<String, Double> traits = standardTraits();
+        traits.put("patience", 0.95);
+        traits.put("café_loyalty", 0.0);
+        traits.put("勇気", 1.0);
+
+        assertTraitsEqual(traits, TraitCodec.decode(TraitCodec.encode(traits)));
+    }
+
+    @Test
+    void roundTripsPartialAndEmptyMaps() {
+        Map<String, Double> partial = new HashMap<>();
+        partial.put("humor", 0.25);
+        partial.put("wit", 0.75);
+        assertTraitsEqual(partial, TraitCodec.decode(TraitCodec.encode(partial)));
+
+        byte[] empty = TraitCodec.encode(Map.of());
+        assertEquals(4, empty.length);
+        assertTrue(TraitCodec.decode(empty).isEmpty());
+    }
+
+    @Test
+    void skipsNullValues() {
+        Map<String, Double> traits = new HashMap<>();
+        traits.put("humor", null);
+        traits.put("wit", null);
+        traits.put("curiosity", 0.5);
+
+        assertEquals(Map.of("curiosity", 0.5), TraitCodec.decode(TraitCodec.encode(traits)));
+    }
+
+    @Test
+    void rejectsEveryTruncation() {
+        Map<String, Double> traits = standardTraits();
+        traits.put("patience", 0.9);
+        byte[] blob = TraitCodec.encode(traits);
+
+        for (int length = 0; length < blob.length; length++) {
+            byte[] truncated = Arrays.copyOf(blob, length);
+            assertThrows(IllegalArgumentException.class, () -> TraitCodec.decode(truncated),
+                    "length " + length);
+        }
+    }
+
+    @Test
+    void rejectsUnknownVersion() {
+        byte[] blob = TraitCodec.encode(standardTraits());
+        blob[0] = (byte) (TraitCodec.VERSION + 1);
+
+        IllegalArgumentException e = assertThrows(IllegalArgumentException.class, () -> TraitCodec.decode(blob));
+        assertTrue(e.getMessage().contains("version"));
+    }
+
+    @Test
+    void rejectsOverlongNames() {
+        Map<String, Double> traits = Map.of("x".repeat(0x10000), 0.5);
+        assertThrows(IllegalArgumentException.class, () -> TraitCodec.encode(traits));
+    }
+
+    @Test
+    void isMuchSmallerThanTheJsonItReplaced() {
+        Map<String, Double> traits = standardTraits();
+        byte[] json = new GsonBuilder().setPrettyPrinting().create().toJson(traits)
+                .getBytes(StandardCharsets.UTF_8);
+
+        assertTrue(TraitCodec.encode(traits).length * 4 < json.length,
+                TraitCodec.encode(traits).length + " vs " + json.length + " bytes");
+    }
+}